@@ -0,0 +1,81 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.BitBoard;
+import domain.Player;
+import domain.ai.AiStrategy;
+import domain.ai.EasyStrategy;
+import domain.ai.SearchStrategy;
+import domain.ai.TranspositionTable;
+
+/**
+ * AI move selection on a seeded mid-game position. The search runs to a
+ * fixed depth with a fresh table so every invocation does the same work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AiMoveBenchmark {
+
+	private static final long NO_TIME_LIMIT_MILLIS = 600_000;
+
+	@Param({ "3/3", "5/3", "5/4", "5/5", "10/3", "10/4", "10/5", "15/5", "19/3", "19/4", "19/5" })
+	public String config;
+
+	@Param({ "easy", "search2", "search3" })
+	public String strategy;
+
+	private int winLength;
+	private BitBoard position;
+	private BitBoard board;
+	private Player player;
+	private AiStrategy ai;
+
+	@Setup
+	public void setUp() {
+		final int size = Positions.size(config);
+		winLength = Positions.winLength(config);
+		position = new BitBoard(size, size);
+		player = Positions.fill(position, winLength, size * size / 4, new Random(size * 7L + winLength));
+		board = new BitBoard(position);
+	}
+
+	@Setup(Level.Invocation)
+	public void reset() {
+		board.copyFrom(position);
+		switch (strategy) {
+			case "easy":
+				ai = new EasyStrategy(new Random(42));
+				break;
+			case "search2":
+				ai = new SearchStrategy(NO_TIME_LIMIT_MILLIS, 2, new TranspositionTable(1 << 16));
+				break;
+			default:
+				ai = new SearchStrategy(NO_TIME_LIMIT_MILLIS, 3, new TranspositionTable(1 << 16));
+				break;
+		}
+	}
+
+	@Benchmark
+	public int chooseMove() {
+		return ai.chooseMove(board, player, winLength);
+	}
+}
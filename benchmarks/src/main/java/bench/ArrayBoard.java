@@ -0,0 +1,49 @@
+package bench;
+
+import java.util.Arrays;
+
+import domain.Player;
+
+/** The board as {@code Game} kept it before the bitboard, for comparison. */
+final class ArrayBoard {
+
+	final int cols;
+	final int rows;
+	final Player[][] field;
+
+	ArrayBoard(int cols, int rows) {
+		this.cols = cols;
+		this.rows = rows;
+		this.field = new Player[rows][cols];
+		for (Player[] line : field) {
+			Arrays.fill(line, Player.NONE);
+		}
+	}
+
+	boolean checkWin(Player player, int winLength) {
+		for (int col = 0; col < cols; ++col) {
+			for (int row = 0; row < rows; ++row) {
+				if (checkLine(col, row, 1, 0, winLength, player)
+						|| checkLine(col, row, 1, 1, winLength, player)
+						|| checkLine(col, row, 0, 1, winLength, player)
+						|| checkLine(col, row, 1, -1, winLength, player))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean checkLine(int col, int row, int dRow, int dCol, int len, Player player) {
+		final int farRow = row + (len - 1) * dRow;
+		final int farCol = col + (len - 1) * dCol;
+		if (farCol < 0 || farCol >= cols || farRow < 0 || farRow >= rows) {
+			return false;
+		}
+		for (int i = 0; i < len; ++i) {
+			if (field[row + i * dRow][col + i * dCol] != player) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
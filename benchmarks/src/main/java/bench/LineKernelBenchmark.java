@@ -0,0 +1,110 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.BitBoard;
+import domain.LineKernel;
+import domain.Player;
+import domain.ai.CandidateIndex;
+
+/**
+ * Full-board line scans with the scalar and the SIMD {@link LineKernel}:
+ * the win scan and the search for a cell that would win, against the
+ * candidate-by-candidate search the easy AI used before.
+ * <p>
+ * Setup fails if a kernel finds a different winning cell than placing a
+ * mark on every empty cell in turn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class LineKernelBenchmark {
+
+	private static final int POSITIONS = 256;
+	private static final int MASK = POSITIONS - 1;
+
+	@Param({ "10/4", "10/5", "15/5", "19/5", "32/5", "50/5", "100/5" })
+	public String config;
+
+	@Param({ "scalar", "vector" })
+	public String kernel;
+
+	private int winLength;
+	private BitBoard[] boards;
+	private int index;
+
+	@Setup
+	public void setUp() {
+		final var lines = kernel.equals("scalar") ? LineKernel.scalar() : LineKernel.vector();
+		if (lines == null) {
+			throw new IllegalStateException("The vector kernel needs --add-modules jdk.incubator.vector");
+		}
+		final int size = Positions.size(config);
+		winLength = Positions.winLength(config);
+		var random = new Random(size * 31L + winLength);
+		boards = new BitBoard[POSITIONS];
+		for (int i = 0; i < POSITIONS; ++i) {
+			boards[i] = new BitBoard(size, size);
+			Positions.fill(boards[i], winLength, random.nextInt(size * size / 2 + 1), random);
+			boards[i].useKernel(lines);
+			verify(boards[i]);
+		}
+	}
+
+	private void verify(BitBoard board) {
+		for (Player player : new Player[] { Player.X, Player.O }) {
+			int expected = -1;
+			for (int cell = 0; cell < board.cellCount() && expected < 0; ++cell) {
+				final int col = board.column(cell);
+				final int row = board.row(cell);
+				if (!board.isEmpty(col, row))
+					continue;
+				board.set(col, row, player);
+				if (board.hasLineThrough(col, row, player, winLength)) {
+					expected = cell;
+				}
+				board.set(col, row, Player.NONE);
+			}
+			if (board.winningCell(player, winLength) != expected) {
+				throw new AssertionError(kernel + " found the wrong winning cell on " + config);
+			}
+		}
+	}
+
+	@Benchmark
+	public boolean fullScan() {
+		return boards[index++ & MASK].hasLine(Player.X, winLength);
+	}
+
+	@Benchmark
+	public int winningCell() {
+		return boards[index++ & MASK].winningCell(Player.X, winLength);
+	}
+
+	@Benchmark
+	public int candidateWinningCell() {
+		final var board = boards[index++ & MASK];
+		final var candidates = CandidateIndex.of(board, winLength, 1);
+		for (int i = 0; i < candidates.candidateCount(); ++i) {
+			if (candidates.completesLine(candidates.candidate(i), Player.X))
+				return candidates.candidate(i);
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Move application as {@code Game} does it: place a mark, check for a win
+ * through it, count towards a full field. One operation plays a whole
+ * pre-shuffled game and clears the board.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+
+	@Param({ "3/3", "5/3", "5/4", "5/5", "10/3", "10/4", "10/5", "15/5", "19/3", "19/4", "19/5" })
+	public String config;
+
+	private int winLength;
+	private BitBoard board;
+	private int[] order;
+
+	@Setup
+	public void setUp() {
+		final int size = Positions.size(config);
+		winLength = Positions.winLength(config);
+		board = new BitBoard(size, size);
+		order = Positions.shuffledCells(size * size, new Random(size));
+	}
+
+	@Benchmark
+	public int playShuffledGame() {
+		board.clear();
+		Player player = Player.X;
+		int moves = 0;
+		for (int cell : order) {
+			final int col = board.column(cell);
+			final int row = board.row(cell);
+			board.set(col, row, player);
+			++moves;
+			if (board.hasLineThrough(col, row, player, winLength) || moves == order.length)
+				break;
+			player = player == Player.X ? Player.O : Player.X;
+		}
+		return moves;
+	}
+}
@@ -0,0 +1,53 @@
+package bench;
+
+import domain.BitBoard;
+import domain.Player;
+import domain.ai.ParallelSearchStrategy;
+import domain.ai.TranspositionTable;
+
+/**
+ * Reports search throughput of {@link ParallelSearchStrategy} from one
+ * thread up to the number of available processors on a 10x10 board with
+ * winLength 5.
+ * <p>
+ * {@code gradle :benchmarks:parallelSearchBenchmark --args="[budgetMillis [maxThreads]]"}
+ */
+public class ParallelSearchBenchmark {
+
+	private static final int SIZE = 10;
+	private static final int WIN_LENGTH = 5;
+	private static final int[][] OPENING = { { 4, 4 }, { 5, 5 }, { 5, 4 }, { 3, 4 }, { 4, 5 }, { 6, 3 } };
+
+	public static void main(String[] args) {
+		final long budgetMillis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+
+		var board = new BitBoard(SIZE, SIZE);
+		Player player = Player.X;
+		for (int[] cell : OPENING) {
+			board.set(cell[0], cell[1], player);
+			player = player == Player.X ? Player.O : Player.X;
+		}
+
+		double baseline = 0;
+		final int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		for (int threads = 1;; threads = Math.min(threads * 2, maxThreads)) {
+			// warm-up, then the measured run with a fresh table
+			try (var warmUp = new ParallelSearchStrategy(budgetMillis / 4, 64, threads, new TranspositionTable(1 << 20))) {
+				warmUp.chooseMove(new BitBoard(board), player, WIN_LENGTH);
+			}
+			try (var strategy = new ParallelSearchStrategy(budgetMillis, 64, threads, new TranspositionTable(1 << 20))) {
+				long start = System.nanoTime();
+				int move = strategy.chooseMove(new BitBoard(board), player, WIN_LENGTH);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				double nps = strategy.lastNodeCount() / seconds;
+				if (threads == 1) {
+					baseline = nps;
+				}
+				System.out.printf("threads=%2d  depth=%2d  nodes=%,12d  nodes/s=%,12.0f  scaling=%5.2fx  move=%d%n",
+						threads, strategy.lastDepth(), strategy.lastNodeCount(), nps, nps / baseline, move);
+			}
+			if (threads == maxThreads)
+				break;
+		}
+	}
+}
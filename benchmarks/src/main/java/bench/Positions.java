@@ -0,0 +1,63 @@
+package bench;
+
+import java.util.Random;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Seeded positions shared by the benchmarks. Parameterized benchmarks take a
+ * {@code "size/winLength"} config string.
+ */
+final class Positions {
+
+	private Positions() {
+	}
+
+	static int size(String config) {
+		return Integer.parseInt(config.substring(0, config.indexOf('/')));
+	}
+
+	static int winLength(String config) {
+		return Integer.parseInt(config.substring(config.indexOf('/') + 1));
+	}
+
+	/**
+	 * Fills an empty board with up to {@code marks} alternating random marks,
+	 * skipping any mark that would complete a line.
+	 *
+	 * @return the player to move next
+	 */
+	static Player fill(BitBoard board, int winLength, int marks, Random random) {
+		Player player = Player.X;
+		for (int attempt = 0, placed = 0; placed < marks && attempt < marks * 20; ++attempt) {
+			int col = random.nextInt(board.columns());
+			int row = random.nextInt(board.rows());
+			if (!board.isEmpty(col, row))
+				continue;
+			board.set(col, row, player);
+			if (board.hasLineThrough(col, row, player, winLength)) {
+				board.set(col, row, Player.NONE);
+				continue;
+			}
+			++placed;
+			player = player == Player.X ? Player.O : Player.X;
+		}
+		return player;
+	}
+
+	/** Random order of all cells of the board. */
+	static int[] shuffledCells(int cells, Random random) {
+		int[] order = new int[cells];
+		for (int i = 0; i < cells; ++i) {
+			order[i] = i;
+		}
+		for (int i = cells - 1; i > 0; --i) {
+			int j = random.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+		return order;
+	}
+}
@@ -0,0 +1,50 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.ai.EasyStrategy;
+import sim.GameResult;
+import sim.SelfPlay;
+
+/** A full headless easy-vs-easy game. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelfPlayBenchmark {
+
+	@Param({ "3/3", "5/3", "5/4", "5/5", "10/3", "10/4", "10/5", "15/5", "19/3", "19/4", "19/5" })
+	public String config;
+
+	private SelfPlay selfPlay;
+	private EasyStrategy x;
+	private EasyStrategy o;
+
+	@Setup
+	public void setUp() {
+		final int size = Positions.size(config);
+		selfPlay = new SelfPlay(size, size, Positions.winLength(config));
+		x = new EasyStrategy(new Random(1));
+		o = new EasyStrategy(new Random(2));
+	}
+
+	@Benchmark
+	public GameResult easyVsEasy() {
+		return selfPlay.play(x, o);
+	}
+}
@@ -0,0 +1,114 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Win detection: the full-board bitboard scan, the last-move check and the
+ * former {@code Player[][]} scan.
+ * <p>
+ * Setup first plays random games and fails if the last-move check ever
+ * disagrees with the former full scan.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WinCheckBenchmark {
+
+	private static final int POSITIONS = 1024;
+	private static final int MASK = POSITIONS - 1;
+
+	@Param({ "3/3", "5/3", "5/4", "5/5", "10/3", "10/4", "10/5", "15/5", "19/3", "19/4", "19/5" })
+	public String config;
+
+	private int winLength;
+	private BitBoard[] boards;
+	private ArrayBoard[] arrays;
+	private int[] lastCols;
+	private int[] lastRows;
+	private int index;
+
+	@Setup
+	public void setUp() {
+		final int size = Positions.size(config);
+		winLength = Positions.winLength(config);
+		verifyIncremental(size);
+
+		var random = new Random(size * 31L + winLength);
+		boards = new BitBoard[POSITIONS];
+		arrays = new ArrayBoard[POSITIONS];
+		lastCols = new int[POSITIONS];
+		lastRows = new int[POSITIONS];
+		for (int i = 0; i < POSITIONS; ++i) {
+			boards[i] = new BitBoard(size, size);
+			Positions.fill(boards[i], winLength, random.nextInt(size * size / 2 + 1), random);
+			arrays[i] = new ArrayBoard(size, size);
+			for (int row = 0; row < size; ++row) {
+				for (int col = 0; col < size; ++col) {
+					arrays[i].field[row][col] = boards[i].get(col, row);
+					if (boards[i].get(col, row) == Player.X) {
+						lastCols[i] = col;
+						lastRows[i] = row;
+					}
+				}
+			}
+		}
+	}
+
+	private void verifyIncremental(int size) {
+		var random = new Random(size * 17L + winLength);
+		for (int game = 0; game < POSITIONS; ++game) {
+			var array = new ArrayBoard(size, size);
+			var bits = new BitBoard(size, size);
+			Player player = Player.X;
+			for (int cell : Positions.shuffledCells(size * size, random)) {
+				int col = cell % size;
+				int row = cell / size;
+				array.field[row][col] = player;
+				bits.set(col, row, player);
+				boolean expected = array.checkWin(player, winLength);
+				if (bits.hasLineThrough(col, row, player, winLength) != expected
+						|| bits.hasLine(player, winLength) != expected) {
+					throw new AssertionError("Win check mismatch in game " + game + " at " + col + "," + row);
+				}
+				if (expected)
+					break;
+				player = player == Player.X ? Player.O : Player.X;
+			}
+		}
+	}
+
+	@Benchmark
+	public boolean arrayFullScan() {
+		return arrays[index++ & MASK].checkWin(Player.X, winLength);
+	}
+
+	@Benchmark
+	public boolean bitboardFullScan() {
+		return boards[index++ & MASK].hasLine(Player.X, winLength);
+	}
+
+	@Benchmark
+	public boolean bitboardLastMove() {
+		final int i = index++ & MASK;
+		return boards[i].hasLineThrough(lastCols[i], lastRows[i], Player.X, winLength);
+	}
+}
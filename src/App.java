@@ -1,9 +1,30 @@
+import javax.swing.SwingUtilities;
+
 import gui.GameWindow;
+import metrics.Log;
+import metrics.Metrics;
 
 public class App {
     public static void main(String[] args) throws Exception {
+        final long startNanos = System.nanoTime();
         // UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        new GameWindow();
-        System.out.println("Method main() is over.");
+        SwingUtilities.invokeLater(() -> new GameWindow(startNanos));
+
+        // JMX is slow to start and not needed for the first frame
+        var metricsStart = new Thread(App::startMetrics, "metrics-start");
+        metricsStart.setDaemon(true);
+        metricsStart.setPriority(Thread.MIN_PRIORITY);
+        metricsStart.start();
+        if (Log.ENABLED) {
+            Log.event("mainDone");
+        }
+    }
+
+    private static void startMetrics() {
+        Metrics.registerMBean();
+        final long reportSeconds = Long.getLong("metrics.report", 0L);
+        if (reportSeconds > 0) {
+            Metrics.startReporter(reportSeconds, System.err::println);
+        }
     }
 }
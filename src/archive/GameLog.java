@@ -0,0 +1,293 @@
+package archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import domain.Player;
+
+/**
+ * Finished games read from a memory-mapped file written by
+ * {@link GameLogWriter}.
+ * <p>
+ * File layout: the magic number, then one record per game: its body length
+ * and the body, which holds the field columns and rows ({@code 0} for an
+ * unbounded field), the win length, the winner ({@code 0} for a draw,
+ * {@code 1} for X, {@code 2} for O), the move count and the moves. A move on
+ * a bounded field is its row-major cell index; on an unbounded field it is
+ * the zigzag-encoded column and row difference from the previous move. All
+ * numbers are {@link Varint varints}.
+ * <p>
+ * A record cut short by a crash while writing is ignored. Logs are limited to
+ * 2 GB, the size of one mapping.
+ *
+ * <pre>
+ * java -cp build/classes/java/main archive.GameLog games.log
+ * </pre>
+ */
+public final class GameLog {
+
+	static final int MAGIC = 0x54544C31; // "TTL1"
+	static final int HEADER_LENGTH = 4;
+
+	private static final GameLog EMPTY = new GameLog(ByteBuffer.allocate(0), 0, 0);
+
+	private final ByteBuffer data;
+	private final int end;
+	private final int count;
+
+	private GameLog(ByteBuffer data, int end, int count) {
+		this.data = data;
+		this.end = end;
+		this.count = count;
+	}
+
+	/** Maps the file read-only; a missing or empty file is an empty log. */
+	public static GameLog open(Path file) throws IOException {
+		if (!Files.exists(file))
+			return EMPTY;
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			if (size == 0)
+				return EMPTY;
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Game log larger than 2 GB: " + file);
+			}
+			return of(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		}
+	}
+
+	static GameLog of(ByteBuffer data) {
+		if (data.limit() < HEADER_LENGTH || data.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException("Not a game log");
+		}
+		int count = 0;
+		int offset = HEADER_LENGTH;
+		for (int next; (next = skip(data, offset)) >= 0; offset = next) {
+			++count;
+		}
+		return new GameLog(data, offset, count);
+	}
+
+	/**
+	 * Length of the log up to the end of its last complete record, where the
+	 * next record is to be written.
+	 */
+	static int validLength(ByteBuffer data) {
+		return of(data).end;
+	}
+
+	/** @return offset after the record at {@code offset}, or {@code -1} if it is incomplete */
+	private static int skip(ByteBuffer data, int offset) {
+		final int limit = data.limit();
+		int length = 0;
+		for (int shift = 0;; shift += 7) {
+			if (offset >= limit || shift >= 32)
+				return -1;
+			final byte b = data.get(offset++);
+			length |= (b & 0x7F) << shift;
+			if (b >= 0)
+				break;
+		}
+		return length >= 0 && length <= limit - offset ? offset + length : -1;
+	}
+
+	/** Number of complete games. */
+	public int count() {
+		return count;
+	}
+
+	/** Size of the complete records in bytes. */
+	public int length() {
+		return end;
+	}
+
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Walks the games in order, decoding them straight from the mapping into
+	 * fields and move arrays that are reused from game to game. Moves are only
+	 * decoded when asked for, so scanning the headers costs a few bytes per
+	 * game.
+	 */
+	public final class Cursor {
+
+		private int next = end > 0 ? HEADER_LENGTH : 0;
+		private int offset;
+		private int position;
+		private int limit;
+
+		private int cols;
+		private int rows;
+		private int winLength;
+		private Player winner;
+		private int moveCount;
+		private int movesOffset;
+		private boolean movesDecoded;
+		private int[] moveCols = new int[64];
+		private int[] moveRows = new int[64];
+
+		private Cursor() {
+		}
+
+		/** Moves to the next game; {@code false} after the last one. */
+		public boolean next() {
+			if (next >= end)
+				return false;
+			offset = next;
+			position = next;
+			limit = end;
+			final int length = read();
+			limit = position + length;
+			next = limit;
+			cols = read();
+			rows = read();
+			winLength = read();
+			winner = switch (read()) {
+				case 0 -> Player.NONE;
+				case 1 -> Player.X;
+				case 2 -> Player.O;
+				default -> throw corrupt();
+			};
+			moveCount = read();
+			if (moveCount < 0 || moveCount > limit - position) {
+				throw corrupt();
+			}
+			movesOffset = position;
+			movesDecoded = false;
+			return true;
+		}
+
+		/** Skips {@code games} games; {@code false} if the log ends first. */
+		public boolean skip(int games) {
+			for (int i = 0; i < games; ++i) {
+				if (next >= end)
+					return false;
+				next = GameLog.skip(data, next);
+			}
+			return true;
+		}
+
+		/** Field columns, or {@code 0} if the field is unbounded. */
+		public int columns() {
+			return cols;
+		}
+
+		/** Field rows, or {@code 0} if the field is unbounded. */
+		public int rows() {
+			return rows;
+		}
+
+		public boolean isBounded() {
+			return cols != 0;
+		}
+
+		public int winLength() {
+			return winLength;
+		}
+
+		/** {@link Player#NONE} for a draw. */
+		public Player winner() {
+			return winner;
+		}
+
+		public int moveCount() {
+			return moveCount;
+		}
+
+		public int moveColumn(int index) {
+			decodeMoves();
+			return moveCols[index];
+		}
+
+		public int moveRow(int index) {
+			decodeMoves();
+			return moveRows[index];
+		}
+
+		/** Copies the moves into the arrays, which must hold {@link #moveCount} of them. */
+		public void moves(int[] columns, int[] rows) {
+			decodeMoves();
+			System.arraycopy(moveCols, 0, columns, 0, moveCount);
+			System.arraycopy(moveRows, 0, rows, 0, moveCount);
+		}
+
+		private void decodeMoves() {
+			if (movesDecoded)
+				return;
+			if (moveCols.length < moveCount) {
+				moveCols = Arrays.copyOf(moveCols, Math.max(moveCount, moveCols.length * 2));
+				moveRows = Arrays.copyOf(moveRows, moveCols.length);
+			}
+			position = movesOffset;
+			int col = 0;
+			int row = 0;
+			for (int i = 0; i < moveCount; ++i) {
+				if (cols != 0) {
+					final int cell = read();
+					col = cell % cols;
+					row = cell / cols;
+				} else {
+					col += Varint.unzigzag(read());
+					row += Varint.unzigzag(read());
+				}
+				moveCols[i] = col;
+				moveRows[i] = row;
+			}
+			movesDecoded = true;
+		}
+
+		private int read() {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				if (position >= limit)
+					throw corrupt();
+				final byte b = data.get(position++);
+				value |= (b & 0x7F) << shift;
+				if (b >= 0)
+					return value;
+			}
+			throw corrupt();
+		}
+
+		private IllegalStateException corrupt() {
+			return new IllegalStateException("Corrupt game record at offset " + offset);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			throw new IllegalArgumentException("Usage: archive.GameLog <file>");
+		}
+		final long start = System.nanoTime();
+		var log = open(Path.of(args[0]));
+		long xWins = 0;
+		long oWins = 0;
+		long moves = 0;
+		long checksum = 0;
+		var cursor = log.cursor();
+		while (cursor.next()) {
+			if (cursor.winner() == Player.X) {
+				++xWins;
+			} else if (cursor.winner() == Player.O) {
+				++oWins;
+			}
+			moves += cursor.moveCount();
+			for (int i = 0; i < cursor.moveCount(); ++i) {
+				checksum += cursor.moveColumn(i) * 31L + cursor.moveRow(i);
+			}
+		}
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		final int games = log.count();
+		System.out.printf("%,d games (X %,d, O %,d, draws %,d), %,d moves, %,d bytes (%.1f per game)%n",
+				games, xWins, oWins, games - xWins - oWins, moves, log.length(),
+				games == 0 ? 0.0 : (double) log.length() / games);
+		System.out.printf("read in %.3f s, %,.0f games/s, checksum %x%n", seconds, games / seconds, checksum);
+	}
+}
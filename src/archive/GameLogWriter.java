@@ -0,0 +1,162 @@
+package archive;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import domain.Game;
+import domain.Player;
+
+/**
+ * Appends finished games to a {@link GameLog} file.
+ * <p>
+ * Records are encoded into a direct buffer and written to the channel when
+ * it fills up or on {@link #flush}, so a game costs a few dozen bytes of
+ * copying and no allocation. An incomplete record left at the end of the
+ * file by an earlier crash is cut off on open. Safe to share between
+ * threads.
+ */
+public final class GameLogWriter implements Closeable, Flushable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	private int[] moveCols = new int[64];
+	private int[] moveRows = new int[64];
+
+	private GameLogWriter(FileChannel channel) {
+		this.channel = channel;
+	}
+
+	/** Opens the log for appending, creating it if needed. */
+	public static GameLogWriter open(Path file) throws IOException {
+		var channel = FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			final long size = channel.size();
+			if (size == 0) {
+				channel.write(ByteBuffer.allocate(GameLog.HEADER_LENGTH).putInt(0, GameLog.MAGIC));
+			} else {
+				if (size > Integer.MAX_VALUE) {
+					throw new IOException("Game log larger than 2 GB: " + file);
+				}
+				final int valid = GameLog.validLength(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+				if (valid < size) {
+					channel.truncate(valid);
+				}
+				channel.position(valid);
+			}
+			return new GameLogWriter(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/** Appends a finished game. */
+	public synchronized void append(Game game) throws IOException {
+		if (!game.isGameOver()) {
+			throw new IllegalArgumentException("game is not over");
+		}
+		final int count = game.moveCount();
+		if (moveCols.length < count) {
+			moveCols = Arrays.copyOf(moveCols, Math.max(count, moveCols.length * 2));
+			moveRows = Arrays.copyOf(moveRows, moveCols.length);
+		}
+		for (int i = 0; i < count; ++i) {
+			moveCols[i] = game.moveColumn(i);
+			moveRows[i] = game.moveRow(i);
+		}
+		append(game.isFieldBounded() ? game.fieldColumns() : 0, game.isFieldBounded() ? game.fieldRows() : 0,
+				game.winLength(), game.winner(), moveCols, moveRows, count);
+	}
+
+	/**
+	 * Appends a game given by its moves.
+	 *
+	 * @param cols   field columns, or {@code 0} with {@code rows} for an
+	 *               unbounded field
+	 * @param winner {@link Player#NONE} for a draw
+	 */
+	public synchronized void append(int cols, int rows, int winLength, Player winner,
+			int[] moveCols, int[] moveRows, int moveCount) throws IOException {
+		if (cols < 0 || rows < 0 || (cols == 0) != (rows == 0) || winLength <= 0 || moveCount < 0) {
+			throw new IllegalArgumentException("cols=" + cols + ", rows=" + rows + ", winLength=" + winLength);
+		}
+		int length = Varint.size(cols) + Varint.size(rows) + Varint.size(winLength) + 1 + Varint.size(moveCount);
+		int col = 0;
+		int row = 0;
+		for (int i = 0; i < moveCount; ++i) {
+			if (cols != 0) {
+				length += Varint.size(cell(cols, rows, moveCols[i], moveRows[i]));
+			} else {
+				length += Varint.size(Varint.zigzag(moveCols[i] - col)) + Varint.size(Varint.zigzag(moveRows[i] - row));
+				col = moveCols[i];
+				row = moveRows[i];
+			}
+		}
+		reserve(Varint.size(length) + length);
+
+		Varint.put(buffer, length);
+		Varint.put(buffer, cols);
+		Varint.put(buffer, rows);
+		Varint.put(buffer, winLength);
+		buffer.put((byte) (winner == Player.X ? 1 : winner == Player.O ? 2 : 0));
+		Varint.put(buffer, moveCount);
+		col = 0;
+		row = 0;
+		for (int i = 0; i < moveCount; ++i) {
+			if (cols != 0) {
+				Varint.put(buffer, moveRows[i] * cols + moveCols[i]);
+			} else {
+				Varint.put(buffer, Varint.zigzag(moveCols[i] - col));
+				Varint.put(buffer, Varint.zigzag(moveRows[i] - row));
+				col = moveCols[i];
+				row = moveRows[i];
+			}
+		}
+	}
+
+	private static int cell(int cols, int rows, int col, int row) {
+		if (col < 0 || col >= cols || row < 0 || row >= rows) {
+			throw new IllegalArgumentException("Move outside the field: " + col + ", " + row);
+		}
+		return row * cols + col;
+	}
+
+	/** Makes room for a record, growing the buffer for one larger than it. */
+	private void reserve(int bytes) throws IOException {
+		if (buffer.remaining() >= bytes)
+			return;
+		flush();
+		if (buffer.capacity() < bytes) {
+			buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(bytes) << 1);
+		}
+	}
+
+	/** Writes the buffered games to the file. */
+	@Override
+	public synchronized void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package archive;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Unsigned LEB128 integers: seven bits per byte, low bits first, the high
+ * bit set on every byte but the last. Signed values are zigzag-encoded
+ * first so that small negative numbers stay short.
+ */
+final class Varint {
+
+	/** Longest encoding of an {@code int}. */
+	static final int MAX_LENGTH = 5;
+
+	private Varint() {
+	}
+
+	static int size(int value) {
+		return (31 - Integer.numberOfLeadingZeros(value | 1)) / 7 + 1;
+	}
+
+	static void put(ByteBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	static int zigzag(int value) {
+		return value << 1 ^ value >> 31;
+	}
+
+	static int unzigzag(int value) {
+		return value >>> 1 ^ -(value & 1);
+	}
+}
@@ -0,0 +1,44 @@
+package domain;
+
+/**
+ * Rectangle of cells: {@code cols} columns starting at column {@code col}
+ * and {@code rows} rows starting at row {@code row}.
+ */
+public record Area(int col, int row, int cols, int rows) {
+
+	public Area {
+		if (cols <= 0 || rows <= 0) {
+			throw new IllegalArgumentException("cols=" + cols + ", rows=" + rows);
+		}
+	}
+
+	public boolean contains(int col, int row) {
+		return col >= this.col && col - this.col < cols && row >= this.row && row - this.row < rows;
+	}
+
+	/** This area grown by {@code margin} cells on every side. */
+	public Area expand(int margin) {
+		return new Area(col - margin, row - margin, cols + 2 * margin, rows + 2 * margin);
+	}
+
+	/** Smallest area holding this one and the cell. */
+	public Area including(int col, int row) {
+		final int fromCol = Math.min(this.col, col);
+		final int fromRow = Math.min(this.row, row);
+		final int toCol = Math.max(this.col + cols, col + 1);
+		final int toRow = Math.max(this.row + rows, row + 1);
+		return new Area(fromCol, fromRow, toCol - fromCol, toRow - fromRow);
+	}
+
+	/** Overlap of the two areas, or {@code null} if they do not overlap. */
+	public Area intersect(Area other) {
+		long fromCol = Math.max(col, other.col);
+		long fromRow = Math.max(row, other.row);
+		long toCol = Math.min((long) col + cols, (long) other.col + other.cols);
+		long toRow = Math.min((long) row + rows, (long) other.row + other.rows);
+		if (toCol <= fromCol || toRow <= fromRow) {
+			return null;
+		}
+		return new Area((int) fromCol, (int) fromRow, (int) (toCol - fromCol), (int) (toRow - fromRow));
+	}
+}
@@ -0,0 +1,296 @@
+package domain;
+
+import java.util.Arrays;
+
+/**
+ * Game field packed into two bitsets, one per player.
+ * <p>
+ * Cells are laid out row by row with one always-empty padding column, so a
+ * shift by {@code 1}, {@code stride}, {@code stride + 1} or {@code stride - 1}
+ * moves every cell to its neighbour along a row, a column or a diagonal without
+ * wrapping to the next row.
+ * <p>
+ * The full-board scans shift whole bitsets with a {@link LineKernel}, on SIMD
+ * vectors where the board is large enough for them to pay off.
+ * <p>
+ * Not thread-safe: the line search uses shared scratch buffers.
+ */
+public final class BitBoard implements Board {
+
+	private final int cols;
+	private final int rows;
+	private final int stride;
+	private final int words;
+
+	private final long[] xBits;
+	private final long[] oBits;
+
+	private final long[] acc;
+	private final long[] free;
+	/** Bits of real cells, without the padding column; built on first use. */
+	private long[] cells;
+	private LineKernel kernel;
+
+	public BitBoard(int cols, int rows) {
+		if (cols <= 0 || rows <= 0) {
+			throw new IllegalArgumentException("cols=" + cols + ", rows=" + rows);
+		}
+		this.cols = cols;
+		this.rows = rows;
+		this.stride = cols + 1;
+		this.words = (stride * rows + 63) >>> 6;
+		this.xBits = new long[words];
+		this.oBits = new long[words];
+		this.acc = new long[words];
+		this.free = new long[words];
+		this.kernel = LineKernel.forWords(words);
+	}
+
+	public BitBoard(BitBoard other) {
+		this(other.cols, other.rows);
+		System.arraycopy(other.xBits, 0, xBits, 0, words);
+		System.arraycopy(other.oBits, 0, oBits, 0, words);
+	}
+
+	/** Copies the marks of a board of the same size into this one. */
+	public void copyFrom(BitBoard other) {
+		if (other.cols != cols || other.rows != rows) {
+			throw new IllegalArgumentException("Board size mismatch");
+		}
+		System.arraycopy(other.xBits, 0, xBits, 0, words);
+		System.arraycopy(other.oBits, 0, oBits, 0, words);
+	}
+
+	@Override
+	public boolean isBounded() {
+		return true;
+	}
+
+	@Override
+	public int columns() {
+		return cols;
+	}
+
+	@Override
+	public int rows() {
+		return rows;
+	}
+
+	@Override
+	public boolean contains(int col, int row) {
+		return col >= 0 && col < cols && row >= 0 && row < rows;
+	}
+
+	public int cellCount() {
+		return cols * rows;
+	}
+
+	@Override
+	public int markCount() {
+		int count = 0;
+		for (int w = 0; w < words; ++w) {
+			count += Long.bitCount(xBits[w]) + Long.bitCount(oBits[w]);
+		}
+		return count;
+	}
+
+	/** Index of the cell in row-major order, as used for moves. */
+	public int cell(int col, int row) {
+		return row * cols + col;
+	}
+
+	public int column(int cell) {
+		return cell % cols;
+	}
+
+	public int row(int cell) {
+		return cell / cols;
+	}
+
+	@Override
+	public Player get(int col, int row) {
+		final int bit = bit(col, row);
+		if (test(xBits, bit))
+			return Player.X;
+		if (test(oBits, bit))
+			return Player.O;
+		return Player.NONE;
+	}
+
+	@Override
+	public boolean isEmpty(int col, int row) {
+		final int bit = bit(col, row);
+		return !test(xBits, bit) && !test(oBits, bit);
+	}
+
+	@Override
+	public void set(int col, int row, Player player) {
+		final int bit = bit(col, row);
+		final int word = bit >>> 6;
+		final long mask = 1L << bit;
+		xBits[word] &= ~mask;
+		oBits[word] &= ~mask;
+		if (player == Player.X) {
+			xBits[word] |= mask;
+		} else if (player == Player.O) {
+			oBits[word] |= mask;
+		}
+	}
+
+	@Override
+	public Area markedArea() {
+		int minCol = cols, maxCol = -1, minRow = rows, maxRow = -1;
+		for (int row = 0; row < rows; ++row) {
+			for (int col = 0; col < cols; ++col) {
+				if (!isEmpty(col, row)) {
+					minCol = Math.min(minCol, col);
+					maxCol = Math.max(maxCol, col);
+					minRow = Math.min(minRow, row);
+					maxRow = Math.max(maxRow, row);
+				}
+			}
+		}
+		return maxCol < 0 ? null : new Area(minCol, minRow, maxCol - minCol + 1, maxRow - minRow + 1);
+	}
+
+	@Override
+	public BitBoard window(Area area) {
+		if (area.col() == 0 && area.row() == 0 && area.cols() == cols && area.rows() == rows) {
+			return new BitBoard(this);
+		}
+		return Board.super.window(area);
+	}
+
+	/** Replaces the kernel chosen for the board size, to compare implementations. */
+	public void useKernel(LineKernel kernel) {
+		this.kernel = kernel;
+	}
+
+	public void clear() {
+		Arrays.fill(xBits, 0L);
+		Arrays.fill(oBits, 0L);
+	}
+
+	/**
+	 * Checks whether the player has {@code length} marks in a row anywhere on
+	 * the board.
+	 */
+	public boolean hasLine(Player player, int length) {
+		final long[] bits = bitsOf(player);
+		return hasRun(bits, 1, length)
+				|| hasRun(bits, stride, length)
+				|| hasRun(bits, stride + 1, length)
+				|| hasRun(bits, stride - 1, length);
+	}
+
+	/**
+	 * Only the four lines through the cell are inspected, so this is the
+	 * check to run after a move.
+	 */
+	@Override
+	public boolean hasLineThrough(int col, int row, Player player, int length) {
+		final long[] bits = bitsOf(player);
+		final int origin = bit(col, row);
+		if (!test(bits, origin))
+			return false;
+		return runThrough(bits, origin, 1, length)
+				|| runThrough(bits, origin, stride, length)
+				|| runThrough(bits, origin, stride + 1, length)
+				|| runThrough(bits, origin, stride - 1, length);
+	}
+
+	private boolean runThrough(long[] bits, int origin, int step, int length) {
+		final int limit = stride * rows;
+		int count = 1;
+		for (int b = origin + step; b < limit && test(bits, b); b += step) {
+			if (++count >= length)
+				return true;
+		}
+		for (int b = origin - step; b >= 0 && test(bits, b); b -= step) {
+			if (++count >= length)
+				return true;
+		}
+		return count >= length;
+	}
+
+	private boolean hasRun(long[] bits, int step, int length) {
+		System.arraycopy(bits, 0, acc, 0, words);
+		for (int i = 1; i < length; ++i) {
+			if (kernel.andShifted(acc, bits, i * step, words) == 0L)
+				return false;
+		}
+		return length > 1 || kernel.andShifted(acc, bits, 0, words) != 0L;
+	}
+
+	/**
+	 * Finds an empty cell that would give the player {@code length} marks in
+	 * a row, checking every window of every line at once.
+	 *
+	 * @return the lowest such cell as {@link #cell(int, int)}, or {@code -1}
+	 */
+	public int winningCell(Player player, int length) {
+		final long[] bits = bitsOf(player);
+		final long[] cells = cells();
+		for (int w = 0; w < words; ++w) {
+			free[w] = cells[w] & ~(xBits[w] | oBits[w]);
+		}
+		int best = Integer.MAX_VALUE;
+		for (int step : new int[] { 1, stride, stride + 1, stride - 1 }) {
+			for (int gap = 0; gap < length; ++gap) {
+				final int bit = windowWith(bits, step, length, gap);
+				if (bit >= 0) {
+					best = Math.min(best, bit + gap * step);
+				}
+			}
+			if (length == 1)
+				break;
+		}
+		return best == Integer.MAX_VALUE ? -1 : cell(best % stride, best / stride);
+	}
+
+	/**
+	 * Lowest first bit of a window along {@code step} whose cell number
+	 * {@code gap} is free and whose other cells are the player's.
+	 */
+	private int windowWith(long[] bits, int step, int length, int gap) {
+		kernel.shift(acc, free, gap * step, words);
+		for (int i = 0; i < length; ++i) {
+			if (i != gap && kernel.andShifted(acc, bits, i * step, words) == 0L)
+				return -1;
+		}
+		for (int w = 0; w < words; ++w) {
+			if (acc[w] != 0L)
+				return (w << 6) + Long.numberOfTrailingZeros(acc[w]);
+		}
+		return -1;
+	}
+
+	private long[] cells() {
+		if (cells == null) {
+			cells = new long[words];
+			for (int row = 0; row < rows; ++row) {
+				for (int col = 0; col < cols; ++col) {
+					final int bit = bit(col, row);
+					cells[bit >>> 6] |= 1L << bit;
+				}
+			}
+		}
+		return cells;
+	}
+
+	private long[] bitsOf(Player player) {
+		if (player == Player.X)
+			return xBits;
+		if (player == Player.O)
+			return oBits;
+		throw new IllegalArgumentException("player");
+	}
+
+	private int bit(int col, int row) {
+		return row * stride + col;
+	}
+
+	private static boolean test(long[] bits, int bit) {
+		return (bits[bit >>> 6] & (1L << bit)) != 0L;
+	}
+}
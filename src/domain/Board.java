@@ -0,0 +1,58 @@
+package domain;
+
+/**
+ * Storage of the marks of a game field.
+ * <p>
+ * A bounded board has cells from {@code (0, 0)} to
+ * {@code (columns() - 1, rows() - 1)}. An unbounded board accepts any
+ * {@code int} coordinates and reports {@link Integer#MAX_VALUE} as its size.
+ */
+public interface Board {
+
+	boolean isBounded();
+
+	int columns();
+
+	int rows();
+
+	boolean contains(int col, int row);
+
+	Player get(int col, int row);
+
+	default boolean isEmpty(int col, int row) {
+		return get(col, row) == Player.NONE;
+	}
+
+	/** Places a mark; {@link Player#NONE} clears the cell. */
+	void set(int col, int row, Player player);
+
+	int markCount();
+
+	/**
+	 * Checks whether the mark at the given cell is part of a line of at least
+	 * {@code length} marks of the player.
+	 */
+	boolean hasLineThrough(int col, int row, Player player, int length);
+
+	/**
+	 * @return an area containing all marks, or {@code null} if the board is
+	 *         empty; may be larger than the tight bounding box
+	 */
+	Area markedArea();
+
+	/**
+	 * Copies the marks inside the area into a new {@link BitBoard} whose cell
+	 * {@code (0, 0)} is the top-left corner of the area.
+	 */
+	default BitBoard window(Area area) {
+		var window = new BitBoard(area.cols(), area.rows());
+		for (int row = 0; row < area.rows(); ++row) {
+			for (int col = 0; col < area.cols(); ++col) {
+				if (contains(area.col() + col, area.row() + row)) {
+					window.set(col, row, get(area.col() + col, area.row() + row));
+				}
+			}
+		}
+		return window;
+	}
+}
@@ -0,0 +1,84 @@
+package domain;
+
+import java.util.Arrays;
+
+/**
+ * Cell changes held back during an event batch, one entry per cell with its
+ * latest state, in the order the cells first changed.
+ */
+final class CellBatch {
+
+	private int[] cols = new int[16];
+	private int[] rows = new int[16];
+	private Player[] states = new Player[16];
+	private int size;
+
+	/** Open-addressing index from the packed cell to its entry plus one. */
+	private long[] keys = new long[32];
+	private int[] entries = new int[32];
+
+	int size() {
+		return size;
+	}
+
+	int col(int i) {
+		return cols[i];
+	}
+
+	int row(int i) {
+		return rows[i];
+	}
+
+	Player state(int i) {
+		return states[i];
+	}
+
+	void add(int col, int row, Player state) {
+		final long key = (long) row << 32 | (col & 0xFFFFFFFFL);
+		int slot = slot(key);
+		while (entries[slot] != 0) {
+			if (keys[slot] == key) {
+				states[entries[slot] - 1] = state;
+				return;
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		if (size == cols.length) {
+			cols = Arrays.copyOf(cols, size * 2);
+			rows = Arrays.copyOf(rows, size * 2);
+			states = Arrays.copyOf(states, size * 2);
+		}
+		cols[size] = col;
+		rows[size] = row;
+		states[size] = state;
+		keys[slot] = key;
+		entries[slot] = ++size;
+		if (2 * size > keys.length) {
+			rehash(keys.length * 2);
+		}
+	}
+
+	void clear() {
+		Arrays.fill(states, 0, size, null);
+		Arrays.fill(entries, 0);
+		size = 0;
+	}
+
+	private int slot(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+	}
+
+	private void rehash(int capacity) {
+		keys = new long[capacity];
+		entries = new int[capacity];
+		for (int i = 0; i < size; ++i) {
+			final long key = (long) rows[i] << 32 | (cols[i] & 0xFFFFFFFFL);
+			int slot = slot(key);
+			while (entries[slot] != 0) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			keys[slot] = key;
+			entries[slot] = i + 1;
+		}
+	}
+}
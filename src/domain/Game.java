@@ -1,87 +1,289 @@
 package domain;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.Random;
-
-import javax.swing.SwingUtilities;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import domain.ai.AiStrategy;
+import domain.ai.EasyStrategy;
+import domain.event.CellChangedCallback;
 import domain.event.CellChangedEvent;
 import domain.event.CellChangedListener;
 import domain.event.GameOverEvent;
 import domain.event.GameOverListener;
-
+import metrics.Log;
+import metrics.Metrics;
+
+/**
+ * A game on one field: turns, undo and redo, the AI reply and the events.
+ * <p>
+ * Single writer: moves, undo, redo and event batches must all come from one
+ * thread, the event thread. After every change the game publishes an
+ * immutable {@link GameSnapshot} through a volatile field, so renderers,
+ * spectators and analyzers on other threads read a consistent position
+ * from {@link #snapshot()} without locking. The other getters read the
+ * latest snapshot too, but two calls may see different moves.
+ */
 public class Game {
 
-	private static record Position(int col, int row) {
-	}
+	/** Runs tasks in the calling thread. */
+	public static final Executor DIRECT = Runnable::run;
+
+	/** Larger bounded boards are shown to the AI only around the marks. */
+	private static final int FULL_AI_VIEW_MAX_CELLS = 19 * 19;
+
+	// snapshots replaced on registration, so dispatch needs neither a lock nor an iterator
+	private volatile GameOverListener[] gameOverListeners = {};
+	private volatile CellChangedListener[] cellChangedListeners = {};
+	private volatile CellChangedCallback[] cellChangedCallbacks = {};
 
-	private final ArrayList<GameOverListener> gameOverListeners = new ArrayList<>();
-	private final ArrayList<CellChangedListener> cellChangedListeners = new ArrayList<>();
+	private int batchDepth;
+	private final CellBatch batch = new CellBatch();
+	private boolean gameOverPending;
 
 	private final int fieldCols;
 	private final int fieldRows;
 	private final int winLength;
 
-	private final Player[][] field;
+	private final Board field;
+
+	private final AiStrategy aiStrategy;
+	private final Executor aiExecutor;
+	private final Executor eventExecutor;
+	private volatile FutureTask<Integer> pendingAiTurn;
+	private volatile boolean cancelled;
+	/** Thinks during the human's turn, or {@code null} for no pondering. */
+	private AiStrategy ponderStrategy;
+	private Ponder ponder;
+	/** When the human move the AI is answering was made, or {@code 0}. */
+	private long humanMoveNanos;
 
 	private final Player aiPlayer;
 	private final Player humanPlayer;
 	private Player whoseTurn;
 	private Player winner;
-
-	private static final Random random = new Random();
+	private final MoveStack history = new MoveStack();
+	private volatile GameSnapshot snapshot = GameSnapshot.EMPTY;
 
 	public Game(int fieldCols, int fieldRows, int winLength, Player humanPlayer) {
+		this(fieldCols, fieldRows, winLength, humanPlayer, new EasyStrategy());
+	}
+
+	public Game(int fieldCols, int fieldRows, int winLength, Player humanPlayer, AiStrategy aiStrategy) {
+		this(fieldCols, fieldRows, winLength, humanPlayer, aiStrategy, DIRECT, DIRECT);
+	}
+
+	/**
+	 * @param aiExecutor    runs the AI search and pondering one task at a
+	 *                      time, e.g. a single-thread executor: both may use
+	 *                      the strategy, which need not be thread-safe
+	 * @param eventExecutor applies AI moves and notifies listeners; all calls
+	 *                      to {@link #humanTurn} must come from the same thread
+	 */
+	public Game(int fieldCols, int fieldRows, int winLength, Player humanPlayer, AiStrategy aiStrategy,
+			Executor aiExecutor, Executor eventExecutor) {
+		this(new BitBoard(fieldCols, fieldRows), winLength, humanPlayer, aiStrategy, aiExecutor, eventExecutor);
+	}
+
+	/**
+	 * Starts a game on the given empty board, e.g. a {@link SparseBoard} for
+	 * large or unbounded fields. The AI executor must run its tasks one at a
+	 * time, as above.
+	 */
+	public Game(Board field, int winLength, Player humanPlayer, AiStrategy aiStrategy,
+			Executor aiExecutor, Executor eventExecutor) {
+		this(Objects.requireNonNull(aiStrategy), field, winLength, humanPlayer, aiExecutor, eventExecutor);
 		if (humanPlayer == Player.NONE) {
 			throw new IllegalArgumentException("humanPlayer");
 		}
+		if (aiPlayer == whoseTurn) {
+			aiTurn();
+		}
+	}
+
+	/**
+	 * Starts a game between people on the given empty board. With
+	 * {@code localPlayer} {@link Player#NONE} both sides move through
+	 * {@link #humanTurn}; otherwise {@link #humanTurn} accepts only the local
+	 * player's moves and the opponent's come through {@link #makeMove}, e.g.
+	 * from the network. Events are raised in the calling thread.
+	 */
+	public Game(Board field, int winLength, Player localPlayer) {
+		this(null, field, winLength, localPlayer, DIRECT, DIRECT);
+	}
+
+	private Game(AiStrategy aiStrategy, Board field, int winLength, Player humanPlayer,
+			Executor aiExecutor, Executor eventExecutor) {
+		if (field.markCount() != 0) {
+			throw new IllegalArgumentException("field is not empty");
+		}
 
-		this.fieldCols = fieldCols;
-		this.fieldRows = fieldRows;
+		this.field = field;
+		this.fieldCols = field.columns();
+		this.fieldRows = field.rows();
 		this.winLength = winLength;
 		this.humanPlayer = humanPlayer;
-		this.aiPlayer = humanPlayer == Player.X ? Player.O : Player.X;
+		this.aiPlayer = aiStrategy == null ? Player.NONE : humanPlayer == Player.X ? Player.O : Player.X;
+		this.aiStrategy = aiStrategy;
+		this.aiExecutor = Objects.requireNonNull(aiExecutor);
+		this.eventExecutor = Objects.requireNonNull(eventExecutor);
 
-		this.field = new Player[fieldRows][fieldCols];
-		for (int row = 0; row < fieldRows; ++row) {
-			for (int col = 0; col < fieldCols; ++col) {
-				field[row][col] = Player.NONE;
-			}
-		}
 
 		this.winner = Player.NONE;
 		this.whoseTurn = Player.X;
+	}
 
-		if (aiPlayer == whoseTurn) {
-			SwingUtilities.invokeLater(() -> aiTurn());
+	/**
+	 * Sets up a recorded game between people for stepping through it: the
+	 * board starts empty and {@link #redoMove} plays the moves one by one.
+	 *
+	 * @throws IllegalArgumentException if a move is outside the field, on a
+	 *                                  taken cell or after the game is over
+	 */
+	public static Game replay(Board field, int winLength, int[] cols, int[] rows, int count) {
+		var game = new Game(field, winLength, Player.NONE);
+		for (int i = 0; i < count; ++i) {
+			final int col = cols[i];
+			final int row = rows[i];
+			if (game.whoseTurn == Player.NONE || !game.isValidCell(col, row) || !game.isEmptyCell(col, row)) {
+				throw new IllegalArgumentException("Illegal move " + (i + 1) + ": " + col + ", " + row);
+			}
+			final Player player = game.whoseTurn;
+			game.history.push(col, row);
+			field.set(col, row, player);
+			if (!game.checkGameOver(player, col, row)) {
+				game.whoseTurn = player == Player.X ? Player.O : Player.X;
+			}
 		}
+		while (game.history.canUndo()) {
+			game.history.pop();
+			field.set(game.history.col(game.history.size()), game.history.row(game.history.size()), Player.NONE);
+		}
+		game.whoseTurn = Player.X;
+		game.winner = Player.NONE;
+		return game;
 	}
 
+	/** {@link Player#NONE} in a game between people. */
 	public Player aiPlayer() {
 		return aiPlayer;
 	}
 
+	/** {@link Player#NONE} if both sides play at this computer. */
 	public Player humanPlayer() {
 		return humanPlayer;
 	}
 
+	/** Whether the opponent's moves come from outside through {@link #makeMove}. */
+	public boolean hasRemoteOpponent() {
+		return aiStrategy == null && humanPlayer != Player.NONE;
+	}
+
+	/** The position after the last change; safe to call from any thread. */
+	public GameSnapshot snapshot() {
+		return snapshot;
+	}
+
 	public Player whoseTurn() {
-		return whoseTurn;
+		return snapshot.whoseTurn();
 	}
 
 	public Player winner() {
-		return winner;
+		return snapshot.winner();
+	}
+
+	/** Whether the AI is computing a move that has not been applied yet. */
+	public boolean isAiThinking() {
+		return pendingAiTurn != null;
+	}
+
+	/**
+	 * Stops the AI search in progress, if any, and drops its move. The game
+	 * accepts no more turns afterwards.
+	 */
+	public void cancel() {
+		cancelled = true;
+		dropAiTurn();
+	}
+
+	/**
+	 * Lets the AI think during the human's turn, see {@link Ponder}: a move it
+	 * predicted is answered at once. Useful only with an AI executor other
+	 * than {@link #DIRECT}; call on the event thread.
+	 */
+	public void setPondering(boolean pondering) {
+		setPondering(pondering ? aiStrategy : null);
+	}
+
+	/**
+	 * Ponders with a strategy of its own, for strategies that keep state
+	 * between the moves of one side or report on each search: pondering
+	 * asks for the moves of both. It runs on the AI executor as well;
+	 * {@code null} stops pondering.
+	 */
+	public void setPondering(AiStrategy strategy) {
+		stopPondering();
+		ponderStrategy = aiStrategy != null ? strategy : null;
+		startPondering();
+	}
+
+	public boolean isPondering() {
+		return ponderStrategy != null;
 	}
 
 	public boolean isGameOver() {
-		return whoseTurn == Player.NONE;
+		return snapshot.isGameOver();
+	}
+
+	/** Number of marks on the field. */
+	public int moveCount() {
+		return snapshot.moveCount();
+	}
+
+	/** Column of a move, {@code index < moveCount()}, in the order played; on the event thread only. */
+	public int moveColumn(int index) {
+		Objects.checkIndex(index, history.size());
+		return history.col(index);
+	}
+
+	/** Row of a move, {@code index < moveCount()}, in the order played; on the event thread only. */
+	public int moveRow(int index) {
+		Objects.checkIndex(index, history.size());
+		return history.row(index);
+	}
+
+	public int winLength() {
+		return winLength;
+	}
+
+	public boolean canUndo() {
+		return !cancelled && !hasRemoteOpponent() && history.canUndo();
+	}
+
+	public boolean canRedo() {
+		return !cancelled && !hasRemoteOpponent() && history.canRedo();
+	}
+
+	/** Whether the field has fixed dimensions; otherwise it extends without limit. */
+	public boolean isFieldBounded() {
+		return field.isBounded();
 	}
 
+	/** Area containing all marks, or {@code null} before the first move. */
+	public Area markedArea() {
+		return snapshot.markedArea();
+	}
+
+	/** {@link Integer#MAX_VALUE} for an unbounded field. */
 	public int fieldColumns() {
 		return fieldCols;
 	}
 
+	/** {@link Integer#MAX_VALUE} for an unbounded field. */
 	public int fieldRows() {
 		return fieldRows;
 	}
@@ -91,116 +293,448 @@ public class Game {
 		if (!isValidCell(col, row)) {
 			throw new IndexOutOfBoundsException();
 		}
-		return field[row][col];
+		return snapshot.cellState(col, row);
 	}
 
 	public synchronized void addGameOverListener(GameOverListener listener) {
-		gameOverListeners.add(Objects.requireNonNull(listener));
+		gameOverListeners = append(gameOverListeners, Objects.requireNonNull(listener));
 	}
 
 	public synchronized void addCellChangedListener(CellChangedListener listener) {
-		cellChangedListeners.add(Objects.requireNonNull(listener));
+		cellChangedListeners = append(cellChangedListeners, Objects.requireNonNull(listener));
+	}
+
+	/** Like {@link #addCellChangedListener}, without an event object per change. */
+	public synchronized void addCellChangedCallback(CellChangedCallback callback) {
+		cellChangedCallbacks = append(cellChangedCallbacks, Objects.requireNonNull(callback));
+	}
+
+	/**
+	 * Holds back cell change notifications until the matching
+	 * {@link #endEventBatch}, which then reports each changed cell once, with
+	 * its final state, followed by game over if the game has ended. Batches
+	 * nest; they must be opened and closed on the event thread.
+	 */
+	public void beginEventBatch() {
+		++batchDepth;
+	}
+
+	public void endEventBatch() {
+		if (batchDepth == 0) {
+			throw new IllegalStateException("No event batch in progress");
+		}
+		if (--batchDepth > 0)
+			return;
+		for (int i = 0; i < batch.size(); ++i) {
+			dispatchCellChanged(batch.col(i), batch.row(i), batch.state(i));
+		}
+		batch.clear();
+		if (gameOverPending) {
+			gameOverPending = false;
+			if (whoseTurn == Player.NONE) {
+				dispatchGameOver();
+			}
+		}
 	}
 
-	private synchronized void notifyCellChanged(final CellChangedEvent e) {
-		System.out.println("Raise Cell Changed");
-		cellChangedListeners.forEach(l -> l.cellChanged(e));
+	private void notifyCellChanged(int col, int row, Player state) {
+		if (batchDepth > 0) {
+			batch.add(col, row, state);
+		} else {
+			dispatchCellChanged(col, row, state);
+		}
 	}
 
-	private synchronized void notifyGameOver(final GameOverEvent e) {
-		System.out.println("Raise Game Over");
-		gameOverListeners.forEach(l -> l.gameOver(e));
+	private void notifyGameOver() {
+		if (batchDepth > 0) {
+			gameOverPending = true;
+		} else {
+			dispatchGameOver();
+		}
+	}
+
+	private void dispatchCellChanged(int col, int row, Player state) {
+		final long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+		for (var callback : cellChangedCallbacks) {
+			callback.cellChanged(this, col, row, state);
+		}
+		final var listeners = cellChangedListeners;
+		if (listeners.length > 0) {
+			final var e = new CellChangedEvent(this, col, row, state);
+			for (var listener : listeners) {
+				listener.cellChanged(e);
+			}
+		}
+		Metrics.DISPATCH_TIME.recordSince(start);
+	}
+
+	private void dispatchGameOver() {
+		final long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+		final var listeners = gameOverListeners;
+		if (listeners.length > 0) {
+			final var e = new GameOverEvent(this, winner);
+			for (var listener : listeners) {
+				listener.gameOver(e);
+			}
+		}
+		Metrics.DISPATCH_TIME.recordSince(start);
+	}
+
+	private static <T> T[] append(T[] array, T element) {
+		final T[] copy = Arrays.copyOf(array, array.length + 1);
+		copy[array.length] = element;
+		return copy;
 	}
 
 	/* Game & field logic */
 
 	public void humanTurn(int col, int row) {
 
-		if (whoseTurn != humanPlayer)
+		if (!isHumanTurn() || cancelled)
+			return;
+		// a click on a taken cell is no move and leaves pondering running
+		if (isValidCell(col, row) && !isEmptyCell(col, row))
 			return;
+		final Ponder.Prediction predicted = takePrediction(col, row);
+		if (!makeMove(col, row))
+			return;
+
+		humanMoveNanos = System.nanoTime();
+		if (predicted != null) {
+			aiTurn(predicted);
+		} else {
+			aiTurn();
+		}
+	}
+
+	/**
+	 * Puts the mark of the player to move on the cell and passes the turn,
+	 * without asking the AI to reply. A pending AI move is dropped.
+	 *
+	 * @return {@code false} if the cell is taken or the game is over
+	 */
+	public boolean makeMove(int col, int row) {
+
+		if (whoseTurn == Player.NONE || cancelled)
+			return false;
 		if (!isValidCell(col, row))
 			throw new IndexOutOfBoundsException();
 		if (!isEmptyCell(col, row))
-			return;
+			return false;
 
-		field[row][col] = humanPlayer;
-		notifyCellChanged(new CellChangedEvent(this, col, row, humanPlayer));
-		if (checkGameOver(humanPlayer)) {
-			notifyGameOver(new GameOverEvent(this, winner));
-			return;
+		dropAiTurn();
+		history.push(col, row);
+		Metrics.MOVES.increment();
+		applyMove(col, row);
+		if (whoseTurn == Player.NONE) {
+			Metrics.GAMES.increment();
+			Metrics.MOVES_PER_GAME.record(history.size());
+			if (Log.ENABLED) {
+				Log.event("gameOver", "winner", winner, "moves", history.size());
+			}
 		}
-		whoseTurn = aiPlayer;
+		return true;
+	}
 
-		aiTurn();
+	/**
+	 * Takes back the last move and gives the turn back to its player. The
+	 * move can be replayed with {@link #redoMove} until another one is made.
+	 *
+	 * @return {@code false} if there is nothing to undo
+	 */
+	public boolean unmakeMove() {
+
+		if (!canUndo())
+			return false;
+
+		takeBackLast();
+		return true;
 	}
 
-	private void aiTurn() {
+	/**
+	 * Takes back the local player's last move after the remote side refused
+	 * it, in a game where {@link #unmakeMove} is not allowed.
+	 *
+	 * @return {@code false} if the last move is not the local player's
+	 */
+	public boolean retractMove() {
 
-		if (whoseTurn != aiPlayer)
-			return;
+		if (!hasRemoteOpponent() || cancelled || !history.canUndo()
+				|| MoveStack.playerAt(history.size() - 1) != humanPlayer)
+			return false;
+
+		takeBackLast();
+		return true;
+	}
+
+	private void takeBackLast() {
+		dropAiTurn();
+		history.pop();
+		final int index = history.size();
+		final int col = history.col(index);
+		final int row = history.row(index);
+		field.set(col, row, Player.NONE);
+		whoseTurn = MoveStack.playerAt(index);
+		winner = Player.NONE;
+		publish(col, row, Player.NONE);
+		notifyCellChanged(col, row, Player.NONE);
+	}
+
+	/**
+	 * Replays the last undone move.
+	 *
+	 * @return {@code false} if there is nothing to redo
+	 */
+	public boolean redoMove() {
+
+		if (!canRedo())
+			return false;
 
-		var turnPos = turnAiWinCell();
-		if (turnPos == null) {
-			turnPos = turnHumanWinCell();
+		dropAiTurn();
+		final int index = history.size();
+		history.redo();
+		applyMove(history.col(index), history.row(index));
+		return true;
+	}
+
+	/**
+	 * Takes back moves up to and including the last move of the human.
+	 *
+	 * @return {@code false} if the human has not moved yet
+	 */
+	public boolean undoTurn() {
+
+		if (aiStrategy == null)
+			return canUndo() && unmakeMove();
+
+		final int size = history.size();
+		final int lastHuman = MoveStack.playerAt(size - 1) == humanPlayer ? size - 1 : size - 2;
+		if (cancelled || lastHuman < 0)
+			return false;
+
+		beginEventBatch();
+		try {
+			while (history.size() > lastHuman) {
+				unmakeMove();
+			}
+		} finally {
+			endEventBatch();
 		}
-		if (turnPos == null) {
+		startPondering();
+		return true;
+	}
 
-			int col, row;
-			do {
-				col = random.nextInt(fieldCols);
-				row = random.nextInt(fieldRows);
-				
-			} while (!isEmptyCell(col, row));
+	/**
+	 * Replays the human move undone last together with the AI reply, or asks
+	 * the AI for a new reply if there was none.
+	 *
+	 * @return {@code false} if there is nothing to redo
+	 */
+	public boolean redoTurn() {
+
+		if (aiStrategy == null)
+			return canRedo() && redoMove();
+		if (whoseTurn != humanPlayer || !canRedo())
+			return false;
 
-			field[row][col] = aiPlayer;
-			turnPos = new Position(col, row);
+		beginEventBatch();
+		try {
+			redoMove();
+			if (whoseTurn == aiPlayer && history.canRedo()) {
+				redoMove();
+			}
+		} finally {
+			endEventBatch();
 		}
+		aiTurn();
+		startPondering();
+		return true;
+	}
 
-		notifyCellChanged(new CellChangedEvent(this, turnPos.col, turnPos.row, aiPlayer));
-		if (checkGameOver(aiPlayer)) {
-			notifyGameOver(new GameOverEvent(this, winner));
+	private void applyMove(int col, int row) {
+
+		final Player player = whoseTurn;
+		field.set(col, row, player);
+		final boolean over = checkGameOver(player, col, row);
+		if (!over) {
+			whoseTurn = player == Player.X ? Player.O : Player.X;
+		}
+		publish(col, row, player);
+		notifyCellChanged(col, row, player);
+		if (over) {
+			notifyGameOver();
+		}
+	}
+
+	/** Makes the change of the cell visible to other threads, before anyone is told of it. */
+	private void publish(int col, int row, Player state) {
+		snapshot = snapshot.with(col, row, state, whoseTurn, winner);
+	}
+
+	/** Forgets the AI move being computed, if any, and stops pondering. */
+	private void dropAiTurn() {
+		var task = pendingAiTurn;
+		pendingAiTurn = null;
+		if (task != null) {
+			task.cancel(true);
+		}
+		humanMoveNanos = 0;
+		stopPondering();
+	}
+
+	/**
+	 * Ponders on the part of the field the AI would see now, keeping a margin
+	 * around it so that the reply to each predicted move gets the same view
+	 * as after a real move there.
+	 */
+	private void startPondering() {
+		if (ponderStrategy == null || whoseTurn != humanPlayer || cancelled || ponder != null)
 			return;
+		final Area marked = field.markedArea();
+		final Area view = aiView(marked);
+		final Area around = aiView(view);
+		ponder = new Ponder(ponderStrategy, field.window(around), around, view,
+				(col, row) -> aiView(marked == null ? new Area(col, row, 1, 1) : marked.including(col, row)),
+				humanPlayer, aiPlayer, winLength);
+		ponder.start(aiExecutor);
+	}
+
+	private void stopPondering() {
+		if (ponder != null) {
+			ponder.cancel();
+			ponder = null;
 		}
-		whoseTurn = humanPlayer;
 	}
 
-	private Position turnAiWinCell() {
+	/** Ends pondering before the human move is made; {@code null} if it was not predicted. */
+	private Ponder.Prediction takePrediction(int col, int row) {
+		if (ponder == null)
+			return null;
+		final boolean predicting = ponder.hasPredictions();
+		final var prediction = ponder.take(col, row);
+		ponder = null;
+		if (prediction != null) {
+			Metrics.PONDER_HITS.increment();
+		} else if (predicting) {
+			Metrics.PONDER_MISSES.increment();
+		}
+		return prediction;
+	}
 
-		for (int row = 0; row < fieldRows; ++row) {
-			for (int col = 0; col < fieldCols; ++col) {
-				if (isEmptyCell(col, row)) {
-					field[row][col] = aiPlayer;
-					if (checkWin(aiPlayer)) {
-						return new Position(col, row);
-					}
-					field[row][col] = Player.NONE;
+	private void aiTurn() {
+
+		if (aiStrategy == null || whoseTurn != aiPlayer || cancelled)
+			return;
+
+		final Area view = aiView();
+		final BitBoard position = field.window(view);
+		submitAiTurn(view, position, () -> thinkAiTurn(position));
+	}
+
+	/**
+	 * Answers a predicted move with the reply found while pondering; the task
+	 * runs after the pondering one, so the reply is there unless the strategy
+	 * failed.
+	 */
+	private void aiTurn(Ponder.Prediction predicted) {
+		if (whoseTurn != aiPlayer || cancelled)
+			return;
+		submitAiTurn(predicted.view, predicted.position, () -> {
+			final int reply = predicted.reply;
+			return reply != Ponder.Prediction.PENDING ? reply : thinkAiTurn(predicted.position);
+		});
+	}
+
+	private void submitAiTurn(Area view, BitBoard position, Callable<Integer> think) {
+		var task = new FutureTask<Integer>(think) {
+			@Override
+			protected void done() {
+				if (!isCancelled()) {
+					eventExecutor.execute(() -> applyAiTurn(this, view, position));
 				}
 			}
+		};
+		pendingAiTurn = task;
+		aiExecutor.execute(task);
+	}
+
+	private int thinkAiTurn(BitBoard position) {
+		final long start = System.nanoTime();
+		final int cell = aiStrategy.chooseMove(position, aiPlayer, winLength);
+		final long elapsed = System.nanoTime() - start;
+		Metrics.AI_THINK_TIME.record(elapsed);
+		Metrics.AI_MOVES.increment();
+		if (Log.ENABLED) {
+			Log.event("aiMove", "cell", cell, "micros", elapsed / 1000, "marks", position.markCount());
 		}
-		return null;
+		return cell;
 	}
 
-	private Position turnHumanWinCell() {
+	/**
+	 * Part of the field the AI strategy gets to see: the whole field if it is
+	 * small, otherwise the marks with a margin of {@code winLength} cells.
+	 */
+	private Area aiView() {
+		return aiView(field.markedArea());
+	}
 
-		for (int row = 0; row < fieldRows; ++row) {
-			for (int col = 0; col < fieldCols; ++col) {
-				if (isEmptyCell(col, row)) {
-					field[row][col] = humanPlayer;
-					if (checkWin(humanPlayer)) {
-						field[row][col] = aiPlayer;
-						return new Position(col, row);
-					}
-					field[row][col] = Player.NONE;
-				}
-			}
+	/**
+	 * The view for marks in the given area, {@code null} for none. Reads only
+	 * the field size, so pondering may call it on the AI thread.
+	 */
+	private Area aiView(Area marked) {
+		final Area whole = field.isBounded() ? new Area(0, 0, fieldCols, fieldRows) : null;
+		if (whole != null && (long) fieldCols * fieldRows <= FULL_AI_VIEW_MAX_CELLS) {
+			return whole;
+		}
+		if (marked == null) {
+			marked = whole != null ? new Area(fieldCols / 2, fieldRows / 2, 1, 1) : new Area(0, 0, 1, 1);
+		}
+		final Area view = marked.expand(winLength);
+		return whole != null ? view.intersect(whole) : view;
+	}
+
+	private void applyAiTurn(FutureTask<Integer> task, Area view, BitBoard position) {
+
+		if (task != pendingAiTurn || cancelled)
+			return;
+		pendingAiTurn = null;
+
+		int cell;
+		try {
+			cell = task.get();
+		} catch (CancellationException e) {
+			return;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("AI strategy failed", e.getCause());
 		}
-		return null;
+		if (cell < 0 || cell >= position.cellCount()) {
+			throw new IllegalStateException("AI strategy chose an illegal cell: " + cell);
+		}
+		int col = view.col() + position.column(cell);
+		int row = view.row() + position.row(cell);
+		// makeMove drops the timestamp along with the AI turn it is answered by
+		final long answeredNanos = humanMoveNanos;
+		if (!makeMove(col, row)) {
+			throw new IllegalStateException("AI strategy chose an occupied cell: " + cell);
+		}
+		if (answeredNanos != 0) {
+			Metrics.AI_REPLY_LATENCY.recordSince(answeredNanos);
+		}
+		startPondering();
 	}
 
-	private boolean checkGameOver(Player player) {
+	private boolean isHumanTurn() {
+		return whoseTurn == humanPlayer || humanPlayer == Player.NONE && whoseTurn != Player.NONE;
+	}
+
+	private boolean checkGameOver(Player player, int col, int row) {
 		assert player != Player.NONE : "Illegal player value";
 
-		if (checkWin(player)) {
+		if (checkWin(player, col, row)) {
 			whoseTurn = Player.NONE;
 			winner = player;
 			return true;
@@ -215,60 +749,23 @@ public class Game {
 		return false;
 	}
 
-	private boolean checkWin(Player player) {
-
-		for (int col = 0; col < fieldCols; ++col) {
-			for (int row = 0; row < fieldRows; ++row) {
-
-				if (checkLine(col, row, 1, 0, winLength, player))
-					return true;
-
-				if (checkLine(col, row, 1, 1, winLength, player))
-					return true;
-
-				if (checkLine(col, row, 0, 1, winLength, player))
-					return true;
-
-				if (checkLine(col, row, 1, -1, winLength, player))
-					return true;
-			}
-		}
+	private boolean checkWin(Player player, int col, int row) {
 
-		return false;
-	}
-
-	private boolean checkLine(int col, int row, int dRow, int dCol, int len, Player player) {
-		final int farRow = row + (len - 1) * dRow;
-		final int farCol = col + (len - 1) * dCol;
-		if (!isValidCell(farCol, farRow)) {
-			return false;
-		}
-		for (int i = 0; i < len; ++i) {
-			if (field[row + i * dRow][col + i * dCol] != player) {
-				return false;
-			}
-		}
-		return true;
+		return field.hasLineThrough(col, row, player, winLength);
 	}
 
 	private boolean isFieldFull() {
 
-		for (int row = 0; row < fieldRows; ++row) {
-			for (int col = 0; col < fieldCols; ++col) {
-				if (field[row][col] == Player.NONE)
-					return false;
-			}
-		}
-		return true;
+		return field.isBounded() && history.size() == (long) fieldCols * fieldRows;
 	}
 
 	private boolean isValidCell(int col, int row) {
 
-		return col >= 0 && col < fieldCols && row >= 0 && row < fieldRows;
+		return field.contains(col, row);
 	}
 
 	private boolean isEmptyCell(int col, int row) {
 
-		return field[row][col] == Player.NONE;
+		return field.isEmpty(col, row);
 	}
 }
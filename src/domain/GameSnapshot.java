@@ -0,0 +1,183 @@
+package domain;
+
+/**
+ * Immutable state of a {@link Game} after one of its moves: the marks, the
+ * player to move and the winner. Safe to read from any thread without
+ * locking.
+ * <p>
+ * The marks are kept in 8×8 tiles of two bit masks, found through a small
+ * open-addressing table. A move copies the table and the one tile it
+ * changes; all other tiles are shared with the previous snapshot, so
+ * publishing a move costs a few hundred bytes whatever the size of the
+ * field.
+ */
+public final class GameSnapshot {
+
+	static final GameSnapshot EMPTY = new GameSnapshot(new long[4], new Tile[4], 0, 0, 0L,
+			Player.X, Player.NONE, null);
+
+	private static final int TILE_SHIFT = 3;
+	private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+
+	private final long[] keys;
+	private final Tile[] tiles;
+	private final int tileCount;
+	private final int markCount;
+	private final long version;
+	private final Player whoseTurn;
+	private final Player winner;
+	private final Area markedArea;
+
+	private GameSnapshot(long[] keys, Tile[] tiles, int tileCount, int markCount, long version,
+			Player whoseTurn, Player winner, Area markedArea) {
+		this.keys = keys;
+		this.tiles = tiles;
+		this.tileCount = tileCount;
+		this.markCount = markCount;
+		this.version = version;
+		this.whoseTurn = whoseTurn;
+		this.winner = winner;
+		this.markedArea = markedArea;
+	}
+
+	/** 64 cells, row-major; immutable once published. */
+	private static final class Tile {
+
+		static final Tile EMPTY = new Tile(0L, 0L);
+
+		final long x;
+		final long o;
+
+		Tile(long x, long o) {
+			this.x = x;
+			this.o = o;
+		}
+	}
+
+	/** The mark on the cell; {@link Player#NONE} also for cells outside the field. */
+	public Player cellState(int col, int row) {
+		final Tile tile = tile(key(col, row));
+		if (tile == null)
+			return Player.NONE;
+		final long bit = bit(col, row);
+		return (tile.x & bit) != 0 ? Player.X : (tile.o & bit) != 0 ? Player.O : Player.NONE;
+	}
+
+	/** {@link Player#NONE} once the game is over. */
+	public Player whoseTurn() {
+		return whoseTurn;
+	}
+
+	/** {@link Player#NONE} while the game goes on and after a draw. */
+	public Player winner() {
+		return winner;
+	}
+
+	public boolean isGameOver() {
+		return whoseTurn == Player.NONE;
+	}
+
+	/** Number of marks on the field. */
+	public int moveCount() {
+		return markCount;
+	}
+
+	/** Area containing all marks, or {@code null} if there are none; may be larger than needed after undo. */
+	public Area markedArea() {
+		return markedArea;
+	}
+
+	/** Grows with every change of the game, including undo, so readers can tell snapshots apart. */
+	public long version() {
+		return version;
+	}
+
+	/** This snapshot with the cell set to {@code state} and the turn and winner replaced. */
+	GameSnapshot with(int col, int row, Player state, Player whoseTurn, Player winner) {
+		final long key = key(col, row);
+		final long bit = bit(col, row);
+
+		long[] newKeys = keys;
+		Tile[] newTiles = tiles;
+		int newTileCount = tileCount;
+		int slot = find(keys, tiles, key);
+		if (tiles[slot] == null) {
+			if (2 * (tileCount + 1) > keys.length) {
+				newKeys = new long[keys.length * 2];
+				newTiles = new Tile[keys.length * 2];
+				for (int i = 0; i < keys.length; ++i) {
+					if (tiles[i] != null) {
+						final int to = find(newKeys, newTiles, keys[i]);
+						newKeys[to] = keys[i];
+						newTiles[to] = tiles[i];
+					}
+				}
+				slot = find(newKeys, newTiles, key);
+			} else {
+				newKeys = keys.clone();
+				newTiles = tiles.clone();
+			}
+			newKeys[slot] = key;
+			newTiles[slot] = Tile.EMPTY;
+			++newTileCount;
+		} else {
+			newTiles = tiles.clone();
+		}
+
+		final Tile old = newTiles[slot];
+		final boolean wasMarked = ((old.x | old.o) & bit) != 0;
+		final long x = state == Player.X ? old.x | bit : old.x & ~bit;
+		final long o = state == Player.O ? old.o | bit : old.o & ~bit;
+		newTiles[slot] = new Tile(x, o);
+
+		final int newMarkCount = markCount + (state != Player.NONE ? 1 : 0) - (wasMarked ? 1 : 0);
+		Area area = markedArea;
+		if (newMarkCount == 0) {
+			area = null;
+		} else if (state != Player.NONE) {
+			area = include(area, col, row);
+		}
+		return new GameSnapshot(newKeys, newTiles, newTileCount, newMarkCount, version + 1,
+				whoseTurn, winner, area);
+	}
+
+	private static Area include(Area area, int col, int row) {
+		if (area == null)
+			return new Area(col, row, 1, 1);
+		if (area.contains(col, row))
+			return area;
+		final int fromCol = Math.min(area.col(), col);
+		final int fromRow = Math.min(area.row(), row);
+		final int toCol = Math.max(area.col() + area.cols() - 1, col);
+		final int toRow = Math.max(area.row() + area.rows() - 1, row);
+		return new Area(fromCol, fromRow, toCol - fromCol + 1, toRow - fromRow + 1);
+	}
+
+	private Tile tile(long key) {
+		return tiles[find(keys, tiles, key)];
+	}
+
+	/** Slot holding the key, or the empty slot where it belongs. */
+	private static int find(long[] keys, Tile[] tiles, long key) {
+		final int mask = keys.length - 1;
+		int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+		while (tiles[slot] != null && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static long key(int col, int row) {
+		return ((long) (row >> TILE_SHIFT) << 32) | ((col >> TILE_SHIFT) & 0xFFFFFFFFL);
+	}
+
+	private static long bit(int col, int row) {
+		return 1L << (((row & TILE_MASK) << TILE_SHIFT) | (col & TILE_MASK));
+	}
+
+	@Override
+	public String toString() {
+		return "GameSnapshot[version=" + version + ", moves=" + markCount + ", turn=" + whoseTurn
+				+ ", winner=" + winner + ", tiles=" + tileCount + "/" + keys.length + "]";
+	}
+}
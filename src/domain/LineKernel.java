@@ -0,0 +1,99 @@
+package domain;
+
+/**
+ * Word-parallel steps of the line scans of {@link BitBoard}: shifting a whole
+ * bitset along a direction and intersecting it with another one.
+ * <p>
+ * This class is the scalar implementation, one {@code long} per step. When
+ * the JVM runs with {@code --add-modules jdk.incubator.vector}, a subclass
+ * does the same with SIMD vectors of several words; without the module, or
+ * with {@code -Dboard.vector=false}, the scalar one is used.
+ */
+public class LineKernel {
+
+	private static final LineKernel SCALAR = new LineKernel();
+	private static final LineKernel VECTOR = loadVector();
+
+	LineKernel() {
+	}
+
+	public static LineKernel scalar() {
+		return SCALAR;
+	}
+
+	/** The vector implementation, or {@code null} if it cannot be used. */
+	public static LineKernel vector() {
+		return VECTOR;
+	}
+
+	/** The implementation that is faster for bitsets of this many words. */
+	static LineKernel forWords(int words) {
+		return VECTOR != null && words >= VECTOR.minWords() ? VECTOR : SCALAR;
+	}
+
+	private static LineKernel loadVector() {
+		if ("false".equals(System.getProperty("board.vector"))
+				|| ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+			return null;
+		try {
+			return (LineKernel) Class.forName("domain.VectorLineKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/** Bitsets shorter than this are left to the scalar code. */
+	int minWords() {
+		return 1;
+	}
+
+	public String name() {
+		return "scalar";
+	}
+
+	/**
+	 * {@code dst = src >>> shift} over the first {@code words} words, so bit
+	 * {@code b} of {@code dst} is bit {@code b + shift} of {@code src}.
+	 */
+	void shift(long[] dst, long[] src, int shift, int words) {
+		shift(dst, src, shift, words, 0);
+	}
+
+	/**
+	 * {@code acc &= src >>> shift} over the first {@code words} words.
+	 *
+	 * @return the bitwise or of the resulting words, zero once nothing is left
+	 */
+	long andShifted(long[] acc, long[] src, int shift, int words) {
+		return andShifted(acc, src, shift, words, 0);
+	}
+
+	/** {@link #shift} from word {@code from} on. */
+	static void shift(long[] dst, long[] src, int shift, int words, int from) {
+		final int wordShift = shift >>> 6;
+		final int bitShift = shift & 63;
+		for (int w = from; w < words; ++w) {
+			dst[w] = shiftedWord(src, w + wordShift, bitShift, words);
+		}
+	}
+
+	/** {@link #andShifted} from word {@code from} on. */
+	static long andShifted(long[] acc, long[] src, int shift, int words, int from) {
+		final int wordShift = shift >>> 6;
+		final int bitShift = shift & 63;
+		long any = 0L;
+		for (int w = from; w < words; ++w) {
+			acc[w] &= shiftedWord(src, w + wordShift, bitShift, words);
+			any |= acc[w];
+		}
+		return any;
+	}
+
+	private static long shiftedWord(long[] src, int from, int bitShift, int words) {
+		long value = from < words ? src[from] >>> bitShift : 0L;
+		if (bitShift != 0 && from + 1 < words) {
+			value |= src[from + 1] << (64 - bitShift);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,63 @@
+package domain;
+
+import java.util.Arrays;
+
+/**
+ * Moves of a game in order, with the undone ones kept for redo until a new
+ * move is pushed. Moves alternate starting with X, so only the cells are
+ * stored; the arrays grow by doubling and are never allocated per move.
+ */
+final class MoveStack {
+
+	private int[] cols = new int[64];
+	private int[] rows = new int[64];
+	private int size;
+	private int limit;
+
+	/** Number of moves played and not undone. */
+	int size() {
+		return size;
+	}
+
+	boolean canUndo() {
+		return size > 0;
+	}
+
+	boolean canRedo() {
+		return size < limit;
+	}
+
+	/** Player of the move at the given position. */
+	static Player playerAt(int index) {
+		return (index & 1) == 0 ? Player.X : Player.O;
+	}
+
+	/** Appends a move and drops the undone ones. */
+	void push(int col, int row) {
+		if (size == cols.length) {
+			cols = Arrays.copyOf(cols, size * 2);
+			rows = Arrays.copyOf(rows, size * 2);
+		}
+		cols[size] = col;
+		rows[size] = row;
+		limit = ++size;
+	}
+
+	/** Undoes the last move; its cell stays readable at index {@code size()}. */
+	void pop() {
+		--size;
+	}
+
+	/** Replays the move at {@code size()}. */
+	void redo() {
+		++size;
+	}
+
+	int col(int index) {
+		return cols[index];
+	}
+
+	int row(int index) {
+		return rows[index];
+	}
+}
@@ -0,0 +1,162 @@
+package domain;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import domain.ai.AiStrategy;
+
+/**
+ * Thinking on the human's time: asks a strategy, by default the game's own,
+ * which move it would make for the human, computes the AI reply to that move,
+ * then predicts the human's next most likely move and so on, up to
+ * {@value #MAX_PREDICTIONS} moves. A human move that was predicted is
+ * answered with the reply already computed.
+ * <p>
+ * Runs as one task on the AI executor, which must not run it alongside an
+ * AI move: both may use the same strategy and its tables. The next prediction
+ * is taken with the earlier predicted cells filled with the human's marks, so
+ * the strategy names a different cell that still suits the human.
+ */
+final class Ponder {
+
+	static final int MAX_PREDICTIONS = 3;
+
+	/** A likely human move, in field coordinates, and the AI reply to it once computed. */
+	static final class Prediction {
+
+		static final int PENDING = -2;
+
+		final int col;
+		final int row;
+		/** Part of the field seen by the AI, with the predicted move made. */
+		final Area view;
+		final BitBoard position;
+		/** Cell of {@link #position}, {@code -1} if there is none, or {@link #PENDING}. */
+		volatile int reply = PENDING;
+
+		Prediction(int col, int row, Area view, BitBoard position) {
+			this.col = col;
+			this.row = row;
+			this.view = view;
+			this.position = position;
+		}
+	}
+
+	/** Where the AI would look after a human move at the cell, in field coordinates. */
+	interface Views {
+		Area after(int col, int row);
+	}
+
+	private final AiStrategy strategy;
+	/** The field around {@link #view}, holding the view of every reply. */
+	private final BitBoard around;
+	private final Area aroundArea;
+	private final Area view;
+	private final Views views;
+	private final Player human;
+	private final Player ai;
+	private final int winLength;
+
+	private final FutureTask<Void> task = new FutureTask<>(this::run, null);
+	private volatile Prediction[] predictions = {};
+	/** Lets the prediction being computed finish, but starts no other. */
+	private volatile boolean finishing;
+
+	/**
+	 * @param around     the field inside {@code aroundArea}, with the human to
+	 *                   move
+	 * @param view       the part of the field the human move is predicted on
+	 * @param views      the part the AI replies on, which must lie within
+	 *                   {@code aroundArea}
+	 */
+	Ponder(AiStrategy strategy, BitBoard around, Area aroundArea, Area view, Views views, Player human, Player ai,
+			int winLength) {
+		this.strategy = strategy;
+		this.around = around;
+		this.aroundArea = aroundArea;
+		this.view = view;
+		this.views = views;
+		this.human = human;
+		this.ai = ai;
+		this.winLength = winLength;
+	}
+
+	void start(Executor executor) {
+		executor.execute(task);
+	}
+
+	/** Whether any move has been predicted yet. */
+	boolean hasPredictions() {
+		return predictions.length > 0;
+	}
+
+	/**
+	 * Stops pondering once the reply to the predicted move is ready.
+	 *
+	 * @return the prediction of the move, or {@code null} if it was not
+	 *         predicted, in which case pondering is {@link #cancel cancelled}
+	 */
+	Prediction take(int col, int row) {
+		for (var prediction : predictions) {
+			if (prediction.col == col && prediction.row == row) {
+				finishing = true;
+				if (prediction.reply != Prediction.PENDING) {
+					// already answered: the next prediction is not needed
+					task.cancel(true);
+				}
+				return prediction;
+			}
+		}
+		cancel();
+		return null;
+	}
+
+	/** Interrupts the search in progress and drops all predictions. */
+	void cancel() {
+		finishing = true;
+		task.cancel(true);
+	}
+
+	private void run() {
+		final var guess = window(view);
+		for (int i = 0; i < MAX_PREDICTIONS && !finishing; ++i) {
+			final int cell = strategy.chooseMove(new BitBoard(guess), human, winLength);
+			if (Thread.currentThread().isInterrupted() || finishing || cell < 0 || cell >= guess.cellCount())
+				return;
+			final int col = guess.column(cell);
+			final int row = guess.row(cell);
+			if (!guess.isEmpty(col, row))
+				return;
+			guess.set(col, row, human);
+
+			final int fieldCol = view.col() + col;
+			final int fieldRow = view.row() + row;
+			final Area replyView = views.after(fieldCol, fieldRow);
+			final var after = window(replyView);
+			final int replyCol = fieldCol - replyView.col();
+			final int replyRow = fieldRow - replyView.row();
+			after.set(replyCol, replyRow, human);
+			if (after.hasLineThrough(replyCol, replyRow, human, winLength) || after.markCount() == after.cellCount())
+				continue;
+			final var prediction = new Prediction(fieldCol, fieldRow, replyView, after);
+			predictions = append(predictions, prediction);
+			final int reply = strategy.chooseMove(new BitBoard(after), ai, winLength);
+			if (Thread.currentThread().isInterrupted())
+				return;
+			prediction.reply = reply;
+		}
+	}
+
+	/** The part of the field in the area, which lies within {@link #aroundArea}. */
+	private BitBoard window(Area area) {
+		return around.window(new Area(area.col() - aroundArea.col(), area.row() - aroundArea.row(), area.cols(),
+				area.rows()));
+	}
+
+	private static Prediction[] append(Prediction[] array, Prediction prediction) {
+		final Prediction[] copy = Arrays.copyOf(array, array.length + 1);
+		copy[array.length] = prediction;
+		return copy;
+	}
+}
@@ -0,0 +1,197 @@
+package domain;
+
+/**
+ * Board that stores only occupied cells, in an open-addressing hash map from
+ * a packed {@code long} coordinate to the player. Memory grows with the
+ * number of marks, not with the board area, so it also backs unbounded
+ * boards.
+ */
+public final class SparseBoard implements Board {
+
+	private static final int MIN_CAPACITY = 64;
+
+	private static final byte EMPTY = 0;
+	private static final byte X = 1;
+	private static final byte O = 2;
+
+	private static final int[][] DIRECTIONS = { { 1, 0 }, { 0, 1 }, { 1, 1 }, { 1, -1 } };
+
+	private final boolean bounded;
+	private final int cols;
+	private final int rows;
+
+	private long[] keys = new long[MIN_CAPACITY];
+	private byte[] values = new byte[MIN_CAPACITY];
+	private int shift = 64 - Integer.numberOfTrailingZeros(MIN_CAPACITY);
+	private int size;
+
+	private int minCol = Integer.MAX_VALUE;
+	private int maxCol = Integer.MIN_VALUE;
+	private int minRow = Integer.MAX_VALUE;
+	private int maxRow = Integer.MIN_VALUE;
+
+	/** Creates an unbounded board. */
+	public SparseBoard() {
+		this.bounded = false;
+		this.cols = Integer.MAX_VALUE;
+		this.rows = Integer.MAX_VALUE;
+	}
+
+	public SparseBoard(int cols, int rows) {
+		if (cols <= 0 || rows <= 0) {
+			throw new IllegalArgumentException("cols=" + cols + ", rows=" + rows);
+		}
+		this.bounded = true;
+		this.cols = cols;
+		this.rows = rows;
+	}
+
+	@Override
+	public boolean isBounded() {
+		return bounded;
+	}
+
+	@Override
+	public int columns() {
+		return cols;
+	}
+
+	@Override
+	public int rows() {
+		return rows;
+	}
+
+	@Override
+	public boolean contains(int col, int row) {
+		return !bounded || (col >= 0 && col < cols && row >= 0 && row < rows);
+	}
+
+	@Override
+	public Player get(int col, int row) {
+		final byte value = values[find(key(col, row))];
+		return value == X ? Player.X : value == O ? Player.O : Player.NONE;
+	}
+
+	@Override
+	public boolean isEmpty(int col, int row) {
+		return values[find(key(col, row))] == EMPTY;
+	}
+
+	@Override
+	public void set(int col, int row, Player player) {
+		final long key = key(col, row);
+		final int slot = find(key);
+		if (player == Player.NONE) {
+			if (values[slot] != EMPTY) {
+				remove(slot);
+			}
+			return;
+		}
+		if (values[slot] == EMPTY) {
+			keys[slot] = key;
+			++size;
+			minCol = Math.min(minCol, col);
+			maxCol = Math.max(maxCol, col);
+			minRow = Math.min(minRow, row);
+			maxRow = Math.max(maxRow, row);
+		}
+		values[slot] = player == Player.X ? X : O;
+		if (size * 2 > keys.length) {
+			resize(keys.length * 2);
+		}
+	}
+
+	@Override
+	public int markCount() {
+		return size;
+	}
+
+	@Override
+	public boolean hasLineThrough(int col, int row, Player player, int length) {
+		if (get(col, row) != player)
+			return false;
+		for (int[] dir : DIRECTIONS) {
+			int count = 1;
+			for (int i = 1; count < length && get(col + dir[0] * i, row + dir[1] * i) == player; ++i) {
+				++count;
+			}
+			for (int i = 1; count < length && get(col - dir[0] * i, row - dir[1] * i) == player; ++i) {
+				++count;
+			}
+			if (count >= length)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Bounding box of all marks ever placed; clearing cells does not shrink
+	 * it.
+	 */
+	@Override
+	public Area markedArea() {
+		if (size == 0) {
+			return null;
+		}
+		return new Area(minCol, minRow, maxCol - minCol + 1, maxRow - minRow + 1);
+	}
+
+	/*
+	 * Hash map internals: linear probing with backward-shift deletion.
+	 */
+
+	private static long key(int col, int row) {
+		return ((long) row << 32) | (col & 0xFFFFFFFFL);
+	}
+
+	private int home(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+
+	/** Slot holding the key, or the empty slot where it would go. */
+	private int find(long key) {
+		final int mask = keys.length - 1;
+		int slot = home(key);
+		while (values[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void remove(int slot) {
+		final int mask = keys.length - 1;
+		values[slot] = EMPTY;
+		--size;
+		int next = slot;
+		while (true) {
+			next = (next + 1) & mask;
+			if (values[next] == EMPTY)
+				return;
+			final int home = home(keys[next]);
+			final boolean movable = slot <= next
+					? home <= slot || home > next
+					: home <= slot && home > next;
+			if (movable) {
+				keys[slot] = keys[next];
+				values[slot] = values[next];
+				values[next] = EMPTY;
+				slot = next;
+			}
+		}
+	}
+
+	private void resize(int capacity) {
+		final long[] oldKeys = keys;
+		final byte[] oldValues = values;
+		keys = new long[capacity];
+		values = new byte[capacity];
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldValues[i] != EMPTY) {
+				final int slot = find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package domain;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link LineKernel} on the widest SIMD vectors of the CPU. Each step loads
+ * the source words at the word offset of the shift and at the next one and
+ * combines them with two lane-wise shifts; the words past the last full
+ * vector are left to the scalar code.
+ * <p>
+ * Loaded by reflection, only when the {@code jdk.incubator.vector} module is
+ * present.
+ */
+final class VectorLineKernel extends LineKernel {
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+	private static final int LANES = SPECIES.length();
+
+	@Override
+	int minWords() {
+		return 2 * LANES;
+	}
+
+	@Override
+	public String name() {
+		return "vector" + SPECIES.vectorBitSize();
+	}
+
+	@Override
+	void shift(long[] dst, long[] src, int shift, int words) {
+		final int wordShift = shift >>> 6;
+		final int bitShift = shift & 63;
+		final int end = words - wordShift - (bitShift == 0 ? 0 : 1) - LANES;
+		int w = 0;
+		for (; w <= end; w += LANES) {
+			shifted(src, w + wordShift, bitShift).intoArray(dst, w);
+		}
+		shift(dst, src, shift, words, w);
+	}
+
+	@Override
+	long andShifted(long[] acc, long[] src, int shift, int words) {
+		final int wordShift = shift >>> 6;
+		final int bitShift = shift & 63;
+		final int end = words - wordShift - (bitShift == 0 ? 0 : 1) - LANES;
+		var any = LongVector.zero(SPECIES);
+		int w = 0;
+		for (; w <= end; w += LANES) {
+			var result = LongVector.fromArray(SPECIES, acc, w).and(shifted(src, w + wordShift, bitShift));
+			result.intoArray(acc, w);
+			any = any.or(result);
+		}
+		return any.reduceLanes(VectorOperators.OR) | andShifted(acc, src, shift, words, w);
+	}
+
+	private static LongVector shifted(long[] src, int from, int bitShift) {
+		final var low = LongVector.fromArray(SPECIES, src, from);
+		if (bitShift == 0)
+			return low;
+		return low.lanewise(VectorOperators.LSHR, bitShift)
+				.or(LongVector.fromArray(SPECIES, src, from + 1).lanewise(VectorOperators.LSHL, 64 - bitShift));
+	}
+}
@@ -0,0 +1,19 @@
+package domain.ai;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Chooses the AI move for a position.
+ * <p>
+ * The board passed in is a private copy: a strategy may mutate it while
+ * searching as long as it returns the chosen cell.
+ */
+public interface AiStrategy {
+
+	/**
+	 * @return the chosen cell as {@link BitBoard#cell(int, int)}, or {@code -1}
+	 *         if the board has no empty cell
+	 */
+	int chooseMove(BitBoard board, Player player, int winLength);
+}
@@ -0,0 +1,48 @@
+package domain.ai;
+
+import java.util.Objects;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Remembers the moves of any strategy in an {@link EvaluationCache}, so a
+ * position seen before, in this game or another, is answered without asking
+ * the strategy again. Only worth it for strategies that would choose the same
+ * move again anyway.
+ */
+public class CachingStrategy implements AiStrategy {
+
+	/** Never replaced by a search result for the same key. */
+	private static final int MOVE_DEPTH = 255;
+
+	private final AiStrategy strategy;
+	private final EvaluationCache cache;
+	private final long namespace;
+
+	/**
+	 * @param name keeps the moves apart from those of differently configured
+	 *             strategies using the same cache
+	 */
+	public CachingStrategy(AiStrategy strategy, EvaluationCache cache, String name) {
+		this.strategy = Objects.requireNonNull(strategy);
+		this.cache = Objects.requireNonNull(cache);
+		this.namespace = Zobrist.mix(name.hashCode() * 0x9E3779B97F4A7C15L + name.length());
+	}
+
+	@Override
+	public int chooseMove(BitBoard board, Player player, int winLength) {
+		final long key = EvaluationCache.key(board, player, winLength) ^ namespace;
+		final long entry = cache.probe(key);
+		if (entry != EvaluationCache.MISS) {
+			final int move = TranspositionTable.move(entry);
+			if (move >= 0 && move < board.cellCount() && board.isEmpty(board.column(move), board.row(move)))
+				return move;
+		}
+		final int move = strategy.chooseMove(board, player, winLength);
+		if (move >= 0) {
+			cache.store(key, TranspositionTable.pack(move, MOVE_DEPTH, TranspositionTable.EXACT, 0, 0));
+		}
+		return move;
+	}
+}
@@ -0,0 +1,332 @@
+package domain.ai;
+
+import java.util.Arrays;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Incrementally maintained move candidates and line threats of a position.
+ * <p>
+ * Candidates are the empty cells within {@code radius} of a mark, kept in an
+ * unordered list with O(1) insertion and removal. Threats are counted per
+ * window of {@code winLength} cells along rows, columns and diagonals: a
+ * window with {@code n} marks of one player and none of the other is an open
+ * line of {@code n} for that player. Each open line adds its
+ * {@link PatternWeights} to running sums as it is counted, so
+ * {@link #evaluate} costs nothing more than a subtraction.
+ * <p>
+ * {@link #make} and {@link #unmake} touch only the cells around the move and
+ * the windows through it, so evaluation costs depend on the number of marks
+ * rather than on the board area.
+ */
+public final class CandidateIndex {
+
+	static final int MAX_SCORE = SearchStrategy.WIN / 4;
+
+	private static final int[][] DIRECTIONS = { { 1, 0 }, { 0, 1 }, { 1, 1 }, { 1, -1 } };
+
+	private static final byte EMPTY = 0;
+	private static final byte X = 1;
+	private static final byte O = 2;
+
+	private final int cols;
+	private final int rows;
+	private final int cellCount;
+	private final int winLength;
+	private final int radius;
+
+	private final byte[] cells;
+	private final short[] neighbours;
+	private final int[] candidates;
+	private final int[] candidateSlot;
+	private int candidateCount;
+
+	/** Windows through each cell: {@code windowIds[windowStart[cell] .. windowStart[cell + 1])}. */
+	private final int[] windowStart;
+	private final int[] windowIds;
+	private final byte[] xCounts;
+	private final byte[] oCounts;
+	/** Open lines by player code and number of marks. */
+	private final int[][] openLines;
+
+	/** Move ordering weights, by the marks a window would hold after the move. */
+	private final int[] weights;
+	/** Evaluation weights of a window by mark count, for the side to move and against it. */
+	private final int[] ownWeights;
+	private final int[] opponentWeights;
+	/** Sums of the open lines of each player code weighted as the side to move and as the opponent. */
+	private final long[] ownScores = new long[3];
+	private final long[] opponentScores = new long[3];
+
+	public CandidateIndex(int cols, int rows, int winLength, int radius) {
+		this(cols, rows, winLength, radius, PatternWeights.shared());
+	}
+
+	public CandidateIndex(int cols, int rows, int winLength, int radius, PatternWeights patterns) {
+		if (winLength <= 0 || winLength > Byte.MAX_VALUE) {
+			throw new IllegalArgumentException("winLength");
+		}
+		this.cols = cols;
+		this.rows = rows;
+		this.cellCount = cols * rows;
+		this.winLength = winLength;
+		this.radius = radius;
+
+		this.cells = new byte[cellCount];
+		this.neighbours = new short[cellCount];
+		this.candidates = new int[cellCount];
+		this.candidateSlot = new int[cellCount];
+		Arrays.fill(candidateSlot, -1);
+
+		this.windowStart = new int[cellCount + 1];
+		int total = 0;
+		for (int cell = 0; cell < cellCount; ++cell) {
+			windowStart[cell] = total;
+			total += forEachWindow(cell, null, 0);
+		}
+		windowStart[cellCount] = total;
+		this.windowIds = new int[total];
+		for (int cell = 0; cell < cellCount; ++cell) {
+			forEachWindow(cell, windowIds, windowStart[cell]);
+		}
+		this.xCounts = new byte[DIRECTIONS.length * cellCount];
+		this.oCounts = new byte[DIRECTIONS.length * cellCount];
+		this.openLines = new int[3][winLength + 1];
+
+		this.weights = new int[winLength + 1];
+		for (int count = 1; count < winLength; ++count) {
+			weights[count] = 1 << Math.min(3 * (count - 1), 15);
+		}
+		weights[winLength] = 1 << 20;
+
+		this.ownWeights = new int[winLength + 1];
+		this.opponentWeights = new int[winLength + 1];
+		for (int count = 1; count < winLength; ++count) {
+			ownWeights[count] = patterns.own(winLength, count);
+			opponentWeights[count] = patterns.opponent(winLength, count);
+		}
+		ownWeights[winLength] = weights[winLength];
+		opponentWeights[winLength] = weights[winLength];
+	}
+
+	/** Index of the marks already on the board. */
+	public static CandidateIndex of(BitBoard board, int winLength, int radius) {
+		return of(board, winLength, radius, PatternWeights.shared());
+	}
+
+	public static CandidateIndex of(BitBoard board, int winLength, int radius, PatternWeights patterns) {
+		var index = new CandidateIndex(board.columns(), board.rows(), winLength, radius, patterns);
+		for (int cell = 0; cell < index.cellCount; ++cell) {
+			Player player = board.get(board.column(cell), board.row(cell));
+			if (player != Player.NONE) {
+				index.make(cell, player);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Lists the ids of the windows containing the cell into {@code out}, if
+	 * given. A window id is {@code direction * cellCount + firstCell}.
+	 *
+	 * @return number of windows
+	 */
+	private int forEachWindow(int cell, int[] out, int offset) {
+		final int col = cell % cols;
+		final int row = cell / cols;
+		int count = 0;
+		for (int d = 0; d < DIRECTIONS.length; ++d) {
+			final int dc = DIRECTIONS[d][0];
+			final int dr = DIRECTIONS[d][1];
+			for (int back = 0; back < winLength; ++back) {
+				final int startCol = col - dc * back;
+				final int startRow = row - dr * back;
+				final int endCol = startCol + dc * (winLength - 1);
+				final int endRow = startRow + dr * (winLength - 1);
+				if (startCol < 0 || endCol >= cols
+						|| Math.min(startRow, endRow) < 0 || Math.max(startRow, endRow) >= rows)
+					continue;
+				if (out != null) {
+					out[offset + count] = d * cellCount + startRow * cols + startCol;
+				}
+				++count;
+			}
+		}
+		return count;
+	}
+
+	public int columns() {
+		return cols;
+	}
+
+	public int rows() {
+		return rows;
+	}
+
+	public boolean isEmpty(int cell) {
+		return cells[cell] == EMPTY;
+	}
+
+	public int candidateCount() {
+		return candidateCount;
+	}
+
+	public int candidate(int i) {
+		return candidates[i];
+	}
+
+	public boolean isCandidate(int cell) {
+		return candidateSlot[cell] >= 0;
+	}
+
+	/** Number of windows holding exactly {@code marks} of the player and none of the opponent. */
+	public int openLines(Player player, int marks) {
+		return openLines[code(player)][marks];
+	}
+
+	/** Whether placing the player's mark on the empty cell completes a line. */
+	public boolean completesLine(int cell, Player player) {
+		final byte[] own = player == Player.X ? xCounts : oCounts;
+		final byte[] other = player == Player.X ? oCounts : xCounts;
+		for (int i = windowStart[cell]; i < windowStart[cell + 1]; ++i) {
+			final int window = windowIds[i];
+			if (own[window] == winLength - 1 && other[window] == 0)
+				return true;
+		}
+		return false;
+	}
+
+	public void make(int cell, Player player) {
+		final byte code = code(player);
+		cells[cell] = code;
+		removeCandidate(cell);
+		touchNeighbours(cell, 1);
+		final byte[] counts = code == X ? xCounts : oCounts;
+		for (int i = windowStart[cell]; i < windowStart[cell + 1]; ++i) {
+			final int window = windowIds[i];
+			uncount(window);
+			++counts[window];
+			count(window);
+		}
+	}
+
+	public void unmake(int cell, Player player) {
+		final byte code = code(player);
+		final byte[] counts = code == X ? xCounts : oCounts;
+		for (int i = windowStart[cell]; i < windowStart[cell + 1]; ++i) {
+			final int window = windowIds[i];
+			uncount(window);
+			--counts[window];
+			count(window);
+		}
+		touchNeighbours(cell, -1);
+		cells[cell] = EMPTY;
+		if (neighbours[cell] > 0) {
+			addCandidate(cell);
+		}
+	}
+
+	/**
+	 * @return score of the position from the point of view of {@code side},
+	 *         from the open line counts alone
+	 */
+	public int evaluate(Player side) {
+		final long score = ownScores[code(side)] - opponentScores[code(opponent(side))];
+		return (int) Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score));
+	}
+
+	/**
+	 * Scores an empty cell by how much playing it extends the side's open
+	 * windows and blocks the opponent's. Winning and blocking cells come out
+	 * on top.
+	 */
+	public int threat(int cell, Player side) {
+		final byte[] own = side == Player.X ? xCounts : oCounts;
+		final byte[] other = side == Player.X ? oCounts : xCounts;
+		long attack = 0;
+		long defence = 0;
+		for (int i = windowStart[cell]; i < windowStart[cell + 1]; ++i) {
+			final int window = windowIds[i];
+			if (other[window] == 0) {
+				attack += weights[own[window] + 1];
+			} else if (own[window] == 0) {
+				defence += weights[other[window] + 1];
+			}
+		}
+		return (int) Math.min(Integer.MAX_VALUE / 2, 2 * attack + defence);
+	}
+
+	private void uncount(int window) {
+		final int x = xCounts[window];
+		final int o = oCounts[window];
+		if (o == 0 && x > 0) {
+			--openLines[X][x];
+			ownScores[X] -= ownWeights[x];
+			opponentScores[X] -= opponentWeights[x];
+		} else if (x == 0 && o > 0) {
+			--openLines[O][o];
+			ownScores[O] -= ownWeights[o];
+			opponentScores[O] -= opponentWeights[o];
+		}
+	}
+
+	private void count(int window) {
+		final int x = xCounts[window];
+		final int o = oCounts[window];
+		if (o == 0 && x > 0) {
+			++openLines[X][x];
+			ownScores[X] += ownWeights[x];
+			opponentScores[X] += opponentWeights[x];
+		} else if (x == 0 && o > 0) {
+			++openLines[O][o];
+			ownScores[O] += ownWeights[o];
+			opponentScores[O] += opponentWeights[o];
+		}
+	}
+
+	private void touchNeighbours(int cell, int delta) {
+		final int col = cell % cols;
+		final int row = cell / cols;
+		final int fromRow = Math.max(0, row - radius);
+		final int toRow = Math.min(rows - 1, row + radius);
+		final int fromCol = Math.max(0, col - radius);
+		final int toCol = Math.min(cols - 1, col + radius);
+		for (int r = fromRow; r <= toRow; ++r) {
+			for (int c = fromCol; c <= toCol; ++c) {
+				final int other = r * cols + c;
+				neighbours[other] += delta;
+				if (cells[other] != EMPTY)
+					continue;
+				if (neighbours[other] == 0) {
+					removeCandidate(other);
+				} else if (candidateSlot[other] < 0) {
+					addCandidate(other);
+				}
+			}
+		}
+	}
+
+	private void addCandidate(int cell) {
+		candidateSlot[cell] = candidateCount;
+		candidates[candidateCount++] = cell;
+	}
+
+	private void removeCandidate(int cell) {
+		final int slot = candidateSlot[cell];
+		if (slot < 0)
+			return;
+		final int last = candidates[--candidateCount];
+		candidates[slot] = last;
+		candidateSlot[last] = slot;
+		candidateSlot[cell] = -1;
+	}
+
+	private static byte code(Player player) {
+		return player == Player.X ? X : O;
+	}
+
+	static Player opponent(Player player) {
+		return player == Player.X ? Player.O : Player.X;
+	}
+}
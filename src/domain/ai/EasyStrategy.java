@@ -0,0 +1,53 @@
+package domain.ai;
+
+import java.util.Random;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Takes a winning cell, otherwise blocks the opponent's winning cell,
+ * otherwise plays a random empty cell.
+ */
+public class EasyStrategy implements AiStrategy {
+
+	private final Random random;
+
+	public EasyStrategy() {
+		this(new Random());
+	}
+
+	public EasyStrategy(Random random) {
+		this.random = random;
+	}
+
+	@Override
+	public int chooseMove(BitBoard board, Player player, int winLength) {
+		int cell = board.winningCell(player, winLength);
+		if (cell < 0) {
+			cell = board.winningCell(opponent(player), winLength);
+		}
+		if (cell < 0) {
+			cell = randomEmptyCell(board);
+		}
+		return cell;
+	}
+
+	private int randomEmptyCell(BitBoard board) {
+		final int empty = board.cellCount() - board.markCount();
+		if (empty == 0) {
+			return -1;
+		}
+		int skip = random.nextInt(empty);
+		for (int cell = 0; cell < board.cellCount(); ++cell) {
+			if (board.isEmpty(board.column(cell), board.row(cell)) && skip-- == 0) {
+				return cell;
+			}
+		}
+		throw new IllegalStateException("Empty cell count mismatch");
+	}
+
+	static Player opponent(Player player) {
+		return player == Player.X ? Player.O : Player.X;
+	}
+}
@@ -0,0 +1,203 @@
+package domain.ai;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Search results shared by every game and thread of the process, so that
+ * self-play and new games do not search the same positions again.
+ * <p>
+ * Keys are the Zobrist hash of the position mixed with the board size, the
+ * win length and the side to move; values are {@link TranspositionTable}
+ * entries. Slots are grouped into buckets of {@value #WAYS}; a full bucket
+ * evicts with CLOCK: the hand skips and clears entries hit since it last
+ * passed, and new entries start unreferenced, so a burst of one-off
+ * positions cannot push out the ones that keep being hit.
+ * <p>
+ * Lock-free like {@link TranspositionTable}: a slot stores its entry with
+ * {@code key ^ entry}, and a probe racing with a store sees a miss.
+ */
+public final class EvaluationCache {
+
+	public static final long DEFAULT_MAX_BYTES = 32L << 20;
+
+	static final long MISS = TranspositionTable.MISS;
+
+	private static final int WAYS = 8;
+	private static final int SLOT_BYTES = 2 * Long.BYTES + 1;
+	private static final int MAX_BUCKETS = 1 << 26;
+
+	private static final long SIZE_SEED = 0xD6E8FEB86659FD93L;
+	private static final long O_TO_MOVE = Zobrist.mix(0xA0761D6478BD642FL);
+
+	private final AtomicLongArray checks;
+	private final AtomicLongArray entries;
+	private final byte[] referenced;
+	private final byte[] hands;
+	private final int bucketMask;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxBytes memory to use at most, rounded down to a power-of-two
+	 *                 number of buckets
+	 */
+	public EvaluationCache(long maxBytes) {
+		if (maxBytes < WAYS * SLOT_BYTES) {
+			throw new IllegalArgumentException("maxBytes");
+		}
+		final int buckets = (int) Math.min(MAX_BUCKETS, Long.highestOneBit(maxBytes / (WAYS * SLOT_BYTES)));
+		checks = new AtomicLongArray(buckets * WAYS);
+		entries = new AtomicLongArray(buckets * WAYS);
+		referenced = new byte[buckets * WAYS];
+		hands = new byte[buckets];
+		bucketMask = buckets - 1;
+	}
+
+	/**
+	 * The process-wide cache, sized by {@code -Dai.cache.mb} (32 MB by
+	 * default).
+	 *
+	 * @return {@code null} if disabled with {@code -Dai.cache.mb=0}
+	 */
+	public static EvaluationCache shared() {
+		return Shared.INSTANCE;
+	}
+
+	private static final class Shared {
+		static final EvaluationCache INSTANCE = create(Long.getLong("ai.cache.mb", DEFAULT_MAX_BYTES >> 20));
+
+		private static EvaluationCache create(long megabytes) {
+			return megabytes > 0 ? new EvaluationCache(megabytes << 20) : null;
+		}
+	}
+
+	public int capacity() {
+		return entries.length();
+	}
+
+	public long memoryBytes() {
+		return (long) capacity() * SLOT_BYTES + hands.length;
+	}
+
+	/** Key of the position with {@code side} to move. */
+	public static long key(BitBoard board, Player side, int winLength) {
+		long hash = 0L;
+		for (int cell = 0; cell < board.cellCount(); ++cell) {
+			final Player player = board.get(board.column(cell), board.row(cell));
+			if (player != Player.NONE) {
+				hash ^= Zobrist.keyOf(cell, player);
+			}
+		}
+		return key(hash, salt(board.columns(), board.rows(), winLength), side);
+	}
+
+	/** Part of the key shared by all positions of one board size and win length. */
+	static long salt(int cols, int rows, int winLength) {
+		return Zobrist.mix(SIZE_SEED ^ ((long) cols << 40 | (long) rows << 20 | winLength));
+	}
+
+	/** @param hash Zobrist hash of the position as kept by the search */
+	static long key(long hash, long salt, Player side) {
+		return hash ^ salt ^ (side == Player.O ? O_TO_MOVE : 0L);
+	}
+
+	/**
+	 * @return the stored {@link TranspositionTable} entry, or {@link #MISS}
+	 */
+	long probe(long key) {
+		final int base = bucket(key);
+		for (int slot = base; slot < base + WAYS; ++slot) {
+			final long entry = entries.getOpaque(slot);
+			if (entry != MISS && (checks.getOpaque(slot) ^ entry) == key) {
+				referenced[slot] = 1;
+				hits.increment();
+				return entry;
+			}
+		}
+		misses.increment();
+		return MISS;
+	}
+
+	/**
+	 * Stores the entry, replacing one for the same key unless that was
+	 * searched deeper.
+	 */
+	void store(long key, long entry) {
+		final int base = bucket(key);
+		int free = -1;
+		for (int slot = base; slot < base + WAYS; ++slot) {
+			final long old = entries.getOpaque(slot);
+			if (old == MISS) {
+				if (free < 0) {
+					free = slot;
+				}
+			} else if ((checks.getOpaque(slot) ^ old) == key) {
+				if (TranspositionTable.depth(old) <= TranspositionTable.depth(entry)) {
+					write(slot, key, entry);
+				}
+				return;
+			}
+		}
+		if (free < 0) {
+			free = evict(base);
+		}
+		write(free, key, entry);
+	}
+
+	/** Advances the bucket's clock hand to the first entry not hit since its last pass. */
+	private int evict(int base) {
+		final int bucket = base / WAYS;
+		int hand = hands[bucket];
+		// bounded: other threads may mark entries again behind the hand
+		for (int step = 0; step < 2 * WAYS && referenced[base + hand] != 0; ++step) {
+			referenced[base + hand] = 0;
+			hand = (hand + 1) & (WAYS - 1);
+		}
+		hands[bucket] = (byte) ((hand + 1) & (WAYS - 1));
+		evictions.increment();
+		return base + hand;
+	}
+
+	private void write(int slot, long key, long entry) {
+		referenced[slot] = 0;
+		entries.setOpaque(slot, entry);
+		checks.setOpaque(slot, key ^ entry);
+		stores.increment();
+	}
+
+	private int bucket(long key) {
+		return ((int) (key >>> 32) & bucketMask) * WAYS;
+	}
+
+	public void clear() {
+		for (int slot = 0; slot < capacity(); ++slot) {
+			entries.setOpaque(slot, MISS);
+			referenced[slot] = 0;
+		}
+	}
+
+	public Stats stats() {
+		return new Stats(hits.sum(), misses.sum(), stores.sum(), evictions.sum(), capacity());
+	}
+
+	public record Stats(long hits, long misses, long stores, long evictions, int capacity) {
+
+		public double hitRate() {
+			final long probes = hits + misses;
+			return probes == 0 ? 0 : (double) hits / probes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("hits=%,d misses=%,d (%.1f%%) stores=%,d evictions=%,d capacity=%,d",
+					hits, misses, 100 * hitRate(), stores, evictions, capacity);
+		}
+	}
+}
@@ -0,0 +1,585 @@
+package domain.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import domain.BitBoard;
+import domain.Player;
+import metrics.Metrics;
+
+/**
+ * Monte Carlo tree search with UCT selection and random playouts, for boards
+ * too large for {@link SearchStrategy} to see far enough ahead.
+ * <p>
+ * Each thread grows its own tree from the position (root parallelization)
+ * and the root visit counts are added up to choose the move. Trees are kept
+ * between calls: when the position is the previous one plus the AI's move and
+ * the reply, the search continues from that grandchild.
+ * <p>
+ * The tree only grows into empty cells near the marks. A node where the side
+ * to move can complete a line gets that move alone, and one where the
+ * opponent could complete a line gets only the blocking moves. Playouts place
+ * random marks on a byte array copy of the position without allocating.
+ * <p>
+ * One instance must not be shared between concurrently running games.
+ */
+public class MctsStrategy implements AiStrategy, AutoCloseable {
+
+	/** Receives the speed of every search, on the thread that ran it. */
+	public interface Listener {
+		void searched(long playouts, long nanos);
+	}
+
+	public static final long DEFAULT_BUDGET_MILLIS = SearchStrategy.DEFAULT_BUDGET_MILLIS;
+
+	private static final double EXPLORATION = 1.0;
+	private static final int NEIGHBOURHOOD = 2;
+	private static final int TIME_CHECK_MASK = 15;
+
+	private static final byte EMPTY = 0;
+	private static final byte X = 1;
+	private static final byte O = 2;
+
+	private final long budgetNanos;
+	private final long playoutBudget;
+	private final Worker[] workers;
+	private final ForkJoinPool pool;
+	private volatile Listener listener;
+
+	private long lastPlayouts;
+	private long lastNanos;
+
+	/** Thinks for {@link #DEFAULT_BUDGET_MILLIS} per move. */
+	public MctsStrategy(int threads) {
+		this(DEFAULT_BUDGET_MILLIS, 0, threads, System.nanoTime());
+	}
+
+	/**
+	 * @param budgetMillis  time per move, or {@code 0} for no limit
+	 * @param playoutBudget playouts per move over all threads, or {@code 0} for
+	 *                      no limit
+	 * @param seed          with one thread and no time limit, equal seeds
+	 *                      choose equal moves
+	 */
+	public MctsStrategy(long budgetMillis, long playoutBudget, int threads, long seed) {
+		if (budgetMillis < 0 || playoutBudget < 0 || budgetMillis == 0 && playoutBudget == 0) {
+			throw new IllegalArgumentException("budget");
+		}
+		if (threads <= 0) {
+			throw new IllegalArgumentException("threads");
+		}
+		this.budgetNanos = budgetMillis * 1_000_000L;
+		this.playoutBudget = playoutBudget;
+		this.workers = new Worker[threads];
+		for (int t = 0; t < threads; ++t) {
+			workers[t] = new Worker(Zobrist.mix(seed + t));
+		}
+		this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+	}
+
+	public int threads() {
+		return workers.length;
+	}
+
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/** Playouts of all threads during the last {@link #chooseMove} call. */
+	public long lastPlayoutCount() {
+		return lastPlayouts;
+	}
+
+	public double lastPlayoutsPerSecond() {
+		return lastNanos == 0 ? 0 : lastPlayouts * 1e9 / lastNanos;
+	}
+
+	@Override
+	public int chooseMove(BitBoard board, Player player, int winLength) {
+		if (board.markCount() == board.cellCount())
+			return -1;
+		final long start = System.nanoTime();
+		final long deadline = budgetNanos > 0 ? start + budgetNanos : Long.MAX_VALUE;
+		final var stop = new AtomicBoolean();
+		for (int t = 0; t < workers.length; ++t) {
+			final long share = playoutBudget == 0 ? Long.MAX_VALUE
+					: playoutBudget / workers.length + (t < playoutBudget % workers.length ? 1 : 0);
+			workers[t].prepare(board, player, winLength, share, deadline, stop);
+		}
+
+		if (pool == null) {
+			workers[0].run();
+		} else {
+			runOnPool(stop);
+		}
+
+		final int move = bestMove(board.cellCount());
+		long playouts = 0;
+		for (var worker : workers) {
+			playouts += worker.playouts;
+		}
+		lastPlayouts = playouts;
+		lastNanos = System.nanoTime() - start;
+		Metrics.AI_NODES.record(playouts);
+		var hook = listener;
+		if (hook != null) {
+			hook.searched(lastPlayouts, lastNanos);
+		}
+		return move;
+	}
+
+	private void runOnPool(AtomicBoolean stop) {
+		final var tasks = new ArrayList<ForkJoinTask<?>>(workers.length);
+		for (var worker : workers) {
+			tasks.add(pool.submit(worker));
+		}
+		boolean interrupted = false;
+		for (var task : tasks) {
+			while (true) {
+				try {
+					task.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+					stop.set(true);
+				} catch (ExecutionException e) {
+					stop.set(true);
+					throw new IllegalStateException("Playout worker failed", e.getCause());
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Most visited root move over all trees; a move that wins at once is taken first. */
+	private int bestMove(int cells) {
+		final long[] visits = new long[cells];
+		final double[] wins = new double[cells];
+		for (var worker : workers) {
+			final Node root = worker.root;
+			for (int i = 0; i < root.childCount; ++i) {
+				final Node child = root.children[i];
+				if (child.terminal == Node.WIN)
+					return child.move;
+				visits[child.move] += child.visits;
+				wins[child.move] += child.wins;
+			}
+		}
+		int best = -1;
+		for (int cell = 0; cell < cells; ++cell) {
+			if (visits[cell] == 0)
+				continue;
+			if (best < 0 || visits[cell] > visits[best]
+					|| visits[cell] == visits[best] && wins[cell] > wins[best]) {
+				best = cell;
+			}
+		}
+		return best >= 0 ? best : workers[0].anyEmptyCell();
+	}
+
+	@Override
+	public void close() {
+		if (pool != null) {
+			pool.shutdownNow();
+		}
+	}
+
+	private static final class Node {
+
+		static final byte NONE = 0;
+		static final byte WIN = 1;
+		static final byte DRAW = 2;
+
+		private static final Node[] NO_CHILDREN = {};
+
+		/** Cell played to get here, and by whom. */
+		final int move;
+		final byte mover;
+		/** Outcome for the mover if the game ends with this move. */
+		byte terminal;
+
+		Node[] children = NO_CHILDREN;
+		int childCount;
+		/** Moves not yet expanded; {@code null} until first visited. */
+		int[] untried;
+		int untriedCount;
+
+		int visits;
+		/** Wins of the mover, draws counting half. */
+		double wins;
+
+		Node(int move, byte mover) {
+			this.move = move;
+			this.mover = mover;
+		}
+
+		void add(Node child) {
+			if (childCount == children.length) {
+				children = Arrays.copyOf(children, Math.max(4, childCount * 2));
+			}
+			children[childCount++] = child;
+		}
+	}
+
+	/** One tree and the boards to search it. */
+	private static final class Worker implements Runnable {
+
+		private long random;
+
+		private int cols;
+		private int rows;
+		private int cells;
+		private int winLength;
+
+		/** Position of the node being visited. */
+		private byte[] board = new byte[0];
+		/** Marks within {@link #NEIGHBOURHOOD} of each cell. */
+		private int[] near;
+		/** Empty cells in any order, and the index of each in the list. */
+		private int[] empty;
+		private int[] emptyIndex;
+		private int emptyCount;
+		private int marks;
+
+		private byte[] scratch;
+		private int[] scratchEmpty;
+		private int[] candidates;
+		private Node[] path = new Node[64];
+
+		/** Position the tree grows from; kept for reuse on the next call. */
+		private byte[] rootBoard = new byte[0];
+		Node root;
+
+		private long budget;
+		private long deadline;
+		private AtomicBoolean stop;
+		long playouts;
+
+		Worker(long seed) {
+			this.random = seed != 0 ? seed : 1;
+		}
+
+		void prepare(BitBoard position, Player player, int winLength, long budget, long deadline,
+				AtomicBoolean stop) {
+			final int size = position.cellCount();
+			final byte side = code(player);
+			final byte[] target = new byte[size];
+			for (int cell = 0; cell < size; ++cell) {
+				target[cell] = code(position.get(position.column(cell), position.row(cell)));
+			}
+			if (!reuse(target, side, position.columns(), winLength)) {
+				root = new Node(-1, other(side));
+			}
+			if (size != cells) {
+				cells = size;
+				scratch = new byte[size];
+				scratchEmpty = new int[size];
+				candidates = new int[size];
+				near = new int[size];
+				empty = new int[size];
+				emptyIndex = new int[size];
+			}
+			this.cols = position.columns();
+			this.rows = position.rows();
+			this.winLength = winLength;
+			this.board = target.clone();
+			this.rootBoard = target;
+			this.budget = budget;
+			this.deadline = deadline;
+			this.stop = stop;
+			this.playouts = 0;
+
+			Arrays.fill(near, 0);
+			emptyCount = 0;
+			marks = 0;
+			for (int cell = 0; cell < size; ++cell) {
+				if (board[cell] == EMPTY) {
+					emptyIndex[cell] = emptyCount;
+					empty[emptyCount++] = cell;
+				} else {
+					++marks;
+					addNear(cell, 1);
+				}
+			}
+		}
+
+		/**
+		 * Moves the root down the old tree if {@code target} follows from its
+		 * position by moves the tree has seen.
+		 */
+		private boolean reuse(byte[] target, byte side, int targetCols, int targetWinLength) {
+			if (root == null || target.length != rootBoard.length || targetCols != cols
+					|| targetWinLength != winLength)
+				return false;
+			int added = 0;
+			for (int cell = 0; cell < target.length; ++cell) {
+				if (rootBoard[cell] != target[cell]) {
+					if (rootBoard[cell] != EMPTY)
+						return false;
+					++added;
+				}
+			}
+			Node node = root;
+			for (int i = 0; i < added; ++i) {
+				final byte toMove = other(node.mover);
+				Node next = null;
+				for (int c = 0; c < node.childCount && next == null; ++c) {
+					final Node child = node.children[c];
+					if (rootBoard[child.move] == EMPTY && target[child.move] == toMove) {
+						next = child;
+					}
+				}
+				if (next == null || next.terminal != Node.NONE)
+					return false;
+				node = next;
+			}
+			if (other(node.mover) != side)
+				return false;
+			root = node;
+			return true;
+		}
+
+		@Override
+		public void run() {
+			while (playouts < budget) {
+				if (playouts > 0 && (playouts & TIME_CHECK_MASK) == 0 && outOfTime())
+					break;
+				iterate();
+				++playouts;
+			}
+		}
+
+		private boolean outOfTime() {
+			if (stop.get())
+				return true;
+			if (System.nanoTime() > deadline || Thread.currentThread().isInterrupted()) {
+				stop.set(true);
+				return true;
+			}
+			return false;
+		}
+
+		/** Selection, expansion, playout and backpropagation. */
+		private void iterate() {
+			Node node = root;
+			int depth = 0;
+			path[depth++] = node;
+			while (node.terminal == Node.NONE && node.untried != null && node.untriedCount == 0
+					&& node.childCount > 0) {
+				node = select(node);
+				play(node.move, node.mover);
+				if (depth == path.length) {
+					path = Arrays.copyOf(path, depth * 2);
+				}
+				path[depth++] = node;
+			}
+
+			if (node.terminal == Node.NONE) {
+				if (node.untried == null) {
+					expand(node);
+				}
+				if (node.untriedCount > 0) {
+					final int i = nextInt(node.untriedCount);
+					final int cell = node.untried[i];
+					node.untried[i] = node.untried[--node.untriedCount];
+					final Node child = new Node(cell, other(node.mover));
+					play(cell, child.mover);
+					if (winsThrough(board, cell, child.mover)) {
+						child.terminal = Node.WIN;
+					} else if (emptyCount == 0) {
+						child.terminal = Node.DRAW;
+					}
+					node.add(child);
+					node = child;
+					if (depth == path.length) {
+						path = Arrays.copyOf(path, depth * 2);
+					}
+					path[depth++] = node;
+				}
+			}
+
+			final byte winner;
+			if (node.terminal == Node.WIN) {
+				winner = node.mover;
+			} else if (node.terminal == Node.DRAW || emptyCount == 0) {
+				winner = EMPTY;
+			} else {
+				winner = playout(other(node.mover));
+			}
+
+			for (int i = depth - 1; i >= 0; --i) {
+				final Node visited = path[i];
+				++visited.visits;
+				if (winner == visited.mover) {
+					visited.wins += 1;
+				} else if (winner == EMPTY) {
+					visited.wins += 0.5;
+				}
+				if (i > 0) {
+					unplay(visited.move);
+				}
+				path[i] = null;
+			}
+		}
+
+		private Node select(Node node) {
+			final double logVisits = Math.log(node.visits);
+			Node best = null;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < node.childCount; ++i) {
+				final Node child = node.children[i];
+				final double value = child.wins / child.visits
+						+ EXPLORATION * Math.sqrt(logVisits / child.visits);
+				if (value > bestValue) {
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Lists the moves of the node: a winning move alone, else the moves that
+		 * block an opponent's win, else the empty cells near the marks.
+		 */
+		private void expand(Node node) {
+			final byte toMove = other(node.mover);
+			int count = 0;
+			if (marks == 0) {
+				candidates[count++] = (rows / 2) * cols + cols / 2;
+			} else {
+				for (int i = 0; i < emptyCount; ++i) {
+					if (near[empty[i]] > 0) {
+						candidates[count++] = empty[i];
+					}
+				}
+				if (count == 0) {
+					// the marks are walled in: any empty cell
+					System.arraycopy(empty, 0, candidates, 0, emptyCount);
+					count = emptyCount;
+				}
+			}
+			int forced = 0;
+			for (int i = 0; i < count; ++i) {
+				if (completes(candidates[i], toMove)) {
+					node.untried = new int[] { candidates[i] };
+					node.untriedCount = 1;
+					return;
+				}
+			}
+			for (int i = 0; i < count; ++i) {
+				if (completes(candidates[i], node.mover)) {
+					final int cell = candidates[i];
+					candidates[i] = candidates[forced];
+					candidates[forced++] = cell;
+				}
+			}
+			if (forced > 0) {
+				count = forced;
+			}
+			node.untried = Arrays.copyOf(candidates, count);
+			node.untriedCount = count;
+		}
+
+		private boolean completes(int cell, byte player) {
+			board[cell] = player;
+			final boolean wins = winsThrough(board, cell, player);
+			board[cell] = EMPTY;
+			return wins;
+		}
+
+		/** Plays random moves to the end of the game; the board stays unchanged. */
+		private byte playout(byte toMove) {
+			System.arraycopy(board, 0, scratch, 0, cells);
+			System.arraycopy(empty, 0, scratchEmpty, 0, emptyCount);
+			byte player = toMove;
+			for (int count = emptyCount; count > 0; --count) {
+				final int i = nextInt(count);
+				final int cell = scratchEmpty[i];
+				scratchEmpty[i] = scratchEmpty[count - 1];
+				scratch[cell] = player;
+				if (winsThrough(scratch, cell, player))
+					return player;
+				player = other(player);
+			}
+			return EMPTY;
+		}
+
+		private void play(int cell, byte player) {
+			board[cell] = player;
+			final int last = empty[--emptyCount];
+			final int index = emptyIndex[cell];
+			empty[index] = last;
+			emptyIndex[last] = index;
+			++marks;
+			addNear(cell, 1);
+		}
+
+		private void unplay(int cell) {
+			board[cell] = EMPTY;
+			emptyIndex[cell] = emptyCount;
+			empty[emptyCount++] = cell;
+			--marks;
+			addNear(cell, -1);
+		}
+
+		private void addNear(int cell, int delta) {
+			final int col = cell % cols;
+			final int row = cell / cols;
+			final int fromCol = Math.max(0, col - NEIGHBOURHOOD);
+			final int toCol = Math.min(cols - 1, col + NEIGHBOURHOOD);
+			final int fromRow = Math.max(0, row - NEIGHBOURHOOD);
+			final int toRow = Math.min(rows - 1, row + NEIGHBOURHOOD);
+			for (int r = fromRow; r <= toRow; ++r) {
+				for (int c = fromCol; c <= toCol; ++c) {
+					near[r * cols + c] += delta;
+				}
+			}
+		}
+
+		private boolean winsThrough(byte[] cellsOf, int cell, byte player) {
+			final int col = cell % cols;
+			final int row = cell / cols;
+			return run(cellsOf, col, row, 1, 0, player) + run(cellsOf, col, row, -1, 0, player) >= winLength - 1
+					|| run(cellsOf, col, row, 0, 1, player) + run(cellsOf, col, row, 0, -1, player) >= winLength - 1
+					|| run(cellsOf, col, row, 1, 1, player) + run(cellsOf, col, row, -1, -1, player) >= winLength - 1
+					|| run(cellsOf, col, row, 1, -1, player) + run(cellsOf, col, row, -1, 1, player) >= winLength - 1;
+		}
+
+		/** Marks of the player next to the cell in one direction, up to a win length. */
+		private int run(byte[] cellsOf, int col, int row, int dc, int dr, byte player) {
+			int count = 0;
+			for (int c = col + dc, r = row + dr; count < winLength && c >= 0 && c < cols && r >= 0 && r < rows
+					&& cellsOf[r * cols + c] == player; c += dc, r += dr) {
+				++count;
+			}
+			return count;
+		}
+
+		int anyEmptyCell() {
+			return emptyCount > 0 ? empty[0] : -1;
+		}
+
+		/** xorshift64*, scaled to {@code [0, bound)} without division. */
+		private int nextInt(int bound) {
+			random ^= random >>> 12;
+			random ^= random << 25;
+			random ^= random >>> 27;
+			return (int) (((random * 0x2545F4914F6CDD1DL) >>> 32) * bound >>> 32);
+		}
+	}
+
+	private static byte code(Player player) {
+		return player == Player.X ? X : player == Player.O ? O : EMPTY;
+	}
+
+	private static byte other(byte player) {
+		return player == X ? O : X;
+	}
+}
@@ -0,0 +1,220 @@
+package domain.ai;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import domain.BitBoard;
+import domain.Player;
+import metrics.Metrics;
+
+/**
+ * {@link SearchStrategy} with the root moves of every iteration split across
+ * a {@link ForkJoinPool}.
+ * <p>
+ * The first root move is searched alone to establish a bound, then the
+ * remaining moves are handed out to the workers, which share the bound and
+ * the transposition table. With one thread the search runs sequentially in
+ * the calling thread and is deterministic for a given position and depth.
+ */
+public class ParallelSearchStrategy implements AiStrategy, AutoCloseable {
+
+	private final long budgetNanos;
+	private final int maxDepth;
+	private final int threads;
+	private final TranspositionTable table;
+	private final EvaluationCache cache;
+	private final PatternWeights patterns;
+	private final ForkJoinPool pool;
+
+	private long lastNodes;
+	private int lastDepth;
+
+	/** Uses the {@link EvaluationCache#shared() shared} evaluation cache. */
+	public ParallelSearchStrategy(int threads) {
+		this(SearchStrategy.DEFAULT_BUDGET_MILLIS, SearchStrategy.MAX_PLY, threads,
+				new TranspositionTable(SearchStrategy.DEFAULT_TABLE_CAPACITY), EvaluationCache.shared());
+	}
+
+	public ParallelSearchStrategy(long budgetMillis, int maxDepth, int threads, TranspositionTable table) {
+		this(budgetMillis, maxDepth, threads, table, null);
+	}
+
+	/** @param cache {@code null} to search without one */
+	public ParallelSearchStrategy(long budgetMillis, int maxDepth, int threads, TranspositionTable table,
+			EvaluationCache cache) {
+		this(budgetMillis, maxDepth, threads, table, cache, PatternWeights.shared());
+	}
+
+	public ParallelSearchStrategy(long budgetMillis, int maxDepth, int threads, TranspositionTable table,
+			EvaluationCache cache, PatternWeights patterns) {
+		if (budgetMillis <= 0) {
+			throw new IllegalArgumentException("budgetMillis");
+		}
+		if (maxDepth <= 0 || maxDepth > SearchStrategy.MAX_PLY) {
+			throw new IllegalArgumentException("maxDepth");
+		}
+		if (threads <= 0) {
+			throw new IllegalArgumentException("threads");
+		}
+		this.budgetNanos = budgetMillis * 1_000_000L;
+		this.maxDepth = maxDepth;
+		this.threads = threads;
+		this.table = table;
+		this.cache = cache;
+		this.patterns = patterns;
+		this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+	}
+
+	public int threads() {
+		return threads;
+	}
+
+	/** Nodes visited by all threads during the last {@link #chooseMove} call. */
+	public long lastNodeCount() {
+		return lastNodes;
+	}
+
+	/** Deepest completed iteration of the last {@link #chooseMove} call. */
+	public int lastDepth() {
+		return lastDepth;
+	}
+
+	@Override
+	public int chooseMove(BitBoard board, Player player, int winLength) {
+		table.newSearch();
+		final long deadline = System.nanoTime() + budgetNanos;
+		final var stop = new AtomicBoolean();
+		final var master = new SearchStrategy.Search(new BitBoard(board), player, winLength, table, cache,
+				patterns, deadline, stop);
+
+		if (pool == null) {
+			int move = master.run(maxDepth);
+			lastNodes = master.nodes;
+			lastDepth = master.completedDepth;
+			Metrics.AI_NODES.record(lastNodes);
+			return move;
+		}
+
+		final int[] rootMoves = new int[board.cellCount()];
+		final int count = master.rootMoves(rootMoves);
+		final var nodes = new AtomicLong();
+		lastDepth = 0;
+		if (count == 0) {
+			lastNodes = 0;
+			return -1;
+		}
+
+		int best = rootMoves[0];
+		final int depthLimit = Math.min(maxDepth, board.cellCount() - board.markCount());
+		for (int depth = 1; depth <= depthLimit; ++depth) {
+			final int firstScore = master.searchRootMove(rootMoves[0], depth, -SearchStrategy.INFINITY,
+					SearchStrategy.INFINITY);
+			if (master.aborted())
+				break;
+
+			final var bound = new RootBound(firstScore, rootMoves[0]);
+			if (!searchSiblings(board, player, winLength, deadline, stop, rootMoves, count, depth, bound, nodes))
+				break;
+
+			best = bound.move;
+			lastDepth = depth;
+			moveToFront(rootMoves, count, best);
+			if (Math.abs(bound.score) >= SearchStrategy.WIN - SearchStrategy.MAX_PLY)
+				break;
+		}
+		lastNodes = master.nodes + nodes.get();
+		Metrics.AI_NODES.record(lastNodes);
+		return best;
+	}
+
+	/**
+	 * Searches root moves {@code 1..count-1} on the pool.
+	 *
+	 * @return {@code false} if the search was stopped before all moves were
+	 *         searched
+	 */
+	private boolean searchSiblings(BitBoard board, Player player, int winLength, long deadline, AtomicBoolean stop,
+			int[] rootMoves, int count, int depth, RootBound bound, AtomicLong nodes) {
+		final var next = new AtomicInteger(1);
+		final var tasks = new ArrayList<ForkJoinTask<?>>(threads);
+		for (int t = 0; t < threads; ++t) {
+			tasks.add(pool.submit(() -> {
+				var worker = new SearchStrategy.Search(new BitBoard(board), player, winLength, table, cache,
+						patterns, deadline, stop);
+				for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+					final int alpha = bound.score();
+					final int score = worker.searchRootMove(rootMoves[i], depth, alpha, SearchStrategy.INFINITY);
+					if (worker.aborted())
+						break;
+					bound.offer(score, rootMoves[i]);
+				}
+				nodes.addAndGet(worker.nodes);
+			}));
+		}
+
+		boolean interrupted = false;
+		for (var task : tasks) {
+			while (true) {
+				try {
+					task.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+					stop.set(true);
+				} catch (ExecutionException e) {
+					stop.set(true);
+					throw new IllegalStateException("Search worker failed", e.getCause());
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		return !stop.get();
+	}
+
+	private static void moveToFront(int[] moves, int count, int move) {
+		for (int i = 0; i < count; ++i) {
+			if (moves[i] == move) {
+				System.arraycopy(moves, 0, moves, 1, i);
+				moves[0] = move;
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		if (pool != null) {
+			pool.shutdownNow();
+		}
+	}
+
+	/** Best root score and move found so far in the current iteration. */
+	private static final class RootBound {
+
+		private int score;
+		private int move;
+
+		RootBound(int score, int move) {
+			this.score = score;
+			this.move = move;
+		}
+
+		synchronized int score() {
+			return score;
+		}
+
+		synchronized void offer(int score, int move) {
+			if (score > this.score) {
+				this.score = score;
+				this.move = move;
+			}
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package domain.ai;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import metrics.Log;
+
+/**
+ * What an open line counted by {@link CandidateIndex} is worth to the static
+ * evaluation: a window of the win length holding {@code n} marks of one
+ * player and none of the other, scored separately for the side to move and
+ * for its opponent, one table per win length.
+ * <p>
+ * Tuned tables are written by {@code sim.PatternTuner} from self-play games
+ * and shipped as the resource {@value #RESOURCE}, read once on first use.
+ * Win lengths without a tuned table, and all of them if the resource is
+ * missing, get built-in weights that grow eightfold per mark. Tuned weights
+ * are in {@value #UNITS_PER_LOGIT}ths of the log-odds of winning.
+ * <p>
+ * File layout (big-endian): magic and table count, then for each table its
+ * win length as a byte followed by {@code 2 * (winLength - 1)} short
+ * weights: for 1 to {@code winLength - 1} marks of the side to move, then
+ * the same for the opponent.
+ * <p>
+ * Immutable and safe to share between threads.
+ */
+public final class PatternWeights {
+
+	public static final String RESOURCE = "/domain/ai/pattern-weights.bin";
+	public static final int UNITS_PER_LOGIT = 256;
+	public static final int MAX_WIN_LENGTH = Byte.MAX_VALUE;
+
+	static final int MAGIC = 0x50545731; // "PTW1"
+
+	private static final PatternWeights BUILT_IN = new PatternWeights(new int[0][], new int[0][]);
+
+	/** Weights by win length and mark count, {@code null} where not tuned. */
+	private final int[][] own;
+	private final int[][] opponent;
+	private final long fingerprint;
+
+	private PatternWeights(int[][] own, int[][] opponent) {
+		this.own = own;
+		this.opponent = opponent;
+		long hash = 0;
+		for (int winLength = 0; winLength < own.length; ++winLength) {
+			if (own[winLength] != null) {
+				hash = Zobrist.mix(hash ^ winLength ^ (long) Arrays.hashCode(own[winLength]) << 32
+						^ Arrays.hashCode(opponent[winLength]));
+			}
+		}
+		this.fingerprint = hash;
+	}
+
+	private static final class Shared {
+		static final PatternWeights INSTANCE = loadResource();
+	}
+
+	/**
+	 * The tuned weights of the resource, or {@link #builtIn()} itself if it is
+	 * missing or unreadable, so callers can tell and warn.
+	 */
+	public static PatternWeights shared() {
+		return Shared.INSTANCE;
+	}
+
+	public static PatternWeights builtIn() {
+		return BUILT_IN;
+	}
+
+	private static PatternWeights loadResource() {
+		try (InputStream in = PatternWeights.class.getResourceAsStream(RESOURCE)) {
+			if (in == null) {
+				if (Log.ENABLED) {
+					Log.event("patternWeightsMissing", "resource", RESOURCE);
+				}
+				return BUILT_IN;
+			}
+			return of(ByteBuffer.wrap(in.readAllBytes()));
+		} catch (IOException | IllegalArgumentException e) {
+			if (Log.ENABLED) {
+				Log.event("patternWeightsFailed", "resource", RESOURCE, "error", e.getMessage());
+			}
+			return BUILT_IN;
+		}
+	}
+
+	public static PatternWeights load(Path file) throws IOException {
+		return of(ByteBuffer.wrap(Files.readAllBytes(file)));
+	}
+
+	static PatternWeights of(ByteBuffer data) {
+		try {
+			if (data.getInt() != MAGIC) {
+				throw new IllegalArgumentException("Not a pattern weights file");
+			}
+			final int count = data.getInt();
+			int[][] own = new int[MAX_WIN_LENGTH + 1][];
+			int[][] opponent = new int[MAX_WIN_LENGTH + 1][];
+			for (int i = 0; i < count; ++i) {
+				final int winLength = data.get();
+				if (winLength < 2 || own[winLength] != null) {
+					throw new IllegalArgumentException("Corrupt pattern weights at " + (data.position() - 1));
+				}
+				own[winLength] = new int[winLength];
+				opponent[winLength] = new int[winLength];
+				for (int marks = 1; marks < winLength; ++marks) {
+					own[winLength][marks] = data.getShort();
+				}
+				for (int marks = 1; marks < winLength; ++marks) {
+					opponent[winLength][marks] = data.getShort();
+				}
+			}
+			return new PatternWeights(own, opponent);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated pattern weights");
+		}
+	}
+
+	/**
+	 * Replaces the table of one win length; weights are clamped to the range
+	 * of a short.
+	 *
+	 * @param own      weights for 1 to {@code winLength - 1} marks of the
+	 *                 side to move, at those indices
+	 * @param opponent the same for the opponent
+	 */
+	public PatternWeights with(int winLength, int[] own, int[] opponent) {
+		if (winLength < 2 || winLength > MAX_WIN_LENGTH || own.length < winLength || opponent.length < winLength) {
+			throw new IllegalArgumentException("winLength=" + winLength);
+		}
+		int[][] newOwn = Arrays.copyOf(this.own, MAX_WIN_LENGTH + 1);
+		int[][] newOpponent = Arrays.copyOf(this.opponent, MAX_WIN_LENGTH + 1);
+		newOwn[winLength] = new int[winLength];
+		newOpponent[winLength] = new int[winLength];
+		for (int marks = 1; marks < winLength; ++marks) {
+			newOwn[winLength][marks] = clamp(own[marks]);
+			newOpponent[winLength][marks] = clamp(opponent[marks]);
+		}
+		return new PatternWeights(newOwn, newOpponent);
+	}
+
+	private static int clamp(int weight) {
+		return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, weight));
+	}
+
+	public boolean isTuned(int winLength) {
+		return winLength < own.length && own[winLength] != null;
+	}
+
+	/** Worth of a window with {@code marks} marks of the side to move, {@code marks < winLength}. */
+	public int own(int winLength, int marks) {
+		return isTuned(winLength) ? own[winLength][marks] : builtIn(marks);
+	}
+
+	/** Worth of a window with {@code marks} marks of the opponent, counted against the side to move. */
+	public int opponent(int winLength, int marks) {
+		return isTuned(winLength) ? opponent[winLength][marks] : builtIn(marks);
+	}
+
+	private static int builtIn(int marks) {
+		return 1 << Math.min(3 * (marks - 1), 15);
+	}
+
+	/** Tells weight sets apart in cache keys; zero for the built-in weights. */
+	long fingerprint() {
+		return fingerprint;
+	}
+
+	public void write(Path file) throws IOException {
+		int count = 0;
+		int bytes = 8;
+		for (int winLength = 0; winLength < own.length; ++winLength) {
+			if (own[winLength] != null) {
+				++count;
+				bytes += 1 + 4 * (winLength - 1);
+			}
+		}
+		final var data = ByteBuffer.allocate(bytes).putInt(MAGIC).putInt(count);
+		for (int winLength = 0; winLength < own.length; ++winLength) {
+			if (own[winLength] == null)
+				continue;
+			data.put((byte) winLength);
+			for (int marks = 1; marks < winLength; ++marks) {
+				data.putShort((short) own[winLength][marks]);
+			}
+			for (int marks = 1; marks < winLength; ++marks) {
+				data.putShort((short) opponent[winLength][marks]);
+			}
+		}
+		Files.write(file, data.array());
+	}
+}
@@ -0,0 +1,378 @@
+package domain.ai;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import domain.BitBoard;
+import domain.Player;
+import metrics.Metrics;
+
+/**
+ * Negamax search with alpha-beta pruning and iterative deepening.
+ * <p>
+ * Candidate moves are the empty cells near existing marks, ordered by the
+ * transposition table move first and then by {@link CandidateIndex#threat}.
+ * Each move is bounded by a time budget: when it runs out, the best move of
+ * the last completed iteration is played.
+ * <p>
+ * The transposition table is kept between moves, so one instance must not
+ * be shared between concurrently running games. Results of deeper subtrees
+ * also go to an {@link EvaluationCache}, which every game can share.
+ * Positions are evaluated with the {@link PatternWeights#shared() tuned}
+ * pattern weights unless others are given.
+ */
+public class SearchStrategy implements AiStrategy {
+
+	public static final long DEFAULT_BUDGET_MILLIS = 500;
+	public static final int DEFAULT_TABLE_CAPACITY = 1 << 20;
+
+	static final int WIN = 1_000_000;
+	static final int MAX_PLY = 128;
+
+	static final int INFINITY = WIN + 1;
+	private static final int NEIGHBOURHOOD = 2;
+	private static final int TIME_CHECK_MASK = 1023;
+	/** Shallower subtrees are cheaper to search again than to share. */
+	private static final int CACHE_MIN_DEPTH = 2;
+
+	private final long budgetNanos;
+	private final int maxDepth;
+	private final TranspositionTable table;
+	private final EvaluationCache cache;
+	private final PatternWeights patterns;
+
+	private long lastNodes;
+	private int lastDepth;
+
+	public SearchStrategy() {
+		this(DEFAULT_BUDGET_MILLIS);
+	}
+
+	/** Uses the {@link EvaluationCache#shared() shared} evaluation cache. */
+	public SearchStrategy(long budgetMillis) {
+		this(budgetMillis, MAX_PLY, new TranspositionTable(DEFAULT_TABLE_CAPACITY), EvaluationCache.shared());
+	}
+
+	public SearchStrategy(long budgetMillis, int maxDepth, TranspositionTable table) {
+		this(budgetMillis, maxDepth, table, null);
+	}
+
+	/** @param cache {@code null} to search without one */
+	public SearchStrategy(long budgetMillis, int maxDepth, TranspositionTable table, EvaluationCache cache) {
+		this(budgetMillis, maxDepth, table, cache, PatternWeights.shared());
+	}
+
+	public SearchStrategy(long budgetMillis, int maxDepth, TranspositionTable table, EvaluationCache cache,
+			PatternWeights patterns) {
+		if (budgetMillis <= 0) {
+			throw new IllegalArgumentException("budgetMillis");
+		}
+		if (maxDepth <= 0 || maxDepth > MAX_PLY) {
+			throw new IllegalArgumentException("maxDepth");
+		}
+		this.budgetNanos = budgetMillis * 1_000_000L;
+		this.maxDepth = maxDepth;
+		this.table = table;
+		this.cache = cache;
+		this.patterns = patterns;
+	}
+
+	/** Nodes visited by the last {@link #chooseMove} call. */
+	public long lastNodeCount() {
+		return lastNodes;
+	}
+
+	/** Deepest completed iteration of the last {@link #chooseMove} call. */
+	public int lastDepth() {
+		return lastDepth;
+	}
+
+	@Override
+	public int chooseMove(BitBoard board, Player player, int winLength) {
+		table.newSearch();
+		var search = new Search(board, player, winLength, table, cache, patterns, System.nanoTime() + budgetNanos,
+				new AtomicBoolean());
+		int move = search.run(maxDepth);
+		lastNodes = search.nodes;
+		lastDepth = search.completedDepth;
+		Metrics.AI_NODES.record(lastNodes);
+		return move;
+	}
+
+	static final class Search {
+
+		private final BitBoard board;
+		private final int cols;
+		private final int rows;
+		private final int cellCount;
+		private final int winLength;
+		private final Player root;
+		private final TranspositionTable table;
+		private final EvaluationCache cache;
+		private final long cacheSalt;
+		private final Zobrist zobrist;
+		private final CandidateIndex index;
+		private final long deadline;
+		private final AtomicBoolean stop;
+
+		private final int[][] moves;
+		private final int[][] scores;
+
+		private long hash;
+		private int marks;
+		private int rootBest = -1;
+		private boolean aborted;
+
+		long nodes;
+		int completedDepth;
+
+		/**
+		 * @param cache {@code null} to search without one
+		 * @param stop  raised to abort the search from another thread; the search
+		 *              raises it itself when the deadline passes
+		 */
+		Search(BitBoard board, Player root, int winLength, TranspositionTable table, EvaluationCache cache,
+				PatternWeights patterns, long deadline, AtomicBoolean stop) {
+			this.board = board;
+			this.cols = board.columns();
+			this.rows = board.rows();
+			this.cellCount = board.cellCount();
+			this.winLength = winLength;
+			this.root = root;
+			this.table = table;
+			this.cache = cache;
+			// scores depend on the weights, so each weight set keeps its own entries
+			this.cacheSalt = EvaluationCache.salt(cols, rows, winLength) ^ patterns.fingerprint();
+			this.zobrist = new Zobrist(cellCount);
+			this.index = CandidateIndex.of(board, winLength, NEIGHBOURHOOD, patterns);
+			this.deadline = deadline;
+			this.stop = stop;
+
+			this.marks = board.markCount();
+			final int plies = Math.min(MAX_PLY, cellCount - marks) + 1;
+			this.moves = new int[plies][];
+			this.scores = new int[plies][];
+			this.hash = zobrist.hash(board);
+		}
+
+		int run(int maxDepth) {
+			if (marks == cellCount) {
+				return -1;
+			}
+			int count = generate(0, -1);
+			int best = moves[0][0];
+			final int depthLimit = Math.min(maxDepth, cellCount - marks);
+			for (int depth = 1; depth <= depthLimit && count > 0; ++depth) {
+				int score = negamax(depth, -INFINITY, INFINITY, 0);
+				if (aborted)
+					break;
+				best = rootBest;
+				completedDepth = depth;
+				if (Math.abs(score) >= WIN - MAX_PLY)
+					break;
+			}
+			return best;
+		}
+
+		boolean aborted() {
+			return aborted;
+		}
+
+		boolean isFull() {
+			return marks == cellCount;
+		}
+
+		/**
+		 * Fills {@code list} with the root moves, best first.
+		 *
+		 * @return number of moves
+		 */
+		int rootMoves(int[] list) {
+			final long entry = table.probe(hash);
+			final int ttMove = entry != TranspositionTable.MISS ? TranspositionTable.move(entry) : -1;
+			final int count = generate(0, ttMove);
+			System.arraycopy(moves[0], 0, list, 0, count);
+			return count;
+		}
+
+		/**
+		 * Searches a single root move with the given window.
+		 *
+		 * @return score of the move for the root player
+		 */
+		int searchRootMove(int move, int depth, int alpha, int beta) {
+			final int col = move % cols;
+			final int row = move / cols;
+			make(move, root);
+			int score;
+			if (board.hasLineThrough(col, row, root, winLength)) {
+				score = WIN - 1;
+			} else if (marks == cellCount) {
+				score = 0;
+			} else {
+				score = -negamax(depth - 1, -beta, -alpha, 1);
+			}
+			unmake(move, root);
+			return score;
+		}
+
+		private int negamax(int depth, int alpha, int beta, int ply) {
+			if ((++nodes & TIME_CHECK_MASK) == 0 && outOfTime()) {
+				aborted = true;
+			}
+			if (aborted)
+				return 0;
+
+			final int alphaOrig = alpha;
+			final Player side = (ply & 1) == 0 ? root : EasyStrategy.opponent(root);
+			int ttMove = -1;
+			long entry = table.probe(hash);
+			final boolean shared = cache != null && depth >= CACHE_MIN_DEPTH;
+			final long cacheKey = shared ? EvaluationCache.key(hash, cacheSalt, side) : 0L;
+			if (shared && (entry == TranspositionTable.MISS || TranspositionTable.depth(entry) < depth)) {
+				final long cached = cache.probe(cacheKey);
+				if (cached != EvaluationCache.MISS && (entry == TranspositionTable.MISS
+						|| TranspositionTable.depth(cached) > TranspositionTable.depth(entry))) {
+					entry = cached;
+				}
+			}
+			if (entry != TranspositionTable.MISS) {
+				ttMove = TranspositionTable.move(entry);
+				if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+					final int score = fromTable(TranspositionTable.score(entry), ply);
+					switch (TranspositionTable.flag(entry)) {
+						case TranspositionTable.EXACT:
+							return score;
+						case TranspositionTable.LOWER:
+							alpha = Math.max(alpha, score);
+							break;
+						default:
+							beta = Math.min(beta, score);
+							break;
+					}
+					if (alpha >= beta)
+						return score;
+				}
+			}
+
+			if (depth == 0 || ply + 1 >= moves.length) {
+				return index.evaluate(side);
+			}
+
+			final int count = generate(ply, ttMove);
+			int best = -INFINITY;
+			int bestMove = -1;
+			for (int i = 0; i < count; ++i) {
+				final int move = moves[ply][i];
+				final int col = move % cols;
+				final int row = move / cols;
+
+				make(move, side);
+				int score;
+				if (board.hasLineThrough(col, row, side, winLength)) {
+					score = WIN - ply - 1;
+				} else if (marks == cellCount) {
+					score = 0;
+				} else {
+					score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+				}
+				unmake(move, side);
+
+				if (aborted)
+					return 0;
+				if (score > best) {
+					best = score;
+					bestMove = move;
+					if (ply == 0) {
+						rootBest = move;
+					}
+				}
+				if (score > alpha)
+					alpha = score;
+				if (alpha >= beta)
+					break;
+			}
+
+			final int flag = best <= alphaOrig ? TranspositionTable.UPPER
+					: best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+			table.store(hash, bestMove, depth, flag, toTable(best, ply));
+			if (shared) {
+				cache.store(cacheKey, table.pack(bestMove, depth, flag, toTable(best, ply)));
+			}
+			return best;
+		}
+
+		/**
+		 * Fills {@code moves[ply]} with candidate cells, best first.
+		 *
+		 * @return number of candidates
+		 */
+		private int generate(int ply, int ttMove) {
+			if (moves[ply] == null) {
+				moves[ply] = new int[cellCount];
+				scores[ply] = new int[cellCount];
+			}
+			final int[] list = moves[ply];
+			final int[] values = scores[ply];
+			if (marks == 0) {
+				list[0] = (rows / 2) * cols + cols / 2;
+				return 1;
+			}
+			final Player side = (ply & 1) == 0 ? root : EasyStrategy.opponent(root);
+			final int candidates = index.candidateCount();
+			int count = 0;
+			for (int c = 0; c < candidates; ++c) {
+				final int cell = index.candidate(c);
+				final int value = cell == ttMove ? Integer.MAX_VALUE : index.threat(cell, side);
+				int i = count++;
+				while (i > 0 && values[i - 1] < value) {
+					list[i] = list[i - 1];
+					values[i] = values[i - 1];
+					--i;
+				}
+				list[i] = cell;
+				values[i] = value;
+			}
+			return count;
+		}
+
+		private void make(int cell, Player player) {
+			board.set(cell % cols, cell / cols, player);
+			index.make(cell, player);
+			hash ^= zobrist.key(cell, player);
+			++marks;
+		}
+
+		private void unmake(int cell, Player player) {
+			board.set(cell % cols, cell / cols, Player.NONE);
+			index.unmake(cell, player);
+			hash ^= zobrist.key(cell, player);
+			--marks;
+		}
+
+		private boolean outOfTime() {
+			if (stop.get())
+				return true;
+			if (System.nanoTime() > deadline || Thread.currentThread().isInterrupted()) {
+				stop.set(true);
+				return true;
+			}
+			return false;
+		}
+
+		private static int toTable(int score, int ply) {
+			if (score >= WIN - MAX_PLY)
+				return score + ply;
+			if (score <= -WIN + MAX_PLY)
+				return score - ply;
+			return score;
+		}
+
+		private static int fromTable(int score, int ply) {
+			if (score >= WIN - MAX_PLY)
+				return score - ply;
+			if (score <= -WIN + MAX_PLY)
+				return score + ply;
+			return score;
+		}
+	}
+}
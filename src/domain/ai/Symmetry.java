@@ -0,0 +1,97 @@
+package domain.ai;
+
+/**
+ * The 8 rotations and reflections of a square board of up to 4x4 cells,
+ * applied to cell bitmasks ({@code 1 << (row * size + col)}).
+ */
+final class Symmetry {
+
+	static final int TRANSFORMS = 8;
+
+	private static final Symmetry[] CACHE = new Symmetry[Tablebase.MAX_SIZE + 1];
+
+	private final int cells;
+	/** Cell each cell moves to, by transform. */
+	private final int[][] forward;
+	/** Cell each cell comes from, by transform. */
+	private final int[][] backward;
+	/** Transformed bits of each byte of a mask, by transform and byte position. */
+	private final int[][][] bytes;
+
+	private Symmetry(int size) {
+		this.cells = size * size;
+		this.forward = new int[TRANSFORMS][cells];
+		this.backward = new int[TRANSFORMS][cells];
+		for (int t = 0; t < TRANSFORMS; ++t) {
+			for (int row = 0; row < size; ++row) {
+				for (int col = 0; col < size; ++col) {
+					int c = (t & 1) != 0 ? size - 1 - col : col;
+					int r = (t & 2) != 0 ? size - 1 - row : row;
+					if ((t & 4) != 0) {
+						final int swap = c;
+						c = r;
+						r = swap;
+					}
+					forward[t][row * size + col] = r * size + c;
+					backward[t][r * size + c] = row * size + col;
+				}
+			}
+		}
+		final int chunks = (cells + 7) / 8;
+		this.bytes = new int[TRANSFORMS][chunks][256];
+		for (int t = 0; t < TRANSFORMS; ++t) {
+			for (int chunk = 0; chunk < chunks; ++chunk) {
+				for (int value = 0; value < 256; ++value) {
+					int mask = 0;
+					for (int bit = 0; bit < 8; ++bit) {
+						final int cell = chunk * 8 + bit;
+						if (cell < cells && (value & 1 << bit) != 0) {
+							mask |= 1 << forward[t][cell];
+						}
+					}
+					bytes[t][chunk][value] = mask;
+				}
+			}
+		}
+	}
+
+	static synchronized Symmetry of(int size) {
+		if (CACHE[size] == null) {
+			CACHE[size] = new Symmetry(size);
+		}
+		return CACHE[size];
+	}
+
+	int apply(int t, int mask) {
+		final int[][] table = bytes[t];
+		int result = 0;
+		for (int chunk = 0; chunk < table.length; ++chunk) {
+			result |= table[chunk][(mask >>> (chunk * 8)) & 0xFF];
+		}
+		return result;
+	}
+
+	int cell(int t, int cell) {
+		return forward[t][cell];
+	}
+
+	/** Cell that transform {@code t} moves onto the given one. */
+	int inverse(int t, int cell) {
+		return backward[t][cell];
+	}
+
+	/**
+	 * @return smallest key {@code x << 16 | o} over all transforms in the low
+	 *         32 bits, and the transform producing it in the high bits
+	 */
+	long canonical(int x, int o) {
+		long best = Long.MAX_VALUE;
+		for (int t = 0; t < TRANSFORMS; ++t) {
+			final long key = (long) apply(t, x) << 16 | apply(t, o);
+			if (key < (best & 0xFFFFFFFFL)) {
+				best = (long) t << 32 | key;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,158 @@
+package domain.ai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Solved positions of small square boards, read from a memory-mapped file
+ * written by {@link TablebaseGenerator}.
+ * <p>
+ * Positions are stored once per class of the 8 board symmetries, keyed by
+ * the smallest of their transformed marks ({@code x << 16 | o}), in an
+ * open-addressing hash table per board size and win length. A lookup
+ * canonicalizes the position, probes the table and maps the stored move back
+ * to the board's orientation.
+ * <p>
+ * File layout (big-endian): magic, table count, then for each table its
+ * size, win length and power-of-two capacity followed by {@code capacity}
+ * int keys and {@code capacity} byte values. A value holds the move in
+ * canonical orientation plus one in the low 5 bits and the outcome plus one
+ * above it; zero marks an empty slot.
+ * <p>
+ * Immutable and safe to share between threads.
+ */
+public final class Tablebase {
+
+	/** Outcome for the player to move with best play. */
+	public static final int LOSS = -1;
+	public static final int DRAW = 0;
+	public static final int WIN = 1;
+
+	static final int MAGIC = 0x54425331; // "TBS1"
+	static final int MAX_SIZE = 4;
+	static final int NONE = -1;
+
+	private final ByteBuffer data;
+	private final Table[][] tables = new Table[MAX_SIZE + 1][MAX_SIZE + 1];
+
+	private Tablebase(ByteBuffer data) {
+		this.data = data;
+		if (data.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException("Not a tablebase file");
+		}
+		final int count = data.getInt(4);
+		int offset = 8;
+		for (int i = 0; i < count; ++i) {
+			final int size = data.get(offset);
+			final int winLength = data.get(offset + 1);
+			final int capacity = data.getInt(offset + 2);
+			if (size < 1 || size > MAX_SIZE || winLength < 1 || winLength > size
+					|| Integer.bitCount(capacity) != 1) {
+				throw new IllegalArgumentException("Corrupt tablebase header at " + offset);
+			}
+			offset += 6;
+			tables[size][winLength] = new Table(size, capacity, offset, offset + 4 * capacity);
+			offset += 5 * capacity;
+		}
+	}
+
+	/** Maps the file read-only; the mapping stays valid after the channel is closed. */
+	public static Tablebase load(Path file) throws IOException {
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new Tablebase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/** Wraps tables already in memory, in the file layout. */
+	static Tablebase of(ByteBuffer data) {
+		return new Tablebase(data);
+	}
+
+	public boolean covers(int cols, int rows, int winLength) {
+		return cols == rows && cols <= MAX_SIZE && winLength >= 1 && winLength <= cols
+				&& tables[cols][winLength] != null;
+	}
+
+	/**
+	 * @return best move for the player, or {@code -1} if the position is not
+	 *         in the tablebase
+	 */
+	public int move(BitBoard board, Player player, int winLength) {
+		final int found = probe(board, player, winLength);
+		if (found == 0)
+			return NONE;
+		final Table table = tables[board.columns()][winLength];
+		final int canonicalMove = (found & 0x1F) - 1;
+		return table.symmetry.inverse(found >>> 8, canonicalMove);
+	}
+
+	/**
+	 * @return {@link #WIN}, {@link #DRAW} or {@link #LOSS} for the player to
+	 *         move, or {@code null} if the position is not in the tablebase
+	 */
+	public Integer outcome(BitBoard board, Player player, int winLength) {
+		final int found = probe(board, player, winLength);
+		return found == 0 ? null : ((found & 0xFF) >>> 5) - 1;
+	}
+
+	/**
+	 * @return stored value with the canonicalizing transform in bits 8 and
+	 *         up, or {@code 0} if the position is not stored
+	 */
+	private int probe(BitBoard board, Player player, int winLength) {
+		if (!covers(board.columns(), board.rows(), winLength))
+			return 0;
+		final Table table = tables[board.columns()][winLength];
+		int x = 0;
+		int o = 0;
+		for (int cell = 0; cell < board.cellCount(); ++cell) {
+			final Player mark = board.get(board.column(cell), board.row(cell));
+			if (mark == Player.X) {
+				x |= 1 << cell;
+			} else if (mark == Player.O) {
+				o |= 1 << cell;
+			}
+		}
+		final Player toMove = Integer.bitCount(x) == Integer.bitCount(o) ? Player.X : Player.O;
+		if (player != toMove)
+			return 0;
+		final long canonical = table.symmetry.canonical(x, o);
+		final int value = table.find((int) canonical);
+		return value == 0 ? 0 : (int) (canonical >>> 32) << 8 | value;
+	}
+
+	private final class Table {
+
+		final Symmetry symmetry;
+		final int mask;
+		final int keysOffset;
+		final int valuesOffset;
+
+		Table(int size, int capacity, int keysOffset, int valuesOffset) {
+			this.symmetry = Symmetry.of(size);
+			this.mask = capacity - 1;
+			this.keysOffset = keysOffset;
+			this.valuesOffset = valuesOffset;
+		}
+
+		int find(int key) {
+			for (int slot = slot(key, mask);; slot = (slot + 1) & mask) {
+				final int value = data.get(valuesOffset + slot) & 0xFF;
+				if (value == 0)
+					return 0;
+				if (data.getInt(keysOffset + 4 * slot) == key)
+					return value;
+			}
+		}
+	}
+
+	static int slot(int key, int mask) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+	}
+}
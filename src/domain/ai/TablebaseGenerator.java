@@ -0,0 +1,462 @@
+package domain.ai;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Solves small square boards completely and writes the {@link Tablebase}
+ * file:
+ *
+ * <pre>
+ * java -cp build/classes/java/main:build/resources/main domain.ai.TablebaseGenerator --out tablebase.bin --verify 3/3 4/3 4/4
+ * </pre>
+ *
+ * Only positions the AI can meet are kept: those where it is to move after
+ * following the table itself from the start, as X or as O, against any
+ * replies.
+ * <p>
+ * With {@code --verify} the written file is loaded back and checked: the
+ * table side must reach its predicted outcome against every sequence of
+ * replies and against {@link SearchStrategy}. The build runs the same check
+ * in {@code TablebaseGeneratorTest}.
+ */
+public final class TablebaseGenerator {
+
+	private static final Path DEFAULT_OUT = Path.of("tablebase.bin");
+	private static final String[] DEFAULT_CONFIGS = { "3/3", "4/3", "4/4" };
+
+	private final int size;
+	private final int cells;
+	private final int winLength;
+	private final int full;
+	private final Symmetry symmetry;
+	/** Lines of {@code winLength} cells through each cell, as masks. */
+	private final int[][] lines;
+
+	private final IntByteMap solved = new IntByteMap();
+	private final IntByteMap book = new IntByteMap();
+
+	TablebaseGenerator(int size, int winLength) {
+		if (size < 1 || size > Tablebase.MAX_SIZE || winLength < 1 || winLength > size) {
+			throw new IllegalArgumentException(size + "/" + winLength);
+		}
+		this.size = size;
+		this.cells = size * size;
+		this.winLength = winLength;
+		this.full = (1 << cells) - 1;
+		this.symmetry = Symmetry.of(size);
+		this.lines = new int[cells][];
+
+		final int[][] directions = { { 1, 0 }, { 0, 1 }, { 1, 1 }, { 1, -1 } };
+		final List<List<Integer>> byCell = new ArrayList<>();
+		for (int cell = 0; cell < cells; ++cell) {
+			byCell.add(new ArrayList<>());
+		}
+		for (int[] dir : directions) {
+			for (int row = 0; row < size; ++row) {
+				for (int col = 0; col < size; ++col) {
+					final int endCol = col + dir[0] * (winLength - 1);
+					final int endRow = row + dir[1] * (winLength - 1);
+					if (endCol >= size || endRow < 0 || endRow >= size)
+						continue;
+					int mask = 0;
+					for (int i = 0; i < winLength; ++i) {
+						mask |= 1 << ((row + dir[1] * i) * size + col + dir[0] * i);
+					}
+					for (int cell = 0; cell < cells; ++cell) {
+						if ((mask & 1 << cell) != 0) {
+							byCell.get(cell).add(mask);
+						}
+					}
+				}
+			}
+		}
+		for (int cell = 0; cell < cells; ++cell) {
+			lines[cell] = byCell.get(cell).stream().mapToInt(Integer::intValue).toArray();
+		}
+	}
+
+	/** Solves the board and collects the positions to store. */
+	void generate() {
+		collect(0, 0, Player.X, new IntByteMap());
+		collect(0, 0, Player.O, new IntByteMap());
+	}
+
+	int entries() {
+		return book.size();
+	}
+
+	/**
+	 * Score for the player to move: positive if it wins, greater for faster
+	 * wins, negative for losses, zero for a draw.
+	 */
+	private int solve(int own, int other) {
+		final int key = key(own, other);
+		final int cached = solved.get(key);
+		if (cached != IntByteMap.MISSING)
+			return cached;
+		int best = Integer.MIN_VALUE;
+		for (int cell = 0; cell < cells; ++cell) {
+			final int score = scoreMove(own, other, cell);
+			if (score > best)
+				best = score;
+		}
+		solved.put(key, best);
+		return best;
+	}
+
+	/** Score of the move for the player to move, or {@code MIN_VALUE} if the cell is taken. */
+	private int scoreMove(int own, int other, int cell) {
+		final int bit = 1 << cell;
+		if (((own | other) & bit) != 0)
+			return Integer.MIN_VALUE;
+		final int next = own | bit;
+		final int empty = cells - Integer.bitCount(next | other);
+		for (int line : lines[cell]) {
+			if ((next & line) == line)
+				return 1 + empty;
+		}
+		if (empty == 0)
+			return 0;
+		return -solve(other, next);
+	}
+
+	/** The key stores X then O, whoever is to move. */
+	private int key(int own, int other) {
+		final boolean xToMove = Integer.bitCount(own) == Integer.bitCount(other);
+		final int x = xToMove ? own : other;
+		final int o = xToMove ? other : own;
+		return (int) symmetry.canonical(x, o);
+	}
+
+	private void collect(int x, int o, Player ai, IntByteMap visited) {
+		final int key = (int) symmetry.canonical(x, o);
+		if (visited.get(key) != IntByteMap.MISSING)
+			return;
+		visited.put(key, 1);
+		// continue from the canonical orientation, in which moves are stored
+		x = key >>> 16;
+		o = key & 0xFFFF;
+		if (isWon(x) || isWon(o) || (x | o) == full)
+			return;
+
+		final Player toMove = Integer.bitCount(x) == Integer.bitCount(o) ? Player.X : Player.O;
+		final int own = toMove == Player.X ? x : o;
+		final int other = toMove == Player.X ? o : x;
+		if (toMove == ai) {
+			int bestCell = -1;
+			int best = Integer.MIN_VALUE;
+			for (int cell = 0; cell < cells; ++cell) {
+				final int score = scoreMove(own, other, cell);
+				if (score > best) {
+					best = score;
+					bestCell = cell;
+				}
+			}
+			book.put(key, (Integer.signum(best) + 1) << 5 | (bestCell + 1));
+			play(x, o, toMove, bestCell, ai, visited);
+		} else {
+			for (int cell = 0; cell < cells; ++cell) {
+				if (((x | o) & 1 << cell) == 0) {
+					play(x, o, toMove, cell, ai, visited);
+				}
+			}
+		}
+	}
+
+	private void play(int x, int o, Player toMove, int cell, Player ai, IntByteMap visited) {
+		if (toMove == Player.X) {
+			collect(x | 1 << cell, o, ai, visited);
+		} else {
+			collect(x, o | 1 << cell, ai, visited);
+		}
+	}
+
+	private boolean isWon(int marks) {
+		for (int cell = 0; cell < cells; ++cell) {
+			if ((marks & 1 << cell) == 0)
+				continue;
+			for (int line : lines[cell]) {
+				if ((marks & line) == line)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private void write(DataOutputStream out) throws IOException {
+		// load factor of at most 3/4
+		final int capacity = Integer.highestOneBit(Math.max(2, book.size() * 4 / 3) - 1) << 1;
+		final int mask = capacity - 1;
+		final int[] keys = new int[capacity];
+		final byte[] values = new byte[capacity];
+		book.forEach((key, value) -> {
+			int slot = Tablebase.slot(key, mask);
+			while (values[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			values[slot] = (byte) value;
+		});
+		out.writeByte(size);
+		out.writeByte(winLength);
+		out.writeInt(capacity);
+		for (int key : keys) {
+			out.writeInt(key);
+		}
+		out.write(values);
+	}
+
+	/**
+	 * Plays every game from the start with the table on the {@code ai} side
+	 * and any replies on the other.
+	 *
+	 * @return number of positions checked
+	 */
+	private long verifyExhaustive(Tablebase tablebase, BitBoard board, Player ai, int expected) {
+		final Player toMove = board.markCount() % 2 == 0 ? Player.X : Player.O;
+		if (toMove == ai) {
+			final int move = tablebase.move(board, ai, winLength);
+			final Integer outcome = tablebase.outcome(board, ai, winLength);
+			if (move < 0 || outcome == null) {
+				throw new IllegalStateException("Missing position " + describe(board));
+			}
+			if (outcome < expected) {
+				throw new IllegalStateException("Outcome dropped from " + expected + " to " + outcome
+						+ " at " + describe(board));
+			}
+			return 1 + verifyMove(tablebase, board, ai, move, outcome);
+		}
+		long checked = 0;
+		for (int cell = 0; cell < cells; ++cell) {
+			if (board.isEmpty(board.column(cell), board.row(cell))) {
+				checked += verifyMove(tablebase, board, ai, cell, expected);
+			}
+		}
+		return checked;
+	}
+
+	private long verifyMove(Tablebase tablebase, BitBoard board, Player ai, int cell, int expected) {
+		final int col = board.column(cell);
+		final int row = board.row(cell);
+		if (!board.isEmpty(col, row)) {
+			throw new IllegalStateException("Occupied move " + cell + " at " + describe(board));
+		}
+		final Player toMove = board.markCount() % 2 == 0 ? Player.X : Player.O;
+		board.set(col, row, toMove);
+		long checked = 0;
+		try {
+			if (board.hasLineThrough(col, row, toMove, winLength)) {
+				if ((toMove == ai ? Tablebase.WIN : Tablebase.LOSS) < expected) {
+					throw new IllegalStateException("Table side lost at " + describe(board));
+				}
+			} else if (board.markCount() == cells) {
+				if (expected == Tablebase.WIN) {
+					throw new IllegalStateException("Predicted win drawn at " + describe(board));
+				}
+			} else {
+				checked = verifyExhaustive(tablebase, board, ai, expected);
+			}
+		} finally {
+			board.set(col, row, Player.NONE);
+		}
+		return checked;
+	}
+
+	/** Plays the table against the search from the start and checks the result. */
+	private void verifyAgainstSearch(Tablebase tablebase, Player ai) {
+		final var board = new BitBoard(size, size);
+		final var search = new SearchStrategy(10_000, Math.min(cells, 8), new TranspositionTable(1 << 16));
+		final int expected = tablebase.outcome(board, Player.X, winLength) * (ai == Player.X ? 1 : -1);
+		Player toMove = Player.X;
+		while (true) {
+			final int cell = toMove == ai
+					? tablebase.move(board, ai, winLength)
+					: search.chooseMove(new BitBoard(board), toMove, winLength);
+			final int col = board.column(cell);
+			final int row = board.row(cell);
+			board.set(col, row, toMove);
+			if (board.hasLineThrough(col, row, toMove, winLength)) {
+				final int result = toMove == ai ? Tablebase.WIN : Tablebase.LOSS;
+				if (result < expected) {
+					throw new IllegalStateException("Search beat the table at " + describe(board));
+				}
+				return;
+			}
+			if (board.markCount() == cells) {
+				if (expected == Tablebase.WIN) {
+					throw new IllegalStateException("Search held a predicted win at " + describe(board));
+				}
+				return;
+			}
+			toMove = toMove == Player.X ? Player.O : Player.X;
+		}
+	}
+
+	/**
+	 * Checks the table of this board in the loaded file, for both sides.
+	 *
+	 * @return number of lookups checked
+	 * @throws IllegalStateException at the first position where the table
+	 *                               fails its outcome or is missing
+	 */
+	long verify(Tablebase tablebase) {
+		final var board = new BitBoard(size, size);
+		final int outcome = tablebase.outcome(board, Player.X, winLength);
+		long checked = verifyExhaustive(tablebase, board, Player.X, outcome);
+		checked += verifyExhaustive(tablebase, board, Player.O, -outcome);
+		verifyAgainstSearch(tablebase, Player.X);
+		verifyAgainstSearch(tablebase, Player.O);
+		return checked;
+	}
+
+	private String describe(BitBoard board) {
+		var text = new StringBuilder();
+		for (int row = 0; row < size; ++row) {
+			text.append(row == 0 ? "" : "/");
+			for (int col = 0; col < size; ++col) {
+				Player mark = board.get(col, row);
+				text.append(mark == Player.X ? 'x' : mark == Player.O ? 'o' : '.');
+			}
+		}
+		return text.toString();
+	}
+
+	public static void main(String[] args) throws IOException {
+		Path out = DEFAULT_OUT;
+		boolean verify = false;
+		List<String> configs = new ArrayList<>();
+		for (int i = 0; i < args.length; ++i) {
+			switch (args[i]) {
+				case "--out":
+					out = Path.of(args[++i]);
+					break;
+				case "--verify":
+					verify = true;
+					break;
+				default:
+					configs.add(args[i]);
+					break;
+			}
+		}
+		if (configs.isEmpty()) {
+			configs.addAll(Arrays.asList(DEFAULT_CONFIGS));
+		}
+
+		List<TablebaseGenerator> generators = new ArrayList<>();
+		for (String config : configs) {
+			String[] parts = config.split("/");
+			var generator = new TablebaseGenerator(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+			long start = System.nanoTime();
+			generator.generate();
+			System.out.printf("%s: %d positions solved, %d stored in %.1f s%n", config,
+					generator.solved.size(), generator.entries(), (System.nanoTime() - start) / 1e9);
+			generators.add(generator);
+		}
+
+		write(generators, out);
+		System.out.printf("Written %s (%d bytes)%n", out, Files.size(out));
+
+		if (verify) {
+			var tablebase = Tablebase.load(out);
+			for (var generator : generators) {
+				final long checked = generator.verify(tablebase);
+				final int outcome = tablebase.outcome(new BitBoard(generator.size, generator.size), Player.X,
+						generator.winLength);
+				System.out.printf("%d/%d: verified %d lookups, X %s with best play%n", generator.size,
+						generator.winLength, checked, outcome > 0 ? "wins" : outcome < 0 ? "loses" : "draws");
+			}
+		}
+	}
+
+	/** Writes the tables of the solved boards into one {@link Tablebase} file. */
+	static void write(List<TablebaseGenerator> generators, Path out) throws IOException {
+		if (out.getParent() != null) {
+			Files.createDirectories(out.getParent());
+		}
+		try (var stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(out)))) {
+			stream.writeInt(Tablebase.MAGIC);
+			stream.writeInt(generators.size());
+			for (var generator : generators) {
+				generator.write(stream);
+			}
+		}
+	}
+
+	/** Open-addressing map from int keys to small values. */
+	private static final class IntByteMap {
+
+		static final int MISSING = Integer.MIN_VALUE;
+
+		private int[] keys = new int[1 << 10];
+		private byte[] values = new byte[1 << 10];
+		private boolean[] used = new boolean[1 << 10];
+		private int size;
+
+		int size() {
+			return size;
+		}
+
+		int get(int key) {
+			final int mask = keys.length - 1;
+			for (int slot = Tablebase.slot(key, mask); used[slot]; slot = (slot + 1) & mask) {
+				if (keys[slot] == key)
+					return values[slot];
+			}
+			return MISSING;
+		}
+
+		void put(int key, int value) {
+			if (2 * (size + 1) > keys.length) {
+				grow();
+			}
+			final int mask = keys.length - 1;
+			int slot = Tablebase.slot(key, mask);
+			while (used[slot] && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			if (!used[slot]) {
+				used[slot] = true;
+				keys[slot] = key;
+				++size;
+			}
+			values[slot] = (byte) value;
+		}
+
+		void forEach(IntBiConsumer action) {
+			for (int slot = 0; slot < keys.length; ++slot) {
+				if (used[slot]) {
+					action.accept(keys[slot], values[slot]);
+				}
+			}
+		}
+
+		private void grow() {
+			final int[] oldKeys = keys;
+			final byte[] oldValues = values;
+			final boolean[] oldUsed = used;
+			keys = new int[oldKeys.length * 2];
+			values = new byte[oldKeys.length * 2];
+			used = new boolean[oldKeys.length * 2];
+			size = 0;
+			for (int slot = 0; slot < oldKeys.length; ++slot) {
+				if (oldUsed[slot]) {
+					put(oldKeys[slot], oldValues[slot]);
+				}
+			}
+		}
+	}
+
+	private interface IntBiConsumer {
+		void accept(int key, int value);
+	}
+}
@@ -0,0 +1,27 @@
+package domain.ai;
+
+import java.util.Objects;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Plays from the {@link Tablebase} when it has the position, otherwise asks
+ * the fallback strategy.
+ */
+public class TablebaseStrategy implements AiStrategy {
+
+	private final Tablebase tablebase;
+	private final AiStrategy fallback;
+
+	public TablebaseStrategy(Tablebase tablebase, AiStrategy fallback) {
+		this.tablebase = Objects.requireNonNull(tablebase);
+		this.fallback = Objects.requireNonNull(fallback);
+	}
+
+	@Override
+	public int chooseMove(BitBoard board, Player player, int winLength) {
+		final int move = tablebase.move(board, player, winLength);
+		return move >= 0 ? move : fallback.chooseMove(board, player, winLength);
+	}
+}
@@ -0,0 +1,114 @@
+package domain.ai;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size hash table of search results indexed by Zobrist key.
+ * <p>
+ * Each slot holds one entry packed into a {@code long}. A new result replaces
+ * the stored one if it was searched at least as deep or if the stored one is
+ * left over from an earlier search.
+ * <p>
+ * The table can be shared by concurrent searches without locking: a slot
+ * stores the entry together with {@code key ^ entry}, so a probe that races
+ * with a store sees a key mismatch and reports a miss instead of a torn entry.
+ */
+public class TranspositionTable {
+
+	static final int EXACT = 0;
+	static final int LOWER = 1;
+	static final int UPPER = 2;
+
+	static final long MISS = 0L;
+
+	private static final int MOVE_BITS = 24;
+	private static final int DEPTH_BITS = 8;
+	private static final int FLAG_BITS = 2;
+	private static final int AGE_BITS = 5;
+
+	private static final int DEPTH_SHIFT = MOVE_BITS;
+	private static final int FLAG_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+	private static final int AGE_SHIFT = FLAG_SHIFT + FLAG_BITS;
+	private static final int VALID_SHIFT = AGE_SHIFT + AGE_BITS;
+	private static final int SCORE_SHIFT = VALID_SHIFT + 1;
+
+	private final AtomicLongArray checks;
+	private final AtomicLongArray entries;
+	private final int mask;
+	private volatile int age;
+
+	/**
+	 * @param capacity maximum number of entries, rounded down to a power of two
+	 */
+	public TranspositionTable(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity");
+		}
+		int size = Integer.highestOneBit(capacity);
+		checks = new AtomicLongArray(size);
+		entries = new AtomicLongArray(size);
+		mask = size - 1;
+	}
+
+	public int capacity() {
+		return entries.length();
+	}
+
+	/** Marks all stored entries as older than the next search. */
+	public void newSearch() {
+		age = (age + 1) & ((1 << AGE_BITS) - 1);
+	}
+
+	/**
+	 * @return the packed entry, or {@link #MISS} if the key is not stored
+	 */
+	long probe(long key) {
+		final int slot = (int) key & mask;
+		final long entry = entries.getOpaque(slot);
+		return entry != MISS && (checks.getOpaque(slot) ^ entry) == key ? entry : MISS;
+	}
+
+	void store(long key, int move, int depth, int flag, int score) {
+		final int slot = (int) key & mask;
+		final long old = entries.getOpaque(slot);
+		if (old != MISS && (checks.getOpaque(slot) ^ old) != key && depth(old) > depth && age(old) == age) {
+			return;
+		}
+		final long entry = pack(move, depth, flag, score);
+		entries.setOpaque(slot, entry);
+		checks.setOpaque(slot, key ^ entry);
+	}
+
+	long pack(int move, int depth, int flag, int score) {
+		return pack(move, depth, flag, score, age);
+	}
+
+	static long pack(int move, int depth, int flag, int score, int age) {
+		return ((long) (move + 1) & ((1L << MOVE_BITS) - 1))
+				| ((long) depth << DEPTH_SHIFT)
+				| ((long) flag << FLAG_SHIFT)
+				| ((long) age << AGE_SHIFT)
+				| (1L << VALID_SHIFT)
+				| ((long) score << SCORE_SHIFT);
+	}
+
+	static int move(long entry) {
+		return (int) (entry & ((1L << MOVE_BITS) - 1)) - 1;
+	}
+
+	static int depth(long entry) {
+		return (int) (entry >>> DEPTH_SHIFT) & ((1 << DEPTH_BITS) - 1);
+	}
+
+	static int flag(long entry) {
+		return (int) (entry >>> FLAG_SHIFT) & ((1 << FLAG_BITS) - 1);
+	}
+
+	static int score(long entry) {
+		return (int) (entry >> SCORE_SHIFT);
+	}
+
+	private static int age(long entry) {
+		return (int) (entry >>> AGE_SHIFT) & ((1 << AGE_BITS) - 1);
+	}
+}
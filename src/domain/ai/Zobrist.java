@@ -0,0 +1,54 @@
+package domain.ai;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Zobrist keys for cells of a board of a given size.
+ * <p>
+ * Keys are derived from a fixed seed, so the same position hashes to the same
+ * value in every game and every thread.
+ */
+final class Zobrist {
+
+	private static final long SEED = 0x9E3779B97F4A7C15L;
+
+	private final long[] xKeys;
+	private final long[] oKeys;
+
+	Zobrist(int cells) {
+		xKeys = new long[cells];
+		oKeys = new long[cells];
+		for (int cell = 0; cell < cells; ++cell) {
+			xKeys[cell] = keyOf(cell, Player.X);
+			oKeys[cell] = keyOf(cell, Player.O);
+		}
+	}
+
+	/** Same as {@link #key}, computed without a table. */
+	static long keyOf(int cell, Player player) {
+		return mix(SEED + 2L * cell + (player == Player.O ? 1 : 0));
+	}
+
+	long key(int cell, Player player) {
+		return player == Player.X ? xKeys[cell] : oKeys[cell];
+	}
+
+	long hash(BitBoard board) {
+		long hash = 0L;
+		for (int cell = 0; cell < board.cellCount(); ++cell) {
+			Player player = board.get(board.column(cell), board.row(cell));
+			if (player != Player.NONE) {
+				hash ^= key(cell, player);
+			}
+		}
+		return hash;
+	}
+
+	/** SplitMix64 finalizer. */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,16 @@
+package domain.event;
+
+import java.util.EventListener;
+
+import domain.Game;
+import domain.Player;
+
+/**
+ * Cell change notification passed as plain arguments, so no event object is
+ * allocated per move. Meant for listeners on the hot path, such as servers
+ * and simulations.
+ */
+@FunctionalInterface
+public interface CellChangedCallback extends EventListener {
+	void cellChanged(Game source, int colIndex, int rowIndex, Player state);
+}
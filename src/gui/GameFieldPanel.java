@@ -1,32 +1,52 @@
 package gui;
 
 import java.awt.Color;
-import java.awt.Font;
+import java.awt.Cursor;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
 import java.util.Objects;
 
 import javax.swing.JPanel;
 
 import domain.Game;
+import domain.GameSnapshot;
 import domain.Player;
 import domain.event.CellChangedEvent;
 import domain.event.CellChangedListener;
 import domain.event.GameOverEvent;
 import domain.event.GameOverListener;
+import metrics.Log;
+import metrics.Metrics;
 
 public class GameFieldPanel extends JPanel {
 
 	private static final String MSG_WIN_HUMAN = "Победил игрок!";
 	private static final String MSG_WIN_AI = "Победил компьютер!";
+	private static final String MSG_WIN_OPPONENT = "Победил соперник!";
+	private static final String MSG_WIN_X = "Победили крестики!";
+	private static final String MSG_WIN_O = "Победили нолики!";
 	private static final String MSG_DRAW = "Ничья!";
 
 	private static final int CELL_PADDING = 5;
 
+	/** Bounded fields whose cells would get smaller than this are scrolled instead of fitted. */
+	private static final int MIN_FIT_CELL_SIZE = 24;
+	private static final int MIN_CELL_SIZE = 2 * CELL_PADDING + 4;
+	private static final int MAX_CELL_SIZE = 128;
+	private static final int DEFAULT_CELL_SIZE = 32;
+	private static final int DRAG_THRESHOLD = 4;
+	private static final Color OUTSIDE_FIELD_COLOR = Color.LIGHT_GRAY;
+
 	private Game game;
+	/** A recorded game is shown: clicks on the field are ignored. */
+	private boolean replay;
 
 	private int panelWidth;
 	private int panelHeight;
@@ -34,24 +54,100 @@ public class GameFieldPanel extends JPanel {
 	private int cellWidth;
 	private int cellHeight;
 
+	/*
+	 * Viewport: pixel position of the top-left corner of cell (0, 0). Fitted
+	 * fields always have it at the panel origin; scrolled fields move it when
+	 * dragged and keep the cell size chosen with the mouse wheel.
+	 */
+	private boolean scrolled;
+	private boolean viewportCentered;
+	private int originX;
+	private int originY;
+	private int cellSize = DEFAULT_CELL_SIZE;
+
+	private int pressX;
+	private int pressY;
+	private boolean dragging;
+
+	private Runnable firstPaintAction;
+
+	private BufferedImage gridImage;
+	private final SpriteCache sprites = new SpriteCache();
+	private final Rectangle clip = new Rectangle();
+
 	GameFieldPanel() {
 		super(true);
 
-		super.addMouseListener(new MouseAdapter() {
+		var mouseHandler = new MouseAdapter() {
+			@Override
+			public void mousePressed(MouseEvent e) {
+				pressX = e.getX();
+				pressY = e.getY();
+				dragging = false;
+			}
+
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				if (!scrolled)
+					return;
+				if (!dragging && Math.abs(e.getX() - pressX) + Math.abs(e.getY() - pressY) < DRAG_THRESHOLD)
+					return;
+				dragging = true;
+				scrollBy(e.getX() - pressX, e.getY() - pressY);
+				pressX = e.getX();
+				pressY = e.getY();
+			}
+
 			@Override
 			public void mouseReleased(MouseEvent e) {
-				update(e);
+				if (!dragging) {
+					update(e);
+				}
+				dragging = false;
 			}
-		});
+
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				if (scrolled) {
+					zoom(e.getWheelRotation() < 0 ? 1.25 : 0.8, e.getX(), e.getY());
+				}
+			}
+		};
+		super.addMouseListener(mouseHandler);
+		super.addMouseMotionListener(mouseHandler);
+		super.addMouseWheelListener(mouseHandler);
+	}
+
+	/** Runs the action once, right after the panel is painted for the first time. */
+	void whenFirstPainted(Runnable action) {
+		firstPaintAction = action;
+	}
+
+	void startReplay(Game game) {
+		startNewGame(game);
+		replay = true;
 	}
 
 	void startNewGame(Game game) {
+		if (this.game != null) {
+			this.game.cancel();
+		}
 		this.game = Objects.requireNonNull(game);
+		this.replay = false;
 		this.game.addCellChangedListener(new CellChangedListener() {
 
 			@Override
 			public void cellChanged(CellChangedEvent e) {
-				GameFieldPanel.this.repaint();
+				updateCursor();
+				if (scrolled && !isCellVisible(e.getColIndex(), e.getRowIndex())) {
+					centerOn(e.getColIndex(), e.getRowIndex());
+					repaint();
+				} else if (e.getState() == Player.NONE) {
+					// an undone move may take the game over message with it
+					repaint();
+				} else {
+					repaintCell(e.getColIndex(), e.getRowIndex());
+				}
 			}
 
 		});
@@ -59,23 +155,91 @@ public class GameFieldPanel extends JPanel {
 
 			@Override
 			public void gameOver(GameOverEvent e) {
+				updateCursor();
 				GameFieldPanel.this.repaint();
 			}
 
 		});
 
+		gridImage = null;
+		viewportCentered = false;
+		cellSize = DEFAULT_CELL_SIZE;
+		sprites.evict();
+		updateCursor();
 		repaint();
 	}
 
+	private void repaintCell(int col, int row) {
+		if (cellWidth == 0 || cellHeight == 0) {
+			repaint();
+			return;
+		}
+		repaint(cellX(col), cellY(row), cellWidth + 1, cellHeight + 1);
+	}
+
+	private void updateCursor() {
+		setCursor(game != null && game.isAiThinking()
+				? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR)
+				: Cursor.getDefaultCursor());
+	}
+
 	protected void update(MouseEvent e) {
-		if (game == null || game.isGameOver()) {
+		if (game == null || replay || game.isGameOver() || game.isAiThinking() || cellWidth == 0 || cellHeight == 0) {
 			return;
 		}
 
-		int colIndex = e.getX() / cellWidth;
-		int rowIndex = e.getY() / cellHeight;
-		System.out.printf("column=%d, row=%d\n", colIndex, rowIndex);
+		int colIndex = Math.floorDiv(e.getX() - originX, cellWidth);
+		int rowIndex = Math.floorDiv(e.getY() - originY, cellHeight);
+		if (game.isFieldBounded() && (colIndex < 0 || colIndex >= game.fieldColumns()
+				|| rowIndex < 0 || rowIndex >= game.fieldRows())) {
+			return;
+		}
+		if (Log.ENABLED) {
+			Log.event("click", "col", colIndex, "row", rowIndex);
+		}
 		game.humanTurn(colIndex, rowIndex);
+		updateCursor();
+	}
+
+	/*
+	 * Viewport
+	 */
+
+	private int cellX(int col) {
+		return originX + col * cellWidth;
+	}
+
+	private int cellY(int row) {
+		return originY + row * cellHeight;
+	}
+
+	private boolean isCellVisible(int col, int row) {
+		int x = cellX(col);
+		int y = cellY(row);
+		return x >= 0 && y >= 0 && x + cellWidth <= getWidth() && y + cellHeight <= getHeight();
+	}
+
+	private void centerOn(int col, int row) {
+		originX = getWidth() / 2 - col * cellSize - cellSize / 2;
+		originY = getHeight() / 2 - row * cellSize - cellSize / 2;
+	}
+
+	private void scrollBy(int dx, int dy) {
+		originX += dx;
+		originY += dy;
+		repaint();
+	}
+
+	private void zoom(double factor, int x, int y) {
+		int newSize = (int) Math.round(cellSize * factor);
+		newSize = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, newSize));
+		if (newSize == cellSize)
+			return;
+		// keep the point under the cursor in place
+		originX = x - (int) Math.round((x - originX) * (double) newSize / cellSize);
+		originY = y - (int) Math.round((y - originY) * (double) newSize / cellSize);
+		cellSize = newSize;
+		repaint();
 	}
 
 	/*
@@ -84,85 +248,204 @@ public class GameFieldPanel extends JPanel {
 
 	@Override
 	protected void paintComponent(Graphics g) {
-		super.paintComponent(g);
+		final long start = System.nanoTime();
+		if (game == null) {
+			super.paintComponent(g);
+			firstPainted();
+			return;
+		}
 		var g2D = (Graphics2D) g;
-		g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 		g2D.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 		render(g2D);
+		final long elapsed = System.nanoTime() - start;
+		Metrics.PAINT_TIME.record(elapsed);
+		if (Log.ENABLED) {
+			Log.event("paint", "width", clip.width, "height", clip.height, "micros", elapsed / 1000);
+		}
+		firstPainted();
 	}
 
-	private void render(Graphics g) {
-		if (game == null) {
-			return;
+	private void firstPainted() {
+		if (firstPaintAction != null) {
+			var action = firstPaintAction;
+			firstPaintAction = null;
+			action.run();
 		}
+	}
 
+	private void render(Graphics2D g) {
 		panelWidth = getWidth();
 		panelHeight = getHeight();
-		int fieldCols = game.fieldColumns();
-		int fieldRows = game.fieldRows();
-
-		cellWidth = panelWidth / fieldCols;
-		cellHeight = panelHeight / fieldRows;
-
-		g.setColor(Color.BLACK);
-
-		for (int row = 0; row < fieldRows; ++row) {
-			int y = row * cellHeight;
-			g.drawLine(0, y, panelWidth, y);
+		if (panelWidth <= 0 || panelHeight <= 0) {
+			return;
 		}
-		for (int col = 0; col < fieldCols; ++col) {
-			int x = col * cellWidth;
-			g.drawLine(x, 0, x, panelHeight);
+		updateGeometry();
+		// one position for the whole frame, whatever the game thread does meanwhile
+		final GameSnapshot position = game.snapshot();
+
+		if (gridImage == null
+				|| gridImage.getWidth() != panelWidth + cellWidth
+				|| gridImage.getHeight() != panelHeight + cellHeight) {
+			gridImage = renderGrid();
+			sprites.evict();
+		}
+		g.getClipBounds(clip);
+		if (clip.isEmpty()) {
+			clip.setBounds(0, 0, panelWidth, panelHeight);
+		}
+		g.drawImage(gridImage,
+				Math.floorMod(originX, cellWidth) - cellWidth,
+				Math.floorMod(originY, cellHeight) - cellHeight,
+				null);
+
+		int fromCol = Math.floorDiv(clip.x - originX, cellWidth);
+		int toCol = Math.floorDiv(clip.x + clip.width - originX, cellWidth);
+		int fromRow = Math.floorDiv(clip.y - originY, cellHeight);
+		int toRow = Math.floorDiv(clip.y + clip.height - originY, cellHeight);
+		if (game.isFieldBounded()) {
+			if (scrolled) {
+				shadeOutsideField(g);
+			}
+			fromCol = Math.max(0, fromCol);
+			fromRow = Math.max(0, fromRow);
+			toCol = Math.min(game.fieldColumns() - 1, toCol);
+			toRow = Math.min(game.fieldRows() - 1, toRow);
 		}
 
-		for (int row = 0; row < fieldRows; ++row) {
-			for (int col = 0; col < fieldCols; ++col) {
-				if (game.cellState(col, row) == Player.NONE)
-					continue;
-
-				if (game.cellState(col, row) == game.humanPlayer()) {
+		final int markWidth = cellWidth - CELL_PADDING * 2;
+		final int markHeight = cellHeight - CELL_PADDING * 2;
+		if (markWidth > 0 && markHeight > 0) {
+			for (int row = fromRow; row <= toRow; ++row) {
+				for (int col = fromCol; col <= toCol; ++col) {
+					Player state = position.cellState(col, row);
+					if (state == Player.NONE)
+						continue;
+
+					g.drawImage(sprites.mark(getGraphicsConfiguration(), state, markColor(state), markWidth, markHeight),
+							cellX(col) + CELL_PADDING,
+							cellY(row) + CELL_PADDING,
+							null);
+				}
+			}
+		}
 
-					g.setColor(Color.BLUE);
-					g.fillOval(col * cellWidth + CELL_PADDING,
-							row * cellHeight + CELL_PADDING,
-							cellWidth - CELL_PADDING * 2,
-							cellHeight - CELL_PADDING * 2);
+		if (position.isGameOver()) {
+			showMessageGameOver(g, position.winner());
+		}
+	}
 
-				} else if (game.cellState(col, row) == game.aiPlayer()) {
+	/**
+	 * Fits a small bounded field into the panel; otherwise switches to the
+	 * scrolled viewport, centred on the field on first paint.
+	 */
+	private void updateGeometry() {
+		scrolled = !game.isFieldBounded()
+				|| panelWidth / game.fieldColumns() < MIN_FIT_CELL_SIZE
+				|| panelHeight / game.fieldRows() < MIN_FIT_CELL_SIZE;
+		if (!scrolled) {
+			originX = 0;
+			originY = 0;
+			cellWidth = panelWidth / game.fieldColumns();
+			cellHeight = panelHeight / game.fieldRows();
+			return;
+		}
+		cellWidth = cellSize;
+		cellHeight = cellSize;
+		if (!viewportCentered) {
+			viewportCentered = true;
+			var marked = game.markedArea();
+			if (marked != null) {
+				centerOn(marked.col() + marked.cols() / 2, marked.row() + marked.rows() / 2);
+			} else if (game.isFieldBounded()) {
+				centerOn(game.fieldColumns() / 2, game.fieldRows() / 2);
+			} else {
+				centerOn(0, 0);
+			}
+		}
+	}
 
-					g.setColor(Color.RED);
-					g.fillOval(col * cellWidth + CELL_PADDING,
-							row * cellHeight + CELL_PADDING,
-							cellWidth - CELL_PADDING * 2,
-							cellHeight - CELL_PADDING * 2);
+	private void shadeOutsideField(Graphics g) {
+		final long left = originX;
+		final long top = originY;
+		final long right = left + (long) game.fieldColumns() * cellWidth;
+		final long bottom = top + (long) game.fieldRows() * cellHeight;
+		g.setColor(OUTSIDE_FIELD_COLOR);
+		if (left > 0) {
+			g.fillRect(0, 0, (int) left, panelHeight);
+		}
+		if (right < panelWidth) {
+			g.fillRect((int) Math.max(0, right) + 1, 0, panelWidth, panelHeight);
+		}
+		if (top > 0) {
+			g.fillRect(0, 0, panelWidth, (int) top);
+		}
+		if (bottom < panelHeight) {
+			g.fillRect(0, (int) Math.max(0, bottom) + 1, panelWidth, panelHeight);
+		}
+	}
 
-				} else {
-					throw new RuntimeException(
-							"Unexpected value " + game.cellState(col, row) + " in cell: column=" + col + " row=" + row);
-				}
+	/**
+	 * Draws the background and grid lines once per panel and cell size; one
+	 * extra cell in each direction lets the scrolled viewport blit it at any
+	 * offset. Cell changes only repaint their own rectangle on top of it.
+	 */
+	private BufferedImage renderGrid() {
+		final int width = panelWidth + cellWidth;
+		final int height = panelHeight + cellHeight;
+		var config = getGraphicsConfiguration();
+		BufferedImage image = config != null
+				? config.createCompatibleImage(width, height, Transparency.OPAQUE)
+				: new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics g = image.getGraphics();
+		try {
+			g.setColor(getBackground());
+			g.fillRect(0, 0, width, height);
+			g.setColor(Color.BLACK);
+			for (int y = 0; y < height; y += cellHeight) {
+				g.drawLine(0, y, width, y);
 			}
+			for (int x = 0; x < width; x += cellWidth) {
+				g.drawLine(x, 0, x, height);
+			}
+		} finally {
+			g.dispose();
 		}
+		return image;
+	}
 
-		if (game.isGameOver()) {
-			showMessageGameOver(g);
+	/**
+	 * Blue for the player at this computer and red for the opponent, AI or
+	 * remote; X blue and O red when both sides play here.
+	 */
+	private Color markColor(Player state) {
+		if (game.humanPlayer() == Player.NONE) {
+			return state == Player.X ? Color.BLUE : Color.RED;
 		}
+		return state == game.humanPlayer() ? Color.BLUE : Color.RED;
 	}
 
-	private void showMessageGameOver(Graphics g) {
+	private void showMessageGameOver(Graphics2D g, Player winner) {
 		assert game != null;
 
 		g.setColor(Color.DARK_GRAY);
 		g.fillRect(0, 200, getWidth(), 52);
 		g.setColor(Color.YELLOW);
-		g.setFont(new Font(getFont().getFontName(), Font.BOLD, 42));
 
-		if (game.winner() == game.aiPlayer()) {
-			g.drawString(MSG_WIN_AI, 20, getHeight() / 2);
-		} else if (game.winner() == game.humanPlayer()) {
-			g.drawString(MSG_WIN_HUMAN, 70, getHeight() / 2);
+		if (winner == Player.NONE) {
+			drawMessage(g, MSG_DRAW);
+		} else if (game.humanPlayer() == Player.NONE) {
+			drawMessage(g, winner == Player.X ? MSG_WIN_X : MSG_WIN_O);
+		} else if (winner == game.humanPlayer()) {
+			drawMessage(g, MSG_WIN_HUMAN);
 		} else {
-			g.drawString(MSG_DRAW, 180, getHeight() / 2);
+			drawMessage(g, game.aiPlayer() != Player.NONE ? MSG_WIN_AI : MSG_WIN_OPPONENT);
 		}
 	}
 
+	private void drawMessage(Graphics2D g, String text) {
+		var glyphs = sprites.message(g, getFont(), text);
+		float x = (float) (getWidth() - glyphs.getLogicalBounds().getWidth()) / 2;
+		g.drawGlyphVector(glyphs, Math.max(0, x), getHeight() / 2);
+	}
+
 }
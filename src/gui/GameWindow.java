@@ -6,29 +6,126 @@ import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.swing.JButton;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
+import archive.GameLog;
+import archive.GameLogWriter;
+import domain.BitBoard;
+import domain.Board;
 import domain.Game;
 import domain.Player;
+import domain.SparseBoard;
+import domain.ai.AiStrategy;
+import domain.ai.EasyStrategy;
+import domain.ai.EvaluationCache;
+import domain.ai.MctsStrategy;
+import domain.ai.ParallelSearchStrategy;
+import domain.ai.PatternWeights;
+import domain.ai.SearchStrategy;
+import domain.ai.Tablebase;
+import domain.ai.TablebaseStrategy;
+import domain.ai.TranspositionTable;
+import domain.event.CellChangedEvent;
+import domain.event.CellChangedListener;
+import domain.event.GameOverEvent;
+import domain.event.GameOverListener;
+import metrics.Log;
+import metrics.Metrics;
+import net.GameClient;
+import net.Protocol;
 
 public class GameWindow extends JFrame {
 
+	static final int MODE_HUMAN_VS_AI = 0;
+	static final int MODE_HUMAN_VS_HUMAN = 1;
+	static final int MODE_NETWORK = 2;
+
+	static final int DIFFICULTY_EASY = 0;
+	static final int DIFFICULTY_HARD = 1;
+	static final int DIFFICULTY_MCTS = 2;
+
 	private static final String TITLE_STR = "Крестики-Нолики";
 	private static final String NEW_GAME_STR = "Новая игра";
 	private static final String EXIT_STR = "Выход";
+	private static final String UNDO_STR = "Отменить ход";
+	private static final String REDO_STR = "Вернуть ход";
+	private static final String REPLAY_STR = "Повтор партии";
+	private static final String PLAYOUTS_FSTR = " — ИИ: %,d партий/с";
+	private static final String REPLAY_TITLE_FSTR = " — повтор партии %d из %d";
+	private static final String CHOOSE_GAME_FSTR = "Номер партии (1–%d):";
+	private static final String NO_GAMES_STR = "Сохранённых партий нет.";
+	private static final String BAD_GAME_NUMBER_STR = "Нет партии с таким номером.";
+	private static final String LOG_FAILED_FSTR = "Не удалось прочитать журнал партий: %s";
+	private static final String WAITING_STR = " — ожидание соперника";
+	private static final String PLAYING_AS_FSTR = " — сетевая игра, вы играете за %s";
+	private static final String BAD_ADDRESS_FSTR = "Неверный адрес сервера: %s";
+	private static final String CONNECTION_FAILED_FSTR = "Не удалось подключиться к серверу: %s";
+	private static final String CONNECTION_LOST_FSTR = "Соединение с сервером потеряно: %s";
+	private static final String REJECTED_STR = "Сервер отклонил запрос.";
+	private static final String OPPONENT_LEFT_STR = "Соперник покинул игру.";
+	private static final String OUT_OF_SYNC_STR = "Партия разошлась с сервером и остановлена.";
+
+	/** Solved small boards, see {@link domain.ai.TablebaseGenerator}; used if the file exists. */
+	private static final String TABLEBASE_PATH = System.getProperty("ai.tablebase", "tablebase.bin");
+	/** Every finished game is appended here, see {@link GameLog}. */
+	private static final String GAME_LOG_PATH = System.getProperty("game.log", "games.log");
+
+	/**
+	 * Prints the time to the first paint and exits once the settings window
+	 * is up; for timing startup and for the class-data-sharing training run.
+	 */
+	private static final boolean MEASURE_STARTUP = Boolean.getBoolean("startup.measure");
+
+	/** Search run in the background after startup so the first real one is compiled already. */
+	private static final int WARM_UP_SIZE = 9;
+	private static final int WARM_UP_WIN_LENGTH = 5;
+	private static final long WARM_UP_MILLIS = 150;
 
 	private static final int WIDTH = 500;
 	private static final int HEIGHT = 500;
 
 	private final JButton buttonStart;
 	private final JButton buttonExit;
+	private final JButton buttonUndo;
+	private final JButton buttonRedo;
+	private final JButton buttonReplay;
 	private final GameFieldPanel panelGameField;
-	private final SettingsWindow frameSettings;
+	private SettingsWindow frameSettings;
+
+	private final ExecutorService aiExecutor = Executors.newSingleThreadExecutor(task -> {
+		var thread = new Thread(task, "ai-turn");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private ParallelSearchStrategy hardStrategy;
+	private MctsStrategy mctsStrategy;
+	/** Ponders for {@link #mctsStrategy}, keeping its tree and the title out of it. */
+	private MctsStrategy mctsPonderStrategy;
+	private Tablebase tablebase;
+	private boolean tablebaseLoaded;
+	private Game game;
+	private NetworkSession network;
+	private GameLogWriter gameLog;
+	private boolean gameLogFailed;
 
-	public GameWindow() {
+	/**
+	 * Must be called on the event dispatch thread. The settings window is
+	 * built and the AI warmed up only once this window has been painted.
+	 *
+	 * @param startNanos {@link System#nanoTime} on entering {@code main}
+	 */
+	public GameWindow(long startNanos) {
 
 		super.setDefaultCloseOperation(EXIT_ON_CLOSE);
 		super.setTitle(TITLE_STR);
@@ -38,20 +135,79 @@ public class GameWindow extends JFrame {
 		panelGameField = new GameFieldPanel();
 		buttonStart = new JButton(NEW_GAME_STR);
 		buttonExit = new JButton(EXIT_STR);
+		buttonUndo = new JButton(UNDO_STR);
+		buttonRedo = new JButton(REDO_STR);
+		buttonReplay = new JButton(REPLAY_STR);
+		updateHistoryButtons();
 
-		JPanel panelBottom = new JPanel(new GridLayout(1, 2));
-		panelBottom.add(buttonStart);
-		panelBottom.add(buttonExit);
+		JPanel panelHistory = new JPanel(new GridLayout(1, 3));
+		panelHistory.add(buttonUndo);
+		panelHistory.add(buttonRedo);
+		panelHistory.add(buttonReplay);
+		JPanel panelGame = new JPanel(new GridLayout(1, 2));
+		panelGame.add(buttonStart);
+		panelGame.add(buttonExit);
+		JPanel panelBottom = new JPanel(new GridLayout(2, 1));
+		panelBottom.add(panelHistory);
+		panelBottom.add(panelGame);
 
 		super.getContentPane().add(panelBottom, BorderLayout.SOUTH);
 		super.getContentPane().add(panelGameField);
 
-		frameSettings = new SettingsWindow(this);
-
 		assignListeners();
+		panelGameField.whenFirstPainted(() -> firstPainted(startNanos));
 
 		super.setVisible(true);
-		frameSettings.setVisible(true);
+	}
+
+	private void firstPainted(long startNanos) {
+		final long elapsed = System.nanoTime() - startNanos;
+		Metrics.STARTUP_TIME.record(elapsed);
+		if (Log.ENABLED) {
+			Log.event("firstPaint", "millis", elapsed / 1_000_000);
+		}
+		if (MEASURE_STARTUP) {
+			System.err.printf("Startup: %.1f ms to first paint%n", elapsed / 1e6);
+		}
+		SwingUtilities.invokeLater(() -> {
+			settingsWindow().setVisible(true);
+			if (MEASURE_STARTUP) {
+				SwingUtilities.invokeLater(() -> System.exit(0));
+			}
+		});
+		if (!MEASURE_STARTUP) {
+			aiExecutor.execute(this::warmUpAi);
+		}
+	}
+
+	private SettingsWindow settingsWindow() {
+		if (frameSettings == null) {
+			frameSettings = new SettingsWindow(this);
+		}
+		return frameSettings;
+	}
+
+	/**
+	 * Loads the tablebase and the tuned pattern weights, allocates the shared
+	 * evaluation cache and runs a short search, at low priority on the AI
+	 * thread, so that the first computer move neither waits for them nor runs
+	 * in the interpreter.
+	 */
+	private void warmUpAi() {
+		final var thread = Thread.currentThread();
+		final int priority = thread.getPriority();
+		thread.setPriority(Thread.MIN_PRIORITY);
+		try {
+			tablebase();
+			EvaluationCache.shared();
+			PatternWeights.shared();
+			var board = new BitBoard(WARM_UP_SIZE, WARM_UP_SIZE);
+			board.set(WARM_UP_SIZE / 2, WARM_UP_SIZE / 2, Player.X);
+			new SearchStrategy(WARM_UP_MILLIS, WARM_UP_SIZE * WARM_UP_SIZE, new TranspositionTable(1 << 12))
+					.chooseMove(board, Player.O, WARM_UP_WIN_LENGTH);
+		} finally {
+			thread.setPriority(priority);
+		}
 	}
 
 	private void assignListeners() {
@@ -70,12 +226,443 @@ public class GameWindow extends JFrame {
 
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				frameSettings.setVisible(true);
+				settingsWindow().setVisible(true);
+			}
+		});
+
+		buttonUndo.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (game != null) {
+					game.undoTurn();
+				}
+			}
+		});
+
+		buttonRedo.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (game != null) {
+					game.redoTurn();
+				}
+			}
+		});
+
+		buttonReplay.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				chooseReplay();
 			}
 		});
 	}
 
-	public void startNewGame(int mode, Player humanPlayer, int cols, int rows, int winLen) {
-		panelGameField.startNewGame(new Game(cols, rows, winLen, humanPlayer));
+	private void updateHistoryButtons() {
+		buttonUndo.setEnabled(game != null && game.canUndo());
+		buttonRedo.setEnabled(game != null && game.canRedo());
+	}
+
+	/**
+	 * Starts a local game: against the computer or, in
+	 * {@link #MODE_HUMAN_VS_HUMAN}, between two people at this computer.
+	 *
+	 * @param ponder let the computer think during the human's turn
+	 */
+	public void startNewGame(int mode, int difficulty, boolean ponder, Player humanPlayer, int cols, int rows,
+			boolean unbounded, int winLen) {
+		closeNetwork();
+		super.setTitle(TITLE_STR);
+		var previousHardStrategy = hardStrategy;
+		var previousMctsStrategy = mctsStrategy;
+		var previousMctsPonderStrategy = mctsPonderStrategy;
+		hardStrategy = null;
+		mctsStrategy = null;
+		mctsPonderStrategy = null;
+		Board field = unbounded ? new SparseBoard() : new BitBoard(cols, rows);
+		if (mode == MODE_HUMAN_VS_HUMAN) {
+			showGame(new Game(field, winLen, Player.NONE), false);
+		} else {
+			AiStrategy aiStrategy;
+			if (difficulty == DIFFICULTY_HARD) {
+				hardStrategy = new ParallelSearchStrategy(Runtime.getRuntime().availableProcessors());
+				aiStrategy = hardStrategy;
+				if (!unbounded && tablebase() != null && tablebase.covers(cols, rows, winLen)) {
+					aiStrategy = new TablebaseStrategy(tablebase, hardStrategy);
+				}
+			} else if (difficulty == DIFFICULTY_MCTS) {
+				mctsStrategy = newMctsStrategy();
+				aiStrategy = mctsStrategy;
+				if (ponder) {
+					mctsPonderStrategy = new MctsStrategy(mctsStrategy.threads());
+				}
+			} else {
+				aiStrategy = new EasyStrategy();
+			}
+			showGame(new Game(field, winLen, humanPlayer, aiStrategy, aiExecutor, SwingUtilities::invokeLater), false);
+			if (mctsPonderStrategy != null) {
+				game.setPondering(mctsPonderStrategy);
+			} else {
+				game.setPondering(ponder);
+			}
+		}
+		if (previousHardStrategy != null) {
+			previousHardStrategy.close();
+		}
+		if (previousMctsStrategy != null) {
+			previousMctsStrategy.close();
+		}
+		if (previousMctsPonderStrategy != null) {
+			previousMctsPonderStrategy.close();
+		}
+	}
+
+	/** Shows the playout rate of each computer move in the title. */
+	private MctsStrategy newMctsStrategy() {
+		var strategy = new MctsStrategy(Runtime.getRuntime().availableProcessors());
+		strategy.setListener((playouts, nanos) -> {
+			final long perSecond = nanos > 0 ? playouts * 1_000_000_000L / nanos : 0L;
+			SwingUtilities.invokeLater(() -> {
+				if (mctsStrategy == strategy) {
+					GameWindow.this.setTitle(TITLE_STR + String.format(PLAYOUTS_FSTR, perSecond));
+				}
+			});
+		});
+		return strategy;
+	}
+
+	/**
+	 * Connects to a {@link net.GameServer} at {@code host[:port]} and waits there
+	 * for an opponent with the same field settings.
+	 */
+	public void joinNetworkGame(String server, int cols, int rows, boolean unbounded, int winLen) {
+		InetSocketAddress address;
+		try {
+			address = parseAddress(server);
+		} catch (IllegalArgumentException e) {
+			showMessage(String.format(BAD_ADDRESS_FSTR, server));
+			return;
+		}
+		closeNetwork();
+		super.setTitle(TITLE_STR + WAITING_STR);
+		var session = new NetworkSession(unbounded ? 0 : cols, unbounded ? 0 : rows, winLen);
+		network = session;
+		var connecting = new Thread(() -> session.connect(address), "game-connect");
+		connecting.setDaemon(true);
+		connecting.start();
+	}
+
+	/**
+	 * Lets the user pick a game from the log and steps through it with the
+	 * undo and redo buttons.
+	 */
+	private void chooseReplay() {
+		GameLog log;
+		try {
+			if (gameLog != null) {
+				gameLog.flush();
+			}
+			log = GameLog.open(Path.of(GAME_LOG_PATH));
+		} catch (IOException | IllegalArgumentException e) {
+			showMessage(String.format(LOG_FAILED_FSTR, e.getMessage()));
+			return;
+		}
+		final int count = log.count();
+		if (count == 0) {
+			showMessage(NO_GAMES_STR);
+			return;
+		}
+		Object answer = JOptionPane.showInputDialog(this, String.format(CHOOSE_GAME_FSTR, count), REPLAY_STR,
+				JOptionPane.QUESTION_MESSAGE, null, null, count);
+		if (answer == null)
+			return;
+		int number;
+		try {
+			number = Integer.parseInt(answer.toString().trim());
+		} catch (NumberFormatException e) {
+			number = 0;
+		}
+		if (number < 1 || number > count) {
+			showMessage(BAD_GAME_NUMBER_STR);
+			return;
+		}
+
+		Game replay;
+		try {
+			var cursor = log.cursor();
+			cursor.skip(number - 1);
+			cursor.next();
+			final int moves = cursor.moveCount();
+			int[] cols = new int[moves];
+			int[] rows = new int[moves];
+			cursor.moves(cols, rows);
+			Board field = cursor.isBounded() ? new BitBoard(cursor.columns(), cursor.rows()) : new SparseBoard();
+			replay = Game.replay(field, cursor.winLength(), cols, rows, moves);
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			showMessage(String.format(LOG_FAILED_FSTR, e.getMessage()));
+			return;
+		}
+		closeNetwork();
+		showGame(replay, true);
+		if (hardStrategy != null) {
+			hardStrategy.close();
+			hardStrategy = null;
+		}
+		if (mctsStrategy != null) {
+			mctsStrategy.close();
+			mctsStrategy = null;
+		}
+		if (mctsPonderStrategy != null) {
+			mctsPonderStrategy.close();
+			mctsPonderStrategy = null;
+		}
+		super.setTitle(TITLE_STR + String.format(REPLAY_TITLE_FSTR, number, count));
+	}
+
+	/** @param replay the game is a recorded one, to be watched rather than played and logged */
+	private void showGame(Game newGame, boolean replay) {
+		game = newGame;
+		game.addCellChangedListener(new CellChangedListener() {
+
+			@Override
+			public void cellChanged(CellChangedEvent e) {
+				updateHistoryButtons();
+			}
+		});
+		if (replay) {
+			panelGameField.startReplay(game);
+		} else {
+			game.addGameOverListener(new GameOverListener() {
+
+				/** Undo and redo end the same game again; it goes to the log only the first time. */
+				private boolean recorded;
+
+				@Override
+				public void gameOver(GameOverEvent e) {
+					if (!recorded) {
+						recorded = true;
+						record(newGame);
+					}
+				}
+			});
+			panelGameField.startNewGame(game);
+		}
+		updateHistoryButtons();
+	}
+
+	/** Appends a finished game to the log; logging stops after the first failure. */
+	private void record(Game finished) {
+		if (gameLogFailed || finished.moveCount() == 0)
+			return;
+		try {
+			if (gameLog == null) {
+				gameLog = GameLogWriter.open(Path.of(GAME_LOG_PATH));
+			}
+			gameLog.append(finished);
+			gameLog.flush();
+		} catch (IOException | IllegalArgumentException e) {
+			gameLogFailed = true;
+			if (Log.ENABLED) {
+				Log.event("gameLogFailed", "path", GAME_LOG_PATH, "error", e);
+			}
+		}
+	}
+
+	private void closeNetwork() {
+		if (network != null) {
+			network.close();
+			network = null;
+		}
+	}
+
+	private void showMessage(String text) {
+		JOptionPane.showMessageDialog(this, text);
+	}
+
+	private static InetSocketAddress parseAddress(String server) {
+		String host = server.trim();
+		int port = Protocol.DEFAULT_PORT;
+		int colon = host.lastIndexOf(':');
+		if (colon >= 0) {
+			port = Integer.parseInt(host.substring(colon + 1));
+			host = host.substring(0, colon);
+		}
+		if (host.isEmpty()) {
+			throw new IllegalArgumentException("host");
+		}
+		return new InetSocketAddress(host, port);
+	}
+
+	/**
+	 * Connection to a game server for one network game. Server messages are
+	 * handled on the event dispatch thread and ignored once another game has
+	 * been started. A local move is shown at once and taken back if the
+	 * server rejects it; a move the two sides disagree on ends the game.
+	 */
+	private final class NetworkSession implements GameClient.Listener {
+
+		private final int cols;
+		private final int rows;
+		private final int winLength;
+		private volatile GameClient client;
+		private volatile boolean closed;
+		/** Local moves sent but not yet echoed by the server; on the event thread only. */
+		private int unconfirmed;
+
+		NetworkSession(int cols, int rows, int winLength) {
+			this.cols = cols;
+			this.rows = rows;
+			this.winLength = winLength;
+		}
+
+		void connect(InetSocketAddress address) {
+			try {
+				client = GameClient.connect(address, this);
+				if (closed) {
+					client.close();
+					return;
+				}
+				client.join(cols, rows, winLength);
+			} catch (IOException e) {
+				onEventThread(() -> {
+					GameWindow.this.setTitle(TITLE_STR);
+					showMessage(String.format(CONNECTION_FAILED_FSTR, e.getMessage()));
+				});
+			}
+		}
+
+		void close() {
+			closed = true;
+			var connected = client;
+			if (connected != null) {
+				try {
+					connected.close();
+				} catch (IOException e) {
+					// closing anyway
+				}
+			}
+		}
+
+		@Override
+		public void started(Player player) {
+			onEventThread(() -> {
+				Board field = cols == 0 ? new SparseBoard() : new BitBoard(cols, rows);
+				var networkGame = new Game(field, winLength, player);
+				networkGame.addCellChangedListener(new CellChangedListener() {
+
+					@Override
+					public void cellChanged(CellChangedEvent e) {
+						if (e.getState() == player) {
+							send(e.getColIndex(), e.getRowIndex());
+						}
+					}
+				});
+				showGame(networkGame, false);
+				GameWindow.this.setTitle(TITLE_STR + String.format(PLAYING_AS_FSTR, player));
+			});
+		}
+
+		@Override
+		public void moved(Player player, int col, int row) {
+			onEventThread(() -> {
+				if (player == game.humanPlayer()) {
+					if (unconfirmed == 0 || game.snapshot().cellState(col, row) != player) {
+						lostSync();
+						return;
+					}
+					--unconfirmed;
+					return;
+				}
+				boolean made;
+				try {
+					made = game.makeMove(col, row);
+				} catch (IndexOutOfBoundsException e) {
+					made = false;
+				}
+				if (!made) {
+					lostSync();
+				}
+			});
+		}
+
+		@Override
+		public void gameOver(Player winner) {
+			// the local game sees the same moves and ends by itself
+		}
+
+		@Override
+		public void rejected() {
+			onEventThread(() -> {
+				// the server rejects a move only while it is the last one made
+				if (unconfirmed > 0) {
+					--unconfirmed;
+					if (!game.retractMove()) {
+						lostSync();
+						return;
+					}
+				}
+				showMessage(REJECTED_STR);
+			});
+		}
+
+		@Override
+		public void opponentLeft() {
+			onEventThread(() -> {
+				game.cancel();
+				showMessage(OPPONENT_LEFT_STR);
+			});
+		}
+
+		@Override
+		public void disconnected(IOException cause) {
+			onEventThread(() -> {
+				if (game != null) {
+					game.cancel();
+				}
+				showMessage(String.format(CONNECTION_LOST_FSTR, cause.getMessage()));
+			});
+		}
+
+		private void lostSync() {
+			game.cancel();
+			closeNetwork();
+			showMessage(OUT_OF_SYNC_STR);
+		}
+
+		private void send(int col, int row) {
+			++unconfirmed;
+			try {
+				client.move(col, row);
+			} catch (IOException e) {
+				disconnected(e);
+			}
+		}
+
+		private void onEventThread(Runnable action) {
+			SwingUtilities.invokeLater(() -> {
+				if (network == this && !closed) {
+					action.run();
+				}
+			});
+		}
+	}
+
+	/** Called from the AI thread by the warm-up and from the event dispatch thread. */
+	private synchronized Tablebase tablebase() {
+		if (!tablebaseLoaded) {
+			tablebaseLoaded = true;
+			Path path = Path.of(TABLEBASE_PATH);
+			if (Files.isRegularFile(path)) {
+				try {
+					tablebase = Tablebase.load(path);
+				} catch (IOException | IllegalArgumentException e) {
+					if (Log.ENABLED) {
+						Log.event("tablebaseFailed", "path", path, "error", e);
+					}
+				}
+			}
+		}
+		return tablebase;
 	}
 }
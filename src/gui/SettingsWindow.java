@@ -2,7 +2,6 @@ package gui;
 
 import java.awt.Dimension;
 import java.awt.GridLayout;
-import java.awt.HeadlessException;
 import java.awt.event.ActionEvent;
 
 import javax.swing.BorderFactory;
@@ -10,34 +9,46 @@ import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
-import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
 import javax.swing.JSlider;
+import javax.swing.JTextField;
 import javax.swing.event.ChangeEvent;
 
 import domain.Player;
+import net.Protocol;
 
 class SettingsWindow extends JFrame {
 
 	private static final int FIELD_DIM_DEFAULT = 3;
-	private static final int FIELD_DIM_MAX = 10;
-	private static final int MODE_DEFAULT = 0;
+	private static final int FIELD_DIM_MAX = 100;
+	private static final int WIN_LENGTH_MAX = 10;
+	private static final int MODE_DEFAULT = GameWindow.MODE_HUMAN_VS_AI;
+	private static final String SERVER_DEFAULT = "localhost:" + Protocol.DEFAULT_PORT;
+	private static final int DIFFICULTY_DEFAULT = GameWindow.DIFFICULTY_EASY;
 	private static final Player HUMAN_PLAYER_DEFAULT = Player.X;
+	private static final boolean PONDER_DEFAULT = true;
 
 	private static final String TITLE_STR = "Новая игра";
 	private static final String MODE_STR = "Выберите режим игры:";
+	private static final String DIFFICULTY_STR = "Выберите сложность компьютера:";
+	private static final String EASY_STR = "Лёгкая";
+	private static final String HARD_STR = "Сложная";
+	private static final String MCTS_STR = "Сложная (Монте-Карло)";
+	private static final String PONDER_STR = "Думать во время хода игрока";
 	private static final String HUMAN_PLAYER_STR = "Выберите кем играть ('крестики' ходят первыми):";
 	private static final String X_STR = "X";
 	private static final String O_STR = "O";
 	private static final String DIM_FSTR = "Выберите размеры поля (%d):";
+	private static final String UNBOUNDED_STR = "Бесконечное поле";
 	private static final String WINLEN_FSTR = "Выберите длину для победы (%d):";
 	private static final String HUMAN_VS_AI_STR = "Человек против компьютера";
 	private static final String HUMAN_VS_HUMAN_STR = "Человек против человека";
+	private static final String NETWORK_STR = "Игра по сети, сервер:";
 	private static final String START_STR = "Начать игру";
-	private static final String UNSUPPORTED_STR = "Данный режим игры не поддерживается в текущей версии.";
 
 	private static final int WIDTH = 350;
 	private static final int HEIGHT = 230;
@@ -45,22 +56,34 @@ class SettingsWindow extends JFrame {
 	private static final Dimension PADDING_DIM = new Dimension(PADDING, PADDING);
 
 	private int mode = MODE_DEFAULT;
+	private String server = SERVER_DEFAULT;
+	private int difficulty = DIFFICULTY_DEFAULT;
+	private boolean ponder = PONDER_DEFAULT;
 	private Player humanPlayer = HUMAN_PLAYER_DEFAULT;
 	private int fieldDimension = FIELD_DIM_DEFAULT;
+	private boolean unbounded = false;
 	private int winLength = FIELD_DIM_DEFAULT;
 
 	// controls
 
 	private final JLabel labelMode = new JLabel(MODE_STR);
+	private final JLabel labelDifficulty = new JLabel(DIFFICULTY_STR);
 	private final JLabel labelHumanPlayer = new JLabel(HUMAN_PLAYER_STR);
 	private final JLabel labelDim = new JLabel();
 	private final JLabel labelWinLen = new JLabel();
 
 	private final JRadioButton radioHumanVsAi = new JRadioButton(HUMAN_VS_AI_STR);
 	private final JRadioButton radioHumanVsHuman = new JRadioButton(HUMAN_VS_HUMAN_STR);
+	private final JRadioButton radioNetwork = new JRadioButton(NETWORK_STR);
+	private final JTextField fieldServer = new JTextField();
+	private final JRadioButton radioEasy = new JRadioButton(EASY_STR);
+	private final JRadioButton radioHard = new JRadioButton(HARD_STR);
+	private final JRadioButton radioMcts = new JRadioButton(MCTS_STR);
+	private final JCheckBox checkPonder = new JCheckBox(PONDER_STR);
 	private final JRadioButton radioX = new JRadioButton(X_STR);
 	private final JRadioButton radioO = new JRadioButton(O_STR);
 	private final JSlider sliderDim = new JSlider(FIELD_DIM_DEFAULT, FIELD_DIM_MAX);
+	private final JCheckBox checkUnbounded = new JCheckBox(UNBOUNDED_STR);
 	private final JSlider sliderWinLen = new JSlider(FIELD_DIM_DEFAULT, FIELD_DIM_DEFAULT);
 	private final JButton buttonStart = new JButton(START_STR);
 
@@ -80,17 +103,33 @@ class SettingsWindow extends JFrame {
 		frameContainer.setBorder(BorderFactory.createEmptyBorder(PADDING, PADDING, PADDING, PADDING));
 		super.setContentPane(frameContainer);
 
-		JPanel panelMode = new JPanel(new GridLayout(3, 1));
+		JPanel panelMode = new JPanel(new GridLayout(4, 1));
+		JPanel panelNetwork = new JPanel(new GridLayout(1, 2));
+		JPanel panelDifficulty = new JPanel(new GridLayout(5, 1));
 		JPanel panelHumanPlayer = new JPanel(new GridLayout(3, 1));
-		JPanel panelDim = new JPanel(new GridLayout(2, 1));
+		JPanel panelDim = new JPanel(new GridLayout(3, 1));
 		JPanel panelWinLen = new JPanel(new GridLayout(2, 1));
 
 		ButtonGroup buttonGroupMode = new ButtonGroup();
 		buttonGroupMode.add(radioHumanVsAi);
 		buttonGroupMode.add(radioHumanVsHuman);
+		buttonGroupMode.add(radioNetwork);
+		panelNetwork.add(radioNetwork);
+		panelNetwork.add(fieldServer);
 		panelMode.add(labelMode);
 		panelMode.add(radioHumanVsAi);
 		panelMode.add(radioHumanVsHuman);
+		panelMode.add(panelNetwork);
+
+		ButtonGroup buttonGroupDifficulty = new ButtonGroup();
+		buttonGroupDifficulty.add(radioEasy);
+		buttonGroupDifficulty.add(radioHard);
+		buttonGroupDifficulty.add(radioMcts);
+		panelDifficulty.add(labelDifficulty);
+		panelDifficulty.add(radioEasy);
+		panelDifficulty.add(radioHard);
+		panelDifficulty.add(radioMcts);
+		panelDifficulty.add(checkPonder);
 
 		ButtonGroup buttonGroupHumanPlayer = new ButtonGroup();
 		buttonGroupHumanPlayer.add(radioX);
@@ -103,6 +142,7 @@ class SettingsWindow extends JFrame {
 		sliderDim.setSnapToTicks(true);
 		panelDim.add(labelDim);
 		panelDim.add(sliderDim);
+		panelDim.add(checkUnbounded);
 
 		sliderWinLen.setPaintTicks(true);
 		sliderWinLen.setSnapToTicks(true);
@@ -113,6 +153,8 @@ class SettingsWindow extends JFrame {
 
 		frameContainer.add(panelMode);
 		frameContainer.add(Box.createRigidArea(PADDING_DIM));
+		frameContainer.add(panelDifficulty);
+		frameContainer.add(Box.createRigidArea(PADDING_DIM));
 		frameContainer.add(panelHumanPlayer);
 		frameContainer.add(Box.createRigidArea(PADDING_DIM));
 		frameContainer.add(panelDim);
@@ -125,24 +167,46 @@ class SettingsWindow extends JFrame {
 		buttonStart.addActionListener(this::handleButtonStartPressed);
 
 		radioHumanVsAi.addChangeListener(this::handleAControlStateChanged);
+		radioHumanVsHuman.addChangeListener(this::handleAControlStateChanged);
+		radioNetwork.addChangeListener(this::handleAControlStateChanged);
+		radioEasy.addChangeListener(this::handleAControlStateChanged);
+		radioHard.addChangeListener(this::handleAControlStateChanged);
+		checkPonder.addChangeListener(this::handleAControlStateChanged);
 		radioX.addChangeListener(this::handleAControlStateChanged);
 		sliderDim.addChangeListener(this::handleAControlStateChanged);
+		checkUnbounded.addChangeListener(this::handleAControlStateChanged);
 		sliderWinLen.addChangeListener(this::handleAControlStateChanged);
 	}
 
 	private void initControls() {
-		radioHumanVsAi.setSelected(mode == 0);
+		radioHumanVsAi.setSelected(mode == GameWindow.MODE_HUMAN_VS_AI);
+		radioHumanVsHuman.setSelected(mode == GameWindow.MODE_HUMAN_VS_HUMAN);
+		radioNetwork.setSelected(mode == GameWindow.MODE_NETWORK);
+		fieldServer.setText(server);
+		radioEasy.setSelected(difficulty == GameWindow.DIFFICULTY_EASY);
+		radioHard.setSelected(difficulty == GameWindow.DIFFICULTY_HARD);
+		radioMcts.setSelected(difficulty == GameWindow.DIFFICULTY_MCTS);
+		checkPonder.setSelected(ponder);
 		radioX.setSelected(humanPlayer == Player.X);
 		sliderDim.setValue(fieldDimension);
+		checkUnbounded.setSelected(unbounded);
 		sliderWinLen.setValue(winLength);
 		actualizeLabels();
 		actualizeSliders();
+		actualizeModeControls();
 	}
 
 	private void actualizeValues() {
-		mode = radioHumanVsAi.isSelected() ? 0 : 1;
+		mode = radioHumanVsAi.isSelected() ? GameWindow.MODE_HUMAN_VS_AI
+				: radioHumanVsHuman.isSelected() ? GameWindow.MODE_HUMAN_VS_HUMAN
+				: GameWindow.MODE_NETWORK;
+		difficulty = radioEasy.isSelected() ? GameWindow.DIFFICULTY_EASY
+				: radioHard.isSelected() ? GameWindow.DIFFICULTY_HARD
+				: GameWindow.DIFFICULTY_MCTS;
+		ponder = checkPonder.isSelected();
 		humanPlayer = radioX.isSelected() ? Player.X : Player.O;
 		fieldDimension = sliderDim.getValue();
+		unbounded = checkUnbounded.isSelected();
 		winLength = sliderWinLen.getValue();
 	}
 
@@ -152,26 +216,35 @@ class SettingsWindow extends JFrame {
 		repaint();
 	}
 
+	private void actualizeModeControls() {
+		radioEasy.setEnabled(mode == GameWindow.MODE_HUMAN_VS_AI);
+		radioHard.setEnabled(mode == GameWindow.MODE_HUMAN_VS_AI);
+		radioMcts.setEnabled(mode == GameWindow.MODE_HUMAN_VS_AI);
+		checkPonder.setEnabled(mode == GameWindow.MODE_HUMAN_VS_AI);
+		radioX.setEnabled(mode == GameWindow.MODE_HUMAN_VS_AI);
+		radioO.setEnabled(mode == GameWindow.MODE_HUMAN_VS_AI);
+		fieldServer.setEnabled(mode == GameWindow.MODE_NETWORK);
+	}
+
 	private void actualizeSliders() {
-		var dimValue = sliderDim.getValue();
-		if (sliderWinLen.getValue() > dimValue) {
-			sliderWinLen.setValue(dimValue);
+		sliderDim.setEnabled(!checkUnbounded.isSelected());
+		var winLenMax = checkUnbounded.isSelected() ? WIN_LENGTH_MAX : Math.min(WIN_LENGTH_MAX, sliderDim.getValue());
+		if (sliderWinLen.getValue() > winLenMax) {
+			sliderWinLen.setValue(winLenMax);
 		}
-		sliderWinLen.setMaximum(dimValue);
+		sliderWinLen.setMaximum(winLenMax);
 		sliderWinLen.setEnabled(sliderWinLen.getMinimum() != sliderWinLen.getMaximum());
 	}
 
 	private void handleButtonStartPressed(ActionEvent e) {
-		if (mode != 0) {
-			try {
-				JOptionPane.showMessageDialog(SettingsWindow.this, UNSUPPORTED_STR);
-			} catch (HeadlessException ex) {
-				ex.printStackTrace();
-			}
+		setVisible(false);
+		if (mode == GameWindow.MODE_NETWORK) {
+			server = fieldServer.getText();
+			gameWindow.joinNetworkGame(server, fieldDimension, fieldDimension, unbounded, winLength);
 			return;
 		}
-		setVisible(false);
-		gameWindow.startNewGame(mode, humanPlayer, fieldDimension, fieldDimension, winLength);
+		gameWindow.startNewGame(mode, difficulty, ponder, humanPlayer, fieldDimension, fieldDimension, unbounded,
+				winLength);
 		// gameWindow.requestFocus();
 	}
 
@@ -182,6 +255,10 @@ class SettingsWindow extends JFrame {
 			if (slider == sliderDim) {
 				actualizeSliders();
 			}
+		} else if (e.getSource() == checkUnbounded) {
+			actualizeSliders();
+		} else {
+			actualizeModeControls();
 		}
 	}
 }
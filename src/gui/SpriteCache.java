@@ -0,0 +1,88 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.util.EnumMap;
+import java.util.HashMap;
+
+import domain.Player;
+
+/**
+ * Pre-rendered marks and laid-out game-over messages for
+ * {@link GameFieldPanel}.
+ * <p>
+ * Marks are rasterized once per player and cell size; the panel evicts
+ * everything on resize and on a new game. Used on the EDT only.
+ */
+class SpriteCache {
+
+	private final EnumMap<Player, BufferedImage> marks = new EnumMap<>(Player.class);
+	private final HashMap<String, GlyphVector> messages = new HashMap<>();
+
+	private int markWidth;
+	private int markHeight;
+
+	private Font messageFont;
+	private FontRenderContext messageContext;
+
+	BufferedImage mark(GraphicsConfiguration config, Player player, Color color, int width, int height) {
+		if (width != markWidth || height != markHeight) {
+			marks.clear();
+			markWidth = width;
+			markHeight = height;
+		}
+		var image = marks.get(player);
+		if (image == null) {
+			image = renderMark(config, color, width, height);
+			marks.put(player, image);
+		}
+		return image;
+	}
+
+	private static BufferedImage renderMark(GraphicsConfiguration config, Color color, int width, int height) {
+		BufferedImage image = config != null
+				? config.createCompatibleImage(width, height, Transparency.TRANSLUCENT)
+				: new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setColor(color);
+			g.fillOval(0, 0, width, height);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	Font messageFont(Font base) {
+		if (messageFont == null) {
+			messageFont = new Font(base.getFontName(), Font.BOLD, 42);
+		}
+		return messageFont;
+	}
+
+	GlyphVector message(Graphics2D g, Font base, String text) {
+		var context = g.getFontRenderContext();
+		if (!context.equals(messageContext)) {
+			messages.clear();
+			messageContext = context;
+		}
+		return messages.computeIfAbsent(text, key -> messageFont(base).createGlyphVector(context, key));
+	}
+
+	void evict() {
+		marks.clear();
+		messages.clear();
+		markWidth = 0;
+		markHeight = 0;
+		messageFont = null;
+		messageContext = null;
+	}
+}
@@ -0,0 +1,34 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Monotonic count, cheap to update from many threads. */
+public final class Counter {
+
+	private final String name;
+	private final LongAdder value = new LongAdder();
+
+	Counter(String name) {
+		this.name = name;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public void increment() {
+		if (Metrics.ENABLED) {
+			value.increment();
+		}
+	}
+
+	public void add(long amount) {
+		if (Metrics.ENABLED) {
+			value.add(amount);
+		}
+	}
+
+	public long sum() {
+		return value.sum();
+	}
+}
@@ -0,0 +1,94 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non-negative values in power-of-two buckets. Recording is
+ * lock-free and allocation-free; percentiles are reported as the upper bound
+ * of their bucket.
+ */
+public final class Histogram {
+
+	/** How recorded values are shown. */
+	public enum Unit {
+		NANOS, COUNT
+	}
+
+	private static final int BUCKETS = 64;
+
+	private final String name;
+	private final Unit unit;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+	Histogram(String name, Unit unit) {
+		this.name = name;
+		this.unit = unit;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public Unit unit() {
+		return unit;
+	}
+
+	public void record(long value) {
+		if (!Metrics.ENABLED)
+			return;
+		final long clamped = Math.max(0L, value);
+		buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(clamped));
+		count.increment();
+		sum.add(clamped);
+		max.accumulate(clamped);
+	}
+
+	/** Records the time elapsed since {@code startNanos}, taken from {@link System#nanoTime}. */
+	public void recordSince(long startNanos) {
+		if (Metrics.ENABLED) {
+			record(System.nanoTime() - startNanos);
+		}
+	}
+
+	public Snapshot snapshot() {
+		final long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		return new Snapshot(name, unit, total, sum.sum(), max.get(),
+				percentile(counts, total, 0.5), percentile(counts, total, 0.99));
+	}
+
+	private static long percentile(long[] counts, long total, double fraction) {
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += counts[i];
+			if (seen > 0 && seen >= fraction * total)
+				return (1L << i) - 1;
+		}
+		return 0;
+	}
+
+	public record Snapshot(String name, Unit unit, long count, long sum, long max, long p50, long p99) {
+
+		public double mean() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		@Override
+		public String toString() {
+			if (unit == Unit.NANOS) {
+				return String.format("%s count=%d mean=%.3fms p50<=%.3fms p99<=%.3fms max=%.3fms", name, count,
+						mean() / 1e6, p50 / 1e6, p99 / 1e6, max / 1e6);
+			}
+			return String.format("%s count=%d mean=%.1f p50<=%d p99<=%d max=%d", name, count, mean(), p50, p99, max);
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package metrics;
+
+/**
+ * Structured diagnostic log: one {@code event key=value ...} line per call,
+ * written to standard error.
+ * <p>
+ * Off unless started with {@code -Dlog.enabled=true}. {@link #ENABLED} is a
+ * constant, so a call guarded by {@code if (Log.ENABLED)} costs nothing when
+ * logging is off, not even building its arguments.
+ */
+public final class Log {
+
+	public static final boolean ENABLED = Boolean.getBoolean("log.enabled");
+
+	private Log() {
+	}
+
+	/** @param keyValues alternating keys and values */
+	public static void event(String event, Object... keyValues) {
+		if (!ENABLED)
+			return;
+		var line = new StringBuilder(64);
+		line.append(System.currentTimeMillis()).append(' ').append(event);
+		for (int i = 0; i + 1 < keyValues.length; i += 2) {
+			line.append(' ').append(keyValues[i]).append('=').append(keyValues[i + 1]);
+		}
+		System.err.println(line);
+	}
+}
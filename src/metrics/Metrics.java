@@ -0,0 +1,202 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Process-wide counters and histograms of the game, the AI and the UI.
+ * <p>
+ * Updating a metric is lock-free and allocation-free. Everything can be
+ * compiled out with {@code -Dmetrics.enabled=false}. The values are
+ * published over JMX as {@value #OBJECT_NAME} and can be written out
+ * periodically with {@link #startReporter}.
+ */
+public final class Metrics {
+
+	public static final boolean ENABLED = !"false".equals(System.getProperty("metrics.enabled"));
+
+	public static final String OBJECT_NAME = "tictactoe:type=Metrics";
+
+	private static final List<Counter> COUNTERS = new ArrayList<>();
+	private static final List<Histogram> HISTOGRAMS = new ArrayList<>();
+
+	public static final Counter MOVES = counter("moves");
+	public static final Counter GAMES = counter("games");
+	public static final Counter AI_MOVES = counter("aiMoves");
+	/** Human moves the AI predicted while pondering, and answered at once. */
+	public static final Counter PONDER_HITS = counter("ponderHits");
+	public static final Counter PONDER_MISSES = counter("ponderMisses");
+
+	/** Wall time of one AI move, from the start of the search to its result. */
+	public static final Histogram AI_THINK_TIME = histogram("aiThinkTime", Histogram.Unit.NANOS);
+	/** From a human move to the AI reply on the board, pondering included. */
+	public static final Histogram AI_REPLY_LATENCY = histogram("aiReplyLatency", Histogram.Unit.NANOS);
+	public static final Histogram AI_NODES = histogram("aiNodes", Histogram.Unit.COUNT);
+	public static final Histogram MOVES_PER_GAME = histogram("movesPerGame", Histogram.Unit.COUNT);
+	public static final Histogram PAINT_TIME = histogram("paintTime", Histogram.Unit.NANOS);
+	/** From entering {@code main} to the first paint of the game window. */
+	public static final Histogram STARTUP_TIME = histogram("startupTime", Histogram.Unit.NANOS);
+	/** Time to deliver one game event to all of its listeners. */
+	public static final Histogram DISPATCH_TIME = histogram("dispatchTime", Histogram.Unit.NANOS);
+
+	private static boolean registered;
+
+	private Metrics() {
+	}
+
+	private static Counter counter(String name) {
+		var counter = new Counter(name);
+		COUNTERS.add(counter);
+		return counter;
+	}
+
+	private static Histogram histogram(String name, Histogram.Unit unit) {
+		var histogram = new Histogram(name, unit);
+		HISTOGRAMS.add(histogram);
+		return histogram;
+	}
+
+	/** One line per metric. */
+	public static String snapshot() {
+		var text = new StringBuilder();
+		for (var counter : COUNTERS) {
+			text.append(counter.name()).append('=').append(counter.sum()).append('\n');
+		}
+		for (var histogram : HISTOGRAMS) {
+			text.append(histogram.snapshot()).append('\n');
+		}
+		return text.toString();
+	}
+
+	/** Publishes the metrics on the platform MBean server; later calls do nothing. */
+	public static synchronized void registerMBean() {
+		if (registered)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName(OBJECT_NAME));
+			registered = true;
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+		}
+	}
+
+	/**
+	 * Hands a {@link #snapshot} to the sink every {@code periodSeconds} from a
+	 * daemon thread.
+	 *
+	 * @return the scheduler, to be shut down when the reports are no longer
+	 *         needed
+	 */
+	public static ScheduledExecutorService startReporter(long periodSeconds, Consumer<String> sink) {
+		var scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+			var thread = new Thread(task, "metrics-report");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleAtFixedRate(() -> sink.accept(snapshot()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+		return scheduler;
+	}
+
+	/**
+	 * Read-only attributes: each counter by name, and for each histogram
+	 * {@code name.count}, {@code .mean}, {@code .p50}, {@code .p99} and
+	 * {@code .max} in the recorded unit.
+	 */
+	private static final class MetricsMBean implements DynamicMBean {
+
+		private static final String[] HISTOGRAM_FIELDS = { "count", "mean", "p50", "p99", "max" };
+
+		@Override
+		public Object getAttribute(String attribute) throws AttributeNotFoundException {
+			for (var counter : COUNTERS) {
+				if (counter.name().equals(attribute))
+					return counter.sum();
+			}
+			final int dot = attribute.lastIndexOf('.');
+			if (dot > 0) {
+				final String name = attribute.substring(0, dot);
+				for (var histogram : HISTOGRAMS) {
+					if (histogram.name().equals(name)) {
+						var snapshot = histogram.snapshot();
+						switch (attribute.substring(dot + 1)) {
+							case "count":
+								return snapshot.count();
+							case "mean":
+								return (long) snapshot.mean();
+							case "p50":
+								return snapshot.p50();
+							case "p99":
+								return snapshot.p99();
+							case "max":
+								return snapshot.max();
+							default:
+								break;
+						}
+					}
+				}
+			}
+			throw new AttributeNotFoundException(attribute);
+		}
+
+		@Override
+		public AttributeList getAttributes(String[] attributes) {
+			var list = new AttributeList();
+			for (String attribute : attributes) {
+				try {
+					list.add(new Attribute(attribute, getAttribute(attribute)));
+				} catch (AttributeNotFoundException e) {
+					// skipped, as the contract allows
+				}
+			}
+			return list;
+		}
+
+		@Override
+		public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+			throw new AttributeNotFoundException("Metrics are read-only");
+		}
+
+		@Override
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		@Override
+		public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+			throw new ReflectionException(new NoSuchMethodException(actionName));
+		}
+
+		@Override
+		public MBeanInfo getMBeanInfo() {
+			List<MBeanAttributeInfo> attributes = new ArrayList<>();
+			for (var counter : COUNTERS) {
+				attributes.add(new MBeanAttributeInfo(counter.name(), "long", counter.name(), true, false, false));
+			}
+			for (var histogram : HISTOGRAMS) {
+				for (String field : HISTOGRAM_FIELDS) {
+					final String name = histogram.name() + "." + field;
+					final String description = field.equals("count") ? "values recorded"
+							: histogram.unit() == Histogram.Unit.NANOS ? "nanoseconds" : "value";
+					attributes.add(new MBeanAttributeInfo(name, "long", description, true, false, false));
+				}
+			}
+			return new MBeanInfo(Metrics.class.getName(), "Game, AI and UI metrics",
+					attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+		}
+	}
+}
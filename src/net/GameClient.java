@@ -0,0 +1,129 @@
+package net;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import domain.Player;
+
+/**
+ * Connection to a {@link GameServer}. Messages from the server are reported
+ * to the listener from a background reader thread.
+ */
+public class GameClient implements Closeable {
+
+	public interface Listener {
+
+		void started(Player player);
+
+		void moved(Player player, int col, int row);
+
+		void gameOver(Player winner);
+
+		void rejected();
+
+		void opponentLeft();
+
+		/** The connection is lost; not called after {@link GameClient#close}. */
+		void disconnected(IOException cause);
+	}
+
+	private final SocketChannel channel;
+	private final Listener listener;
+	private final ByteBuffer out = ByteBuffer.allocate(Protocol.MAX_LENGTH);
+	private volatile boolean closed;
+
+	private GameClient(SocketChannel channel, Listener listener) {
+		this.channel = channel;
+		this.listener = listener;
+	}
+
+	/** Connects, blocking until the connection is established. */
+	public static GameClient connect(InetSocketAddress address, Listener listener) throws IOException {
+		var channel = SocketChannel.open(address);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		var client = new GameClient(channel, listener);
+		var reader = new Thread(client::readLoop, "game-client");
+		reader.setDaemon(true);
+		reader.start();
+		return client;
+	}
+
+	/** Asks for a game; rows and columns of {@code 0} request an unbounded field. */
+	public synchronized void join(int cols, int rows, int winLength) throws IOException {
+		out.clear();
+		Protocol.putJoin(out, cols, rows, winLength);
+		send();
+	}
+
+	public synchronized void move(int col, int row) throws IOException {
+		out.clear();
+		Protocol.putMove(out, col, row);
+		send();
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		channel.close();
+	}
+
+	private void send() throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+	}
+
+	private void readLoop() {
+		final ByteBuffer in = ByteBuffer.allocate(256);
+		try {
+			while (true) {
+				if (channel.read(in) < 0) {
+					throw new EOFException("Server closed the connection");
+				}
+				in.flip();
+				while (in.hasRemaining()) {
+					final int length = Protocol.length(in.get(in.position()));
+					if (length < 0) {
+						throw new IOException("Unknown message type");
+					}
+					if (in.remaining() < length)
+						break;
+					dispatch(in);
+				}
+				in.compact();
+			}
+		} catch (IOException e) {
+			if (!closed) {
+				listener.disconnected(e);
+			}
+		}
+	}
+
+	private void dispatch(ByteBuffer in) throws IOException {
+		switch (in.get()) {
+			case Protocol.START:
+				listener.started(Protocol.player(in.get()));
+				break;
+			case Protocol.MOVED:
+				listener.moved(Protocol.player(in.get()), in.getInt(), in.getInt());
+				break;
+			case Protocol.GAME_OVER:
+				listener.gameOver(Protocol.player(in.get()));
+				break;
+			case Protocol.REJECTED:
+				listener.rejected();
+				break;
+			case Protocol.OPPONENT_LEFT:
+				listener.opponentLeft();
+				break;
+			default:
+				throw new IOException("Unexpected message from the server");
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import domain.BitBoard;
+import domain.Board;
+import domain.Game;
+import domain.Player;
+import domain.SparseBoard;
+import domain.event.CellChangedCallback;
+import domain.event.GameOverEvent;
+import domain.event.GameOverListener;
+
+/**
+ * Hosts games between remote players over {@link Protocol}.
+ * <p>
+ * One thread serves every connection through a non-blocking selector. A
+ * JOIN waits for another JOIN with the same field settings; the first of the
+ * two plays X. Each pair gets its own {@link Game}, which checks the moves and
+ * reports them back to both players through its events.
+ *
+ * <pre>
+ * java -cp build/classes/java/main net.GameServer --port 7777
+ * </pre>
+ */
+public class GameServer implements Runnable, Closeable {
+
+	private static final int MAX_FIELD_DIM = 1000;
+	private static final int MAX_WIN_LENGTH = 100;
+	/** Unsent output a connection may pile up before it is dropped as not reading. */
+	private static final int MAX_PENDING_OUTPUT = 64 * 1024;
+
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	private final Map<Long, Connection> waiting = new HashMap<>();
+	private final ArrayList<Connection> pendingWrites = new ArrayList<>();
+
+	private volatile int connections;
+	private volatile int games;
+
+	public GameServer(InetSocketAddress address) throws IOException {
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.bind(address, 1024);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/** Port the server listens on, useful when bound to port 0. */
+	public int port() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	public int connectionCount() {
+		return connections;
+	}
+
+	/** Number of games in progress. */
+	public int gameCount() {
+		return games;
+	}
+
+	/** Serves connections until {@link #close} is called. */
+	@Override
+	public void run() {
+		try {
+			while (selector.isOpen()) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid())
+						continue;
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					var connection = (Connection) key.attachment();
+					try {
+						if (key.isWritable()) {
+							connection.flush();
+						}
+						if (key.isReadable()) {
+							connection.read();
+						}
+					} catch (IOException e) {
+						disconnect(connection);
+					}
+				}
+				flushPending();
+			}
+		} catch (ClosedSelectorException e) {
+			// closed
+		} catch (IOException e) {
+			throw new IllegalStateException("Game server failed", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverChannel.close();
+		selector.close();
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			var connection = new Connection(channel);
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			++connections;
+		}
+	}
+
+	private void flushPending() {
+		for (int i = 0; i < pendingWrites.size(); ++i) {
+			var connection = pendingWrites.get(i);
+			connection.queued = false;
+			if (connection.overflowed) {
+				disconnect(connection);
+				continue;
+			}
+			try {
+				connection.flush();
+			} catch (IOException e) {
+				disconnect(connection);
+			}
+		}
+		pendingWrites.clear();
+	}
+
+	private void disconnect(Connection connection) {
+		if (!connection.channel.isOpen())
+			return;
+		--connections;
+		try {
+			connection.channel.close();
+		} catch (IOException e) {
+			// already gone
+		}
+		waiting.remove(connection.joinKey, connection);
+		var match = connection.match;
+		if (match != null) {
+			match.abandon(connection);
+		}
+	}
+
+	/** Handles the message at the buffer's position. */
+	private void handle(Connection connection, ByteBuffer message) {
+		switch (message.get()) {
+			case Protocol.JOIN:
+				join(connection, message.getShort() & 0xFFFF, message.getShort() & 0xFFFF, message.get() & 0xFF);
+				break;
+			case Protocol.MOVE:
+				move(connection, message.getInt(), message.getInt());
+				break;
+			default:
+				connection.reject();
+				break;
+		}
+	}
+
+	private void join(Connection connection, int cols, int rows, int winLength) {
+		final boolean unbounded = cols == 0 && rows == 0;
+		final boolean valid = unbounded
+				? winLength >= 1 && winLength <= MAX_WIN_LENGTH
+				: cols >= 1 && rows >= 1 && cols <= MAX_FIELD_DIM && rows <= MAX_FIELD_DIM
+						&& winLength >= 1 && winLength <= Math.min(MAX_WIN_LENGTH, Math.max(cols, rows));
+		if (!valid || connection.match != null || connection.joinKey != null) {
+			connection.reject();
+			return;
+		}
+		final Long key = (long) cols << 24 | (long) rows << 8 | winLength;
+		var opponent = waiting.remove(key);
+		if (opponent == null) {
+			connection.joinKey = key;
+			waiting.put(key, connection);
+			return;
+		}
+		opponent.joinKey = null;
+		Board field = unbounded ? new SparseBoard() : new BitBoard(cols, rows);
+		new Match(new Game(field, winLength, Player.NONE), opponent, connection);
+	}
+
+	private void move(Connection connection, int col, int row) {
+		var match = connection.match;
+		if (match == null || match.game.whoseTurn() != connection.player) {
+			connection.reject();
+			return;
+		}
+		try {
+			if (!match.game.makeMove(col, row)) {
+				connection.reject();
+			}
+		} catch (IndexOutOfBoundsException e) {
+			connection.reject();
+		}
+	}
+
+	/** A game and its two players; ends when the game is over or a player leaves. */
+	private final class Match implements CellChangedCallback, GameOverListener {
+
+		final Game game;
+		final Connection x;
+		final Connection o;
+
+		Match(Game game, Connection x, Connection o) {
+			this.game = game;
+			this.x = x;
+			this.o = o;
+			x.start(this, Player.X);
+			o.start(this, Player.O);
+			game.addCellChangedCallback(this);
+			game.addGameOverListener(this);
+			++games;
+		}
+
+		@Override
+		public void cellChanged(Game source, int col, int row, Player state) {
+			Protocol.putMoved(x.out(), state, col, row);
+			Protocol.putMoved(o.out(), state, col, row);
+		}
+
+		@Override
+		public void gameOver(GameOverEvent e) {
+			Protocol.putGameOver(x.out(), game.winner());
+			Protocol.putGameOver(o.out(), game.winner());
+			end();
+		}
+
+		void abandon(Connection leaving) {
+			var other = leaving == x ? o : x;
+			other.out().put(Protocol.OPPONENT_LEFT);
+			game.cancel();
+			end();
+		}
+
+		private void end() {
+			x.match = null;
+			o.match = null;
+			--games;
+		}
+	}
+
+	private final class Connection {
+
+		final SocketChannel channel;
+		final ByteBuffer in = ByteBuffer.allocate(256);
+		ByteBuffer out = ByteBuffer.allocate(256);
+		SelectionKey key;
+		boolean queued;
+		/** Output went past {@link #MAX_PENDING_OUTPUT}; closed after the current round of reads. */
+		boolean overflowed;
+
+		Long joinKey;
+		Match match;
+		Player player = Player.NONE;
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		void start(Match match, Player player) {
+			this.match = match;
+			this.player = player;
+			Protocol.putStart(out(), player);
+		}
+
+		void reject() {
+			out().put(Protocol.REJECTED);
+		}
+
+		/**
+		 * Buffer for outgoing messages, sent after the current round of reads.
+		 * Once full, its messages are dropped and the connection is closed.
+		 */
+		ByteBuffer out() {
+			if (out.remaining() < Protocol.MAX_LENGTH) {
+				if (out.capacity() * 2 > MAX_PENDING_OUTPUT) {
+					overflowed = true;
+					out.clear();
+				} else {
+					var larger = ByteBuffer.allocate(out.capacity() * 2);
+					out.flip();
+					larger.put(out);
+					out = larger;
+				}
+			}
+			if (!queued) {
+				queued = true;
+				pendingWrites.add(this);
+			}
+			return out;
+		}
+
+		void read() throws IOException {
+			if (channel.read(in) < 0) {
+				throw new IOException("closed by peer");
+			}
+			in.flip();
+			while (in.hasRemaining()) {
+				final int length = Protocol.length(in.get(in.position()));
+				if (length < 0) {
+					throw new IOException("unknown message type");
+				}
+				if (in.remaining() < length)
+					break;
+				final int end = in.position() + length;
+				handle(this, in);
+				in.position(end);
+			}
+			in.compact();
+		}
+
+		void flush() throws IOException {
+			if (!channel.isOpen())
+				return;
+			out.flip();
+			channel.write(out);
+			out.compact();
+			key.interestOps(out.position() > 0
+					? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+					: SelectionKey.OP_READ);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = Protocol.DEFAULT_PORT;
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].equals("--port")) {
+				port = Integer.parseInt(args[++i]);
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+		try (var server = new GameServer(new InetSocketAddress(port))) {
+			System.out.printf("Listening on port %d%n", server.port());
+			server.run();
+		}
+	}
+}
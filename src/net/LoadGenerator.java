@@ -0,0 +1,255 @@
+package net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import domain.BitBoard;
+import domain.Player;
+import sim.MatchRunner;
+
+/**
+ * Plays random games against a {@link GameServer} from many connections at
+ * once and reports throughput and move round-trip latency:
+ *
+ * <pre>
+ * java -cp build/classes/java/main net.LoadGenerator --connections 4000 --size 10 --win 5 --seconds 30
+ * </pre>
+ *
+ * Options: {@code --host}, {@code --port}, {@code --connections},
+ * {@code --size}, {@code --win}, {@code --seconds}, {@code --report-seconds}.
+ * Without {@code --host} a server is started in the same process on a free
+ * port.
+ */
+public class LoadGenerator {
+
+	private final InetSocketAddress address;
+	private final int connections;
+	private final int size;
+	private final int winLength;
+	private final Random random = new Random();
+
+	private long games;
+	private long moves;
+	private long rejected;
+	private long abandoned;
+	/** Move round trips by power-of-two microseconds. */
+	private final long[] latency = new long[40];
+
+	public LoadGenerator(InetSocketAddress address, int connections, int size, int winLength) {
+		this.address = address;
+		this.connections = connections;
+		this.size = size;
+		this.winLength = winLength;
+	}
+
+	/** Plays until the time is up, printing a report every {@code reportSeconds}. */
+	public void run(long seconds, long reportSeconds) throws IOException {
+		try (var selector = Selector.open()) {
+			for (int i = 0; i < connections; ++i) {
+				var channel = SocketChannel.open();
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				channel.connect(address);
+				channel.register(selector, SelectionKey.OP_CONNECT, new Client(channel));
+			}
+
+			final long start = System.nanoTime();
+			final long end = start + seconds * 1_000_000_000L;
+			long nextReport = start + reportSeconds * 1_000_000_000L;
+			while (true) {
+				final long now = System.nanoTime();
+				if (now >= end)
+					break;
+				if (now >= nextReport) {
+					report(now - start);
+					nextReport += reportSeconds * 1_000_000_000L;
+				}
+				selector.select(Math.max(1, Math.min(end, nextReport) - now) / 1_000_000 + 1);
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					var client = (Client) key.attachment();
+					if (key.isConnectable()) {
+						client.channel.finishConnect();
+						key.interestOps(SelectionKey.OP_READ);
+						client.join();
+					}
+					if (key.isReadable()) {
+						client.read();
+					}
+				}
+			}
+			System.out.println("total: " + summary(System.nanoTime() - start));
+			for (SelectionKey key : selector.keys()) {
+				key.channel().close();
+			}
+		}
+	}
+
+	private void report(long elapsedNanos) {
+		System.out.println("  " + summary(elapsedNanos));
+	}
+
+	private String summary(long elapsedNanos) {
+		final double seconds = elapsedNanos / 1e9;
+		return String.format("games=%,d  games/s=%,.0f  moves/s=%,.0f  rtt p50<=%dus p99<=%dus  rejected=%d  abandoned=%d",
+				games, games / seconds, moves / seconds, percentile(0.5), percentile(0.99), rejected, abandoned);
+	}
+
+	/** Upper bound of the bucket holding the percentile, in microseconds. */
+	private long percentile(double fraction) {
+		long total = 0;
+		for (long count : latency) {
+			total += count;
+		}
+		long seen = 0;
+		for (int bucket = 0; bucket < latency.length; ++bucket) {
+			seen += latency[bucket];
+			if (seen > 0 && seen >= fraction * total)
+				return 1L << bucket;
+		}
+		return 0;
+	}
+
+	/** One simulated player; all clients are served by the same thread. */
+	private final class Client {
+
+		final SocketChannel channel;
+		final ByteBuffer in = ByteBuffer.allocate(1024);
+		final ByteBuffer out = ByteBuffer.allocate(Protocol.MAX_LENGTH);
+		final BitBoard board = new BitBoard(size, size);
+		Player player = Player.NONE;
+		int marks;
+		long sentNanos;
+
+		Client(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		void join() throws IOException {
+			out.clear();
+			Protocol.putJoin(out, size, size, winLength);
+			send();
+		}
+
+		void read() throws IOException {
+			if (channel.read(in) < 0) {
+				throw new IOException("Server closed the connection");
+			}
+			in.flip();
+			while (in.hasRemaining()) {
+				final int length = Protocol.length(in.get(in.position()));
+				if (length < 0) {
+					throw new IOException("Unknown message type");
+				}
+				if (in.remaining() < length)
+					break;
+				handle();
+			}
+			in.compact();
+		}
+
+		private void handle() throws IOException {
+			switch (in.get()) {
+				case Protocol.START:
+					player = Protocol.player(in.get());
+					board.clear();
+					marks = 0;
+					if (player == Player.X) {
+						move();
+					}
+					break;
+				case Protocol.MOVED: {
+					final Player mover = Protocol.player(in.get());
+					final int col = in.getInt();
+					final int row = in.getInt();
+					board.set(col, row, mover);
+					++marks;
+					if (mover == player) {
+						final long micros = Math.max(1, (System.nanoTime() - sentNanos) / 1000);
+						++latency[Math.min(latency.length - 1, 64 - Long.numberOfLeadingZeros(micros - 1))];
+						++moves;
+					} else if (!board.hasLineThrough(col, row, mover, winLength) && marks < board.cellCount()) {
+						move();
+					}
+					break;
+				}
+				case Protocol.GAME_OVER:
+					in.get();
+					if (player == Player.X) {
+						++games;
+					}
+					join();
+					break;
+				case Protocol.REJECTED:
+					++rejected;
+					break;
+				case Protocol.OPPONENT_LEFT:
+					++abandoned;
+					join();
+					break;
+				default:
+					throw new IOException("Unexpected message from the server");
+			}
+		}
+
+		private void move() throws IOException {
+			int cell;
+			do {
+				cell = random.nextInt(board.cellCount());
+			} while (!board.isEmpty(board.column(cell), board.row(cell)));
+			out.clear();
+			Protocol.putMove(out, board.column(cell), board.row(cell));
+			sentNanos = System.nanoTime();
+			send();
+		}
+
+		private void send() throws IOException {
+			out.flip();
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = MatchRunner.parseOptions(args);
+		int connections = Integer.parseInt(options.getOrDefault("connections", "1000"));
+		int size = Integer.parseInt(options.getOrDefault("size", "10"));
+		int winLength = Integer.parseInt(options.getOrDefault("win", Integer.toString(Math.min(size, 5))));
+		long seconds = Long.parseLong(options.getOrDefault("seconds", "30"));
+		long reportSeconds = Long.parseLong(options.getOrDefault("report-seconds", "5"));
+
+		GameServer server = null;
+		InetSocketAddress address;
+		if (options.containsKey("host")) {
+			address = new InetSocketAddress(options.get("host"),
+					Integer.parseInt(options.getOrDefault("port", Integer.toString(Protocol.DEFAULT_PORT))));
+		} else {
+			server = new GameServer(new InetSocketAddress("localhost", 0));
+			var thread = new Thread(server, "game-server");
+			thread.setDaemon(true);
+			thread.start();
+			address = new InetSocketAddress("localhost", server.port());
+		}
+		System.out.printf("%s connections=%,d %dx%d win=%d%n", address, connections, size, size, winLength);
+		try {
+			new LoadGenerator(address, connections, size, winLength).run(seconds, reportSeconds);
+		} finally {
+			if (server != null) {
+				System.out.printf("server: connections=%,d games in progress=%,d%n",
+						server.connectionCount(), server.gameCount());
+				server.close();
+			}
+		}
+	}
+}
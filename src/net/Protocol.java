@@ -0,0 +1,95 @@
+package net;
+
+import java.nio.ByteBuffer;
+
+import domain.Player;
+
+/**
+ * Binary messages between {@link GameServer} and its clients.
+ * <p>
+ * Each message is a type byte followed by a fixed-size big-endian payload,
+ * so the type alone tells where the message ends:
+ *
+ * <pre>
+ * JOIN          client  u16 cols, u16 rows, u8 winLength (cols = rows = 0: unbounded field)
+ * START         server  u8 player assigned to the client
+ * MOVE          client  i32 col, i32 row
+ * MOVED         server  u8 player, i32 col, i32 row
+ * GAME_OVER     server  u8 winner (NONE for a draw)
+ * REJECTED      server  the last request was illegal
+ * OPPONENT_LEFT server  the game is abandoned
+ * </pre>
+ *
+ * Players are coded by their ordinal. After a finished or abandoned game a
+ * client may send JOIN again.
+ */
+public final class Protocol {
+
+	public static final int DEFAULT_PORT = 7777;
+
+	public static final byte JOIN = 1;
+	public static final byte START = 2;
+	public static final byte MOVE = 3;
+	public static final byte MOVED = 4;
+	public static final byte GAME_OVER = 5;
+	public static final byte REJECTED = 6;
+	public static final byte OPPONENT_LEFT = 7;
+
+	/** Longest message, in bytes. */
+	public static final int MAX_LENGTH = 10;
+
+	private static final Player[] PLAYERS = Player.values();
+
+	private Protocol() {
+	}
+
+	/**
+	 * @return length of a message of the type including the type byte, or
+	 *         {@code -1} for an unknown type
+	 */
+	public static int length(byte type) {
+		switch (type) {
+			case JOIN:
+				return 6;
+			case START:
+			case GAME_OVER:
+				return 2;
+			case MOVE:
+				return 9;
+			case MOVED:
+				return 10;
+			case REJECTED:
+			case OPPONENT_LEFT:
+				return 1;
+			default:
+				return -1;
+		}
+	}
+
+	public static Player player(byte code) {
+		if (code < 0 || code >= PLAYERS.length) {
+			throw new IllegalArgumentException("player " + code);
+		}
+		return PLAYERS[code];
+	}
+
+	public static void putJoin(ByteBuffer out, int cols, int rows, int winLength) {
+		out.put(JOIN).putShort((short) cols).putShort((short) rows).put((byte) winLength);
+	}
+
+	public static void putStart(ByteBuffer out, Player player) {
+		out.put(START).put((byte) player.ordinal());
+	}
+
+	public static void putMove(ByteBuffer out, int col, int row) {
+		out.put(MOVE).putInt(col).putInt(row);
+	}
+
+	public static void putMoved(ByteBuffer out, Player player, int col, int row) {
+		out.put(MOVED).put((byte) player.ordinal()).putInt(col).putInt(row);
+	}
+
+	public static void putGameOver(ByteBuffer out, Player winner) {
+		out.put(GAME_OVER).put((byte) winner.ordinal());
+	}
+}
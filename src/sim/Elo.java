@@ -0,0 +1,132 @@
+package sim;
+
+/**
+ * Elo estimate and sequential probability ratio test for a head-to-head of
+ * two strategies, from the results of colour-swapped game pairs.
+ * <p>
+ * A pair scores 0, ½, 1, 1½ or 2 points for the first strategy, so results
+ * are counted in five bins (the pentanomial model). Working on pairs rather
+ * than single games cancels most of the first-move advantage and gives an
+ * honest variance. Every bin starts with half a pair, so that a clean sweep
+ * still has a finite rating and the test cannot stop on the first few
+ * pairs.
+ */
+public final class Elo {
+
+	/** Pair scores of the bins, as a fraction of the two games. */
+	private static final double[] BIN_SCORES = { 0, 0.25, 0.5, 0.75, 1 };
+	private static final double PRIOR = 0.5;
+	private static final double Z_95 = 1.959964;
+
+	private final long[] pairs;
+	private final long total;
+	private final double mean;
+	private final double variance;
+
+	/** @param pairs counts of pairs scoring 0, ½, 1, 1½ and 2 points */
+	public Elo(long[] pairs) {
+		if (pairs.length != BIN_SCORES.length) {
+			throw new IllegalArgumentException("Five bins expected");
+		}
+		this.pairs = pairs.clone();
+		long count = 0;
+		for (long bin : pairs) {
+			count += bin;
+		}
+		this.total = count;
+
+		double weight = 0;
+		double sum = 0;
+		for (int i = 0; i < pairs.length; ++i) {
+			final double n = pairs[i] + PRIOR;
+			weight += n;
+			sum += n * BIN_SCORES[i];
+		}
+		this.mean = sum / weight;
+		double squares = 0;
+		for (int i = 0; i < pairs.length; ++i) {
+			final double n = pairs[i] + PRIOR;
+			squares += n * (BIN_SCORES[i] - mean) * (BIN_SCORES[i] - mean);
+		}
+		this.variance = squares / weight;
+	}
+
+	public long pairs() {
+		return total;
+	}
+
+	public long pairs(int bin) {
+		return pairs[bin];
+	}
+
+	/** Expected score per game of the first strategy, 0 to 1. */
+	public double score() {
+		return mean;
+	}
+
+	/** Rating difference of the first strategy over the second. */
+	public double elo() {
+		return eloOf(mean);
+	}
+
+	/** Lower end of the 95% confidence interval of {@link #elo()}. */
+	public double eloLow() {
+		return eloOf(mean - Z_95 * standardError());
+	}
+
+	/** Upper end of the 95% confidence interval of {@link #elo()}. */
+	public double eloHigh() {
+		return eloOf(mean + Z_95 * standardError());
+	}
+
+	private double standardError() {
+		return total == 0 ? Double.POSITIVE_INFINITY : Math.sqrt(variance / total);
+	}
+
+	/**
+	 * Log-likelihood ratio of H1 (the difference is {@code elo1}) against H0
+	 * (it is {@code elo0}), by the normal approximation of the generalized
+	 * SPRT.
+	 */
+	public double llr(double elo0, double elo1) {
+		if (total == 0)
+			return 0;
+		final double s0 = scoreOf(elo0);
+		final double s1 = scoreOf(elo1);
+		return total * (s1 - s0) * (2 * mean - s0 - s1) / (2 * variance);
+	}
+
+	/** {@link Sprt#H1} or {@link Sprt#H0} once the test may stop, {@link Sprt#CONTINUE} before. */
+	public Sprt sprt(double elo0, double elo1, double alpha, double beta) {
+		final double llr = llr(elo0, elo1);
+		if (llr >= upperBound(alpha, beta))
+			return Sprt.H1;
+		if (llr <= lowerBound(alpha, beta))
+			return Sprt.H0;
+		return Sprt.CONTINUE;
+	}
+
+	public static double lowerBound(double alpha, double beta) {
+		return Math.log(beta / (1 - alpha));
+	}
+
+	public static double upperBound(double alpha, double beta) {
+		return Math.log((1 - beta) / alpha);
+	}
+
+	public enum Sprt {
+		CONTINUE, H0, H1
+	}
+
+	static double eloOf(double score) {
+		if (score <= 0)
+			return Double.NEGATIVE_INFINITY;
+		if (score >= 1)
+			return Double.POSITIVE_INFINITY;
+		return 400 * Math.log10(score / (1 - score));
+	}
+
+	static double scoreOf(double elo) {
+		return 1 / (1 + Math.pow(10, -elo / 400));
+	}
+}
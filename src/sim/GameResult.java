@@ -0,0 +1,12 @@
+package sim;
+
+import domain.Player;
+
+/**
+ * Outcome of one headless game.
+ *
+ * @param winner {@link Player#NONE} for a draw
+ * @param moves  number of marks placed
+ */
+public record GameResult(Player winner, int moves) {
+}
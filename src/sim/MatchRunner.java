@@ -0,0 +1,158 @@
+package sim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import archive.GameLogWriter;
+import domain.ai.AiStrategy;
+import domain.ai.EvaluationCache;
+
+/**
+ * Headless AI-vs-AI match runner.
+ * <p>
+ * Plays the requested number of games on all cores and prints aggregate
+ * results periodically and at the end:
+ *
+ * <pre>
+ * java -cp build/classes/java/main:build/resources/main sim.MatchRunner --size 10 --win 5 --games 1000000 --x easy --o search:20
+ * </pre>
+ *
+ * Options: {@code --size}, {@code --cols}, {@code --rows}, {@code --win},
+ * {@code --games}, {@code --x}, {@code --o} (see {@link Strategies}),
+ * {@code --threads}, {@code --report-seconds}, {@code --log} (file to append
+ * the games to, see {@link archive.GameLog}).
+ */
+public class MatchRunner {
+
+	private final int cols;
+	private final int rows;
+	private final int winLength;
+	private final long games;
+	private final int threads;
+	private final Supplier<AiStrategy> xStrategy;
+	private final Supplier<AiStrategy> oStrategy;
+	private GameLogWriter log;
+
+	public MatchRunner(int cols, int rows, int winLength, long games, int threads,
+			Supplier<AiStrategy> xStrategy, Supplier<AiStrategy> oStrategy) {
+		if (games <= 0) {
+			throw new IllegalArgumentException("games");
+		}
+		if (threads <= 0) {
+			throw new IllegalArgumentException("threads");
+		}
+		this.cols = cols;
+		this.rows = rows;
+		this.winLength = winLength;
+		this.games = games;
+		this.threads = threads;
+		this.xStrategy = xStrategy;
+		this.oStrategy = oStrategy;
+	}
+
+	/** Records every game played from now on; {@code null} turns recording off. */
+	public void setLog(GameLogWriter log) {
+		this.log = log;
+	}
+
+	/**
+	 * Plays all games, reporting a snapshot every {@code reportSeconds}
+	 * seconds through {@code reporter}.
+	 */
+	public MatchStats.Snapshot run(long reportSeconds, Consumer<MatchStats.Snapshot> reporter)
+			throws InterruptedException {
+		final var stats = new MatchStats();
+		final var remaining = new AtomicLong(games);
+		final ExecutorService workers = Executors.newFixedThreadPool(threads);
+		final var reporting = Executors.newSingleThreadScheduledExecutor(task -> {
+			var thread = new Thread(task, "match-report");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (reportSeconds > 0) {
+			reporting.scheduleAtFixedRate(() -> reporter.accept(stats.snapshot()),
+					reportSeconds, reportSeconds, TimeUnit.SECONDS);
+		}
+		try {
+			for (int t = 0; t < threads; ++t) {
+				workers.execute(() -> {
+					var selfPlay = new SelfPlay(cols, rows, winLength);
+					var x = xStrategy.get();
+					var o = oStrategy.get();
+					while (remaining.getAndDecrement() > 0 && !Thread.currentThread().isInterrupted()) {
+						var result = selfPlay.play(x, o);
+						stats.record(result);
+						if (log != null) {
+							try {
+								selfPlay.appendTo(log, result);
+							} catch (IOException e) {
+								throw new UncheckedIOException(e);
+							}
+						}
+					}
+				});
+			}
+			workers.shutdown();
+			while (!workers.awaitTermination(1, TimeUnit.DAYS)) {
+				// keep waiting
+			}
+		} finally {
+			workers.shutdownNow();
+			reporting.shutdownNow();
+		}
+		return stats.snapshot();
+	}
+
+	public static void main(String[] args) throws InterruptedException, IOException {
+		Map<String, String> options = parseOptions(args);
+		int size = Integer.parseInt(options.getOrDefault("size", "3"));
+		int cols = Integer.parseInt(options.getOrDefault("cols", Integer.toString(size)));
+		int rows = Integer.parseInt(options.getOrDefault("rows", Integer.toString(size)));
+		int winLength = Integer.parseInt(options.getOrDefault("win", Integer.toString(Math.min(cols, rows))));
+		long games = Long.parseLong(options.getOrDefault("games", "100000"));
+		int threads = Integer.parseInt(options.getOrDefault("threads",
+				Integer.toString(Runtime.getRuntime().availableProcessors())));
+		long reportSeconds = Long.parseLong(options.getOrDefault("report-seconds", "5"));
+		String x = options.getOrDefault("x", "easy");
+		String o = options.getOrDefault("o", "easy");
+
+		System.out.printf("%dx%d win=%d games=%,d threads=%d X=%s O=%s%n", cols, rows, winLength, games, threads, x, o);
+		var runner = new MatchRunner(cols, rows, winLength, games, threads, Strategies.parse(x), Strategies.parse(o));
+		MatchStats.Snapshot result;
+		String logFile = options.get("log");
+		if (logFile == null) {
+			result = runner.run(reportSeconds, snapshot -> System.out.println("  " + snapshot));
+		} else {
+			try (var log = GameLogWriter.open(Path.of(logFile))) {
+				runner.setLog(log);
+				result = runner.run(reportSeconds, snapshot -> System.out.println("  " + snapshot));
+			}
+		}
+		System.out.println(result);
+		var cache = EvaluationCache.shared();
+		var cacheStats = cache != null ? cache.stats() : null;
+		if (cacheStats != null && cacheStats.hits() + cacheStats.misses() > 0) {
+			System.out.println("evaluation cache: " + cacheStats);
+		}
+	}
+
+	public static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (int i = 0; i < args.length; ++i) {
+			if (!args[i].startsWith("--") || i + 1 >= args.length) {
+				throw new IllegalArgumentException("Expected --name value, got: " + args[i]);
+			}
+			options.put(args[i].substring(2), args[++i]);
+		}
+		return options;
+	}
+}
@@ -0,0 +1,59 @@
+package sim;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import domain.Player;
+
+/**
+ * Aggregate results of many games, updated concurrently by the workers.
+ */
+public final class MatchStats {
+
+	private final LongAdder xWins = new LongAdder();
+	private final LongAdder oWins = new LongAdder();
+	private final LongAdder draws = new LongAdder();
+	private final LongAdder moves = new LongAdder();
+	private final long startNanos = System.nanoTime();
+
+	public void record(GameResult result) {
+		if (result.winner() == Player.X) {
+			xWins.increment();
+		} else if (result.winner() == Player.O) {
+			oWins.increment();
+		} else {
+			draws.increment();
+		}
+		moves.add(result.moves());
+	}
+
+	public Snapshot snapshot() {
+		return new Snapshot(xWins.sum(), oWins.sum(), draws.sum(), moves.sum(), System.nanoTime() - startNanos);
+	}
+
+	public record Snapshot(long xWins, long oWins, long draws, long moves, long elapsedNanos) {
+
+		public long games() {
+			return xWins + oWins + draws;
+		}
+
+		public double averageLength() {
+			return games() == 0 ? 0 : (double) moves / games();
+		}
+
+		public double movesPerSecond() {
+			return elapsedNanos == 0 ? 0 : moves * 1e9 / elapsedNanos;
+		}
+
+		public double gamesPerSecond() {
+			return elapsedNanos == 0 ? 0 : games() * 1e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			final double games = Math.max(1, games());
+			return String.format("games=%,d  X=%.1f%%  O=%.1f%%  draw=%.1f%%  avgLen=%.2f  games/s=%,.0f  moves/s=%,.0f",
+					games(), 100 * xWins / games, 100 * oWins / games, 100 * draws / games,
+					averageLength(), gamesPerSecond(), movesPerSecond());
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package sim;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+import archive.GameLog;
+import domain.Player;
+import domain.ai.CandidateIndex;
+import domain.ai.PatternWeights;
+
+/**
+ * Fits the {@link PatternWeights} of every win length found in game logs to
+ * the results of the games.
+ * <p>
+ * Each position of a logged game becomes the open line counts of the side
+ * to move and of its opponent, labelled with how the game ended for the side
+ * to move: 1, ½ or 0. The weights are fitted by gradient descent (Adam) so
+ * that the logistic function of the evaluation predicts that label, with
+ * the log loss as the error. Games are replayed, and the gradient summed
+ * over positions, with parallel streams.
+ *
+ * <pre>
+ * java -cp build/classes/java/main:build/resources/main sim.Tournament --strategies easy,search:10,search:30 --boards 5:4,9:5,15:5 --log selfplay.log
+ * java -cp build/classes/java/main:build/resources/main sim.PatternTuner --log selfplay.log --out resources/domain/ai/pattern-weights.bin
+ * </pre>
+ *
+ * Options: {@code --log} (comma-separated), {@code --out},
+ * {@code --base} (weights to keep for the other win lengths, the shared
+ * ones by default, or {@code builtin}), {@code --iterations}, {@code --rate},
+ * {@code --skip} (opening moves not used as positions),
+ * {@code --min-positions} (fewer leave a win length untuned).
+ */
+public class PatternTuner {
+
+	/** A finished game on a bounded field, moves as row-major cells. */
+	private record Recorded(int cols, int rows, Player winner, int[] cells) {
+	}
+
+	/** Positions of one win length: {@code features} per position, then its label. */
+	private static final class Samples {
+
+		final int features;
+		final int count;
+		final int[] counts;
+		final double[] labels;
+
+		Samples(int features, int count, int[] counts, double[] labels) {
+			this.features = features;
+			this.count = count;
+			this.counts = counts;
+			this.labels = labels;
+		}
+	}
+
+	private final int iterations;
+	private final double rate;
+	private final int skip;
+
+	public PatternTuner(int iterations, double rate, int skip) {
+		this.iterations = iterations;
+		this.rate = rate;
+		this.skip = skip;
+	}
+
+	/** Reads the bounded games of the logs, grouped by win length. */
+	private static Map<Integer, List<Recorded>> read(List<Path> files) throws IOException {
+		Map<Integer, List<Recorded>> games = new TreeMap<>();
+		for (Path file : files) {
+			var cursor = GameLog.open(file).cursor();
+			while (cursor.next()) {
+				if (!cursor.isBounded() || cursor.winLength() < 2 || cursor.winLength() > PatternWeights.MAX_WIN_LENGTH)
+					continue;
+				final int[] cells = new int[cursor.moveCount()];
+				for (int i = 0; i < cells.length; ++i) {
+					cells[i] = cursor.moveRow(i) * cursor.columns() + cursor.moveColumn(i);
+				}
+				games.computeIfAbsent(cursor.winLength(), length -> new ArrayList<>())
+						.add(new Recorded(cursor.columns(), cursor.rows(), cursor.winner(), cells));
+			}
+		}
+		return games;
+	}
+
+	/**
+	 * Replays the games in parallel. Features of a position are the open
+	 * lines of 1 to {@code winLength - 1} marks of the side to move, then of
+	 * the opponent; positions after the last move are left out.
+	 */
+	private Samples samples(int winLength, List<Recorded> games) {
+		final int features = 2 * (winLength - 1);
+		final List<int[]> perGame = games.parallelStream().map(game -> {
+			final int positions = Math.max(0, game.cells().length - 1 - skip);
+			final int[] rows = new int[positions * (features + 1)];
+			var index = new CandidateIndex(game.cols(), game.rows(), winLength, 0, PatternWeights.builtIn());
+			Player mover = Player.X;
+			int row = 0;
+			for (int move = 0; move < game.cells().length - 1; ++move) {
+				index.make(game.cells()[move], mover);
+				mover = mover == Player.X ? Player.O : Player.X;
+				if (move < skip)
+					continue;
+				final Player other = mover == Player.X ? Player.O : Player.X;
+				for (int marks = 1; marks < winLength; ++marks) {
+					rows[row + marks - 1] = index.openLines(mover, marks);
+					rows[row + winLength - 2 + marks] = index.openLines(other, marks);
+				}
+				// the label, in half points, after the features
+				rows[row + features] = game.winner() == mover ? 2 : game.winner() == Player.NONE ? 1 : 0;
+				row += features + 1;
+			}
+			return rows;
+		}).toList();
+
+		final int count = perGame.stream().mapToInt(rows -> rows.length / (features + 1)).sum();
+		final int[] counts = new int[count * features];
+		final double[] labels = new double[count];
+		int position = 0;
+		for (int[] rows : perGame) {
+			for (int row = 0; row < rows.length; row += features + 1, ++position) {
+				System.arraycopy(rows, row, counts, position * features, features);
+				labels[position] = rows[row + features] / 2.0;
+			}
+		}
+		return new Samples(features, count, counts, labels);
+	}
+
+	/**
+	 * Fits weights in log-odds units: own weights count for the side to move,
+	 * opponent weights against it.
+	 *
+	 * @return the weights, own ones first
+	 */
+	private double[] fit(Samples samples) {
+		final int features = samples.features;
+		final double[] weights = new double[features];
+		final double[] moment = new double[features];
+		final double[] velocity = new double[features];
+		final double beta1 = 0.9;
+		final double beta2 = 0.999;
+		for (int step = 1; step <= iterations; ++step) {
+			final double[] gradient = gradient(samples, weights);
+			for (int k = 0; k < features; ++k) {
+				moment[k] = beta1 * moment[k] + (1 - beta1) * gradient[k];
+				velocity[k] = beta2 * velocity[k] + (1 - beta2) * gradient[k] * gradient[k];
+				final double m = moment[k] / (1 - Math.pow(beta1, step));
+				final double v = velocity[k] / (1 - Math.pow(beta2, step));
+				weights[k] -= rate * m / (Math.sqrt(v) + 1e-9);
+			}
+		}
+		return weights;
+	}
+
+	/** Gradient of the mean log loss, summed over chunks of positions in parallel. */
+	private static double[] gradient(Samples samples, double[] weights) {
+		final int features = samples.features;
+		final int chunk = 4096;
+		final double[] sum = IntStream.range(0, (samples.count + chunk - 1) / chunk).parallel().mapToObj(c -> {
+			final double[] partial = new double[features];
+			final int end = Math.min(samples.count, (c + 1) * chunk);
+			for (int i = c * chunk; i < end; ++i) {
+				final double error = predict(samples, weights, i) - samples.labels[i];
+				for (int k = 0; k < features; ++k) {
+					partial[k] += error * sign(k, features) * samples.counts[i * features + k];
+				}
+			}
+			return partial;
+		}).reduce(new double[features], (a, b) -> {
+			final double[] total = new double[features];
+			for (int k = 0; k < features; ++k) {
+				total[k] = a[k] + b[k];
+			}
+			return total;
+		});
+		for (int k = 0; k < features; ++k) {
+			sum[k] /= samples.count;
+		}
+		return sum;
+	}
+
+	/** Mean log loss of the weights over all positions. */
+	private static double loss(Samples samples, double[] weights) {
+		return IntStream.range(0, samples.count).parallel().mapToDouble(i -> {
+			final double p = Math.min(1 - 1e-12, Math.max(1e-12, predict(samples, weights, i)));
+			final double y = samples.labels[i];
+			return -(y * Math.log(p) + (1 - y) * Math.log(1 - p));
+		}).sum() / samples.count;
+	}
+
+	private static double predict(Samples samples, double[] weights, int position) {
+		final int features = samples.features;
+		double evaluation = 0;
+		for (int k = 0; k < features; ++k) {
+			evaluation += sign(k, features) * weights[k] * samples.counts[position * features + k];
+		}
+		return 1 / (1 + Math.exp(-evaluation));
+	}
+
+	private static int sign(int feature, int features) {
+		return feature < features / 2 ? 1 : -1;
+	}
+
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = MatchRunner.parseOptions(args);
+		if (!options.containsKey("log") || !options.containsKey("out")) {
+			System.err.println("Usage: PatternTuner --log <file>[,<file>...] --out <weights file>"
+					+ " [--base builtin|<file>] [--iterations N] [--rate R] [--skip N] [--min-positions N]");
+			System.exit(2);
+		}
+		List<Path> logs = new ArrayList<>();
+		for (String log : options.get("log").split(",")) {
+			logs.add(Path.of(log));
+		}
+		final int iterations = Integer.parseInt(options.getOrDefault("iterations", "500"));
+		final double rate = Double.parseDouble(options.getOrDefault("rate", "0.02"));
+		final int skip = Integer.parseInt(options.getOrDefault("skip", "2"));
+		final int minPositions = Integer.parseInt(options.getOrDefault("min-positions", "1000"));
+		final String base = options.getOrDefault("base", "shared");
+		if (base.equals("shared") && PatternWeights.shared() == PatternWeights.builtIn()) {
+			System.err.println("No tuned pattern weights on the class path, keeping the built-in ones as the base");
+		}
+		PatternWeights weights = base.equals("builtin") ? PatternWeights.builtIn()
+				: base.equals("shared") ? PatternWeights.shared() : PatternWeights.load(Path.of(base));
+
+		var tuner = new PatternTuner(iterations, rate, skip);
+		for (var entry : read(logs).entrySet()) {
+			final int winLength = entry.getKey();
+			final long start = System.nanoTime();
+			final Samples samples = tuner.samples(winLength, entry.getValue());
+			if (samples.count < minPositions) {
+				System.out.printf("win %d: %,d games, %,d positions, too few to tune%n", winLength,
+						entry.getValue().size(), samples.count);
+				continue;
+			}
+			final double[] fitted = tuner.fit(samples);
+			final int[] own = new int[winLength];
+			final int[] opponent = new int[winLength];
+			for (int marks = 1; marks < winLength; ++marks) {
+				own[marks] = (int) Math.round(fitted[marks - 1] * PatternWeights.UNITS_PER_LOGIT);
+				opponent[marks] = (int) Math.round(fitted[winLength - 2 + marks] * PatternWeights.UNITS_PER_LOGIT);
+			}
+			weights = weights.with(winLength, own, opponent);
+			System.out.printf("win %d: %,d games, %,d positions, log loss %.4f -> %.4f in %.1f s%n"
+					+ "  own %s%n  opponent %s%n", winLength, entry.getValue().size(), samples.count,
+					loss(samples, new double[samples.features]), loss(samples, fitted),
+					(System.nanoTime() - start) / 1e9, Arrays.toString(Arrays.copyOfRange(own, 1, winLength)),
+					Arrays.toString(Arrays.copyOfRange(opponent, 1, winLength)));
+		}
+		weights.write(Path.of(options.get("out")));
+	}
+}
@@ -0,0 +1,212 @@
+package sim;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import domain.BitBoard;
+import domain.Game;
+import domain.GameSnapshot;
+import domain.Player;
+import domain.ai.AiStrategy;
+import domain.ai.EvaluationCache;
+import domain.ai.MctsStrategy;
+import metrics.Metrics;
+
+/**
+ * Measures how long the AI takes to answer a move with pondering off and on.
+ * A simulated human picks its moves with its own strategy and takes
+ * {@code --think-ms} per move, as a person would; the AI runs on its own
+ * thread as in the game window:
+ *
+ * <pre>
+ * java -cp build/classes/java/main:build/resources/main sim.PonderBench --ai search:500 --human search:100 --think-ms 2000 --size 15 --win 5 --games 4
+ * </pre>
+ *
+ * The human plays X in even games and O in odd ones.
+ */
+public class PonderBench {
+
+	private final int size;
+	private final int winLength;
+	private final int games;
+	private final long thinkMillis;
+	private final Supplier<AiStrategy> ai;
+	private final Supplier<AiStrategy> human;
+
+	public PonderBench(int size, int winLength, int games, long thinkMillis, Supplier<AiStrategy> ai,
+			Supplier<AiStrategy> human) {
+		this.size = size;
+		this.winLength = winLength;
+		this.games = games;
+		this.thinkMillis = thinkMillis;
+		this.ai = ai;
+		this.human = human;
+	}
+
+	/** Plays all games with pondering on or off and prints the reply latencies. */
+	public void run(boolean pondering) throws InterruptedException {
+		var cache = EvaluationCache.shared();
+		if (cache != null) {
+			cache.clear();
+		}
+		final long hitsBefore = Metrics.PONDER_HITS.sum();
+		final long missesBefore = Metrics.PONDER_MISSES.sum();
+		var latencies = new long[1024];
+		int count = 0;
+		int aiWins = 0;
+		int humanWins = 0;
+		for (int i = 0; i < games; ++i) {
+			var match = new Match(i % 2 == 0 ? Player.X : Player.O, pondering);
+			final Player winner = match.play();
+			if (winner == match.humanPlayer) {
+				++humanWins;
+			} else if (winner != Player.NONE) {
+				++aiWins;
+			}
+			for (int j = 0; j < match.latencyCount; ++j) {
+				if (count == latencies.length) {
+					latencies = Arrays.copyOf(latencies, count * 2);
+				}
+				latencies[count++] = match.latencies[j];
+			}
+		}
+		Arrays.sort(latencies, 0, count);
+		long sum = 0;
+		for (int i = 0; i < count; ++i) {
+			sum += latencies[i];
+		}
+		System.out.printf("pondering %-3s replies=%d mean=%.1f ms p50=%.1f ms p90=%.1f ms max=%.1f ms"
+				+ " hits=%d misses=%d ai wins=%d human wins=%d draws=%d%n",
+				pondering ? "on" : "off", count, count == 0 ? 0.0 : sum / 1e6 / count,
+				percentile(latencies, count, 50), percentile(latencies, count, 90),
+				count == 0 ? 0.0 : latencies[count - 1] / 1e6,
+				Metrics.PONDER_HITS.sum() - hitsBefore, Metrics.PONDER_MISSES.sum() - missesBefore,
+				aiWins, humanWins, games - aiWins - humanWins);
+	}
+
+	private static double percentile(long[] sorted, int count, int percent) {
+		return count == 0 ? 0.0 : sorted[Math.min(count - 1, count * percent / 100)] / 1e6;
+	}
+
+	/** One game: the event thread owns the game, the human thinks on a thread of its own. */
+	private final class Match {
+
+		final Player humanPlayer;
+		final boolean pondering;
+		final ExecutorService events = Executors.newSingleThreadExecutor(daemon("bench-events"));
+		final ExecutorService aiThread = Executors.newSingleThreadExecutor(daemon("bench-ai"));
+		final ExecutorService humanThread = Executors.newSingleThreadExecutor(daemon("bench-human"));
+		final AiStrategy humanStrategy = human.get();
+		final CountDownLatch over = new CountDownLatch(1);
+
+		final long[] latencies = new long[size * size];
+		int latencyCount;
+		long movedNanos;
+		Game game;
+
+		Match(Player humanPlayer, boolean pondering) {
+			this.humanPlayer = humanPlayer;
+			this.pondering = pondering;
+		}
+
+		Player play() throws InterruptedException {
+			final var strategy = ai.get();
+			// as in the game window: MCTS keeps its tree for one side, so it ponders with an instance of its own
+			final AiStrategy ponderStrategy = !pondering ? null : strategy instanceof MctsStrategy ? ai.get() : strategy;
+			events.execute(() -> {
+				game = new Game(new BitBoard(size, size), winLength, humanPlayer, strategy, aiThread, events);
+				game.addCellChangedCallback((source, col, row, state) -> {
+					if (state == game.aiPlayer() && movedNanos != 0) {
+						latencies[latencyCount++] = System.nanoTime() - movedNanos;
+						movedNanos = 0;
+					}
+					if (state == game.aiPlayer() && !game.isGameOver()) {
+						think(game.snapshot());
+					}
+				});
+				game.addGameOverListener(e -> over.countDown());
+				game.setPondering(ponderStrategy);
+				if (humanPlayer == Player.X) {
+					think(game.snapshot());
+				}
+			});
+			over.await();
+			final Player winner = game.winner();
+			for (var executor : new ExecutorService[] { events, aiThread, humanThread }) {
+				executor.shutdownNow();
+				executor.awaitTermination(1, TimeUnit.MINUTES);
+			}
+			close(strategy);
+			if (ponderStrategy != strategy) {
+				close(ponderStrategy);
+			}
+			return winner;
+		}
+
+		private void close(AiStrategy strategy) {
+			if (strategy instanceof AutoCloseable closeable) {
+				try {
+					closeable.close();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+
+		/** Picks the human move, waits out the rest of the thinking time and plays it. */
+		private void think(GameSnapshot position) {
+			humanThread.execute(() -> {
+				final long start = System.nanoTime();
+				var board = new BitBoard(size, size);
+				for (int row = 0; row < size; ++row) {
+					for (int col = 0; col < size; ++col) {
+						board.set(col, row, position.cellState(col, row));
+					}
+				}
+				final int cell = humanStrategy.chooseMove(board, humanPlayer, winLength);
+				final long rest = thinkMillis - (System.nanoTime() - start) / 1_000_000;
+				if (rest > 0) {
+					try {
+						Thread.sleep(rest);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				events.execute(() -> {
+					movedNanos = System.nanoTime();
+					game.humanTurn(board.column(cell), board.row(cell));
+				});
+			});
+		}
+	}
+
+	private static ThreadFactory daemon(String name) {
+		return task -> {
+			var thread = new Thread(task, name);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		Map<String, String> options = MatchRunner.parseOptions(args);
+		int size = Integer.parseInt(options.getOrDefault("size", "15"));
+		int winLength = Integer.parseInt(options.getOrDefault("win", "5"));
+		int games = Integer.parseInt(options.getOrDefault("games", "4"));
+		long thinkMillis = Long.parseLong(options.getOrDefault("think-ms", "2000"));
+		String ai = options.getOrDefault("ai", "search:500");
+		String human = options.getOrDefault("human", "search:100");
+
+		System.out.printf("%dx%d win=%d games=%d AI=%s human=%s think=%d ms%n",
+				size, size, winLength, games, ai, human, thinkMillis);
+		var bench = new PonderBench(size, winLength, games, thinkMillis, Strategies.parse(ai), Strategies.parse(human));
+		bench.run(false);
+		bench.run(true);
+	}
+}
@@ -0,0 +1,86 @@
+package sim;
+
+import java.io.IOException;
+
+import archive.GameLogWriter;
+import domain.BitBoard;
+import domain.Player;
+import domain.ai.AiStrategy;
+
+/**
+ * Plays AI-vs-AI games on a plain {@link BitBoard}, without listeners or
+ * executors. One instance reuses its boards between games and must stay on
+ * one thread.
+ */
+public final class SelfPlay {
+
+	private final int winLength;
+	private final BitBoard board;
+	private final BitBoard scratch;
+	private final int[] moveCols;
+	private final int[] moveRows;
+
+	public SelfPlay(int cols, int rows, int winLength) {
+		if (winLength <= 0 || winLength > Math.max(cols, rows)) {
+			throw new IllegalArgumentException("winLength");
+		}
+		this.winLength = winLength;
+		this.board = new BitBoard(cols, rows);
+		this.scratch = new BitBoard(cols, rows);
+		this.moveCols = new int[cols * rows];
+		this.moveRows = new int[cols * rows];
+	}
+
+	public GameResult play(AiStrategy x, AiStrategy o) {
+		return play(x, o, null, 0);
+	}
+
+	/**
+	 * Plays a game that starts with the given cells, X first, so that
+	 * deterministic strategies meet in different positions.
+	 *
+	 * @param opening cells as {@link BitBoard#cell(int, int)}; fewer than
+	 *                {@code 2 * winLength - 1} so they cannot end the game
+	 */
+	public GameResult play(AiStrategy x, AiStrategy o, int[] opening, int openingMoves) {
+		if (openingMoves >= 2 * winLength - 1) {
+			throw new IllegalArgumentException("openingMoves");
+		}
+		board.clear();
+		Player player = Player.X;
+		final int cells = board.cellCount();
+		for (int i = 0; i < openingMoves; ++i) {
+			final int col = board.column(opening[i]);
+			final int row = board.row(opening[i]);
+			if (!board.isEmpty(col, row)) {
+				throw new IllegalArgumentException("Opening repeats cell " + opening[i]);
+			}
+			board.set(col, row, player);
+			moveCols[i] = col;
+			moveRows[i] = row;
+			player = player == Player.X ? Player.O : Player.X;
+		}
+		for (int moves = openingMoves + 1; moves <= cells; ++moves) {
+			scratch.copyFrom(board);
+			final int cell = (player == Player.X ? x : o).chooseMove(scratch, player, winLength);
+			if (cell < 0 || cell >= cells || !board.isEmpty(board.column(cell), board.row(cell))) {
+				throw new IllegalStateException("Strategy for " + player + " chose an illegal cell: " + cell);
+			}
+			final int col = board.column(cell);
+			final int row = board.row(cell);
+			board.set(col, row, player);
+			moveCols[moves - 1] = col;
+			moveRows[moves - 1] = row;
+			if (board.hasLineThrough(col, row, player, winLength)) {
+				return new GameResult(player, moves);
+			}
+			player = player == Player.X ? Player.O : Player.X;
+		}
+		return new GameResult(Player.NONE, cells);
+	}
+
+	/** Writes the game last played, which ended with {@code result}, to the log. */
+	public void appendTo(GameLogWriter log, GameResult result) throws IOException {
+		log.append(board.columns(), board.rows(), winLength, result.winner(), moveCols, moveRows, result.moves());
+	}
+}
@@ -0,0 +1,85 @@
+package sim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+import domain.ai.AiStrategy;
+import domain.ai.CachingStrategy;
+import domain.ai.EasyStrategy;
+import domain.ai.EvaluationCache;
+import domain.ai.MctsStrategy;
+import domain.ai.ParallelSearchStrategy;
+import domain.ai.PatternWeights;
+import domain.ai.SearchStrategy;
+import domain.ai.TranspositionTable;
+
+/**
+ * Parses strategy specs given on the command line:
+ * <ul>
+ * <li>{@code easy} — {@link EasyStrategy}</li>
+ * <li>{@code search[:budgetMillis[:maxDepth[:weights]]]} —
+ * {@link SearchStrategy} sharing the {@link EvaluationCache#shared()
+ * evaluation cache}; {@code weights} is {@code builtin} or a file written
+ * by {@link PatternTuner}, the tuned resource by default</li>
+ * <li>{@code parallel[:budgetMillis[:threads[:weights]]]} —
+ * {@link ParallelSearchStrategy}, otherwise like {@code search}</li>
+ * <li>{@code mcts[:budgetMillis[:playouts]]} — single-threaded
+ * {@link MctsStrategy}; a zero budget is no limit</li>
+ * <li>{@code cached:<spec>} — any of these with its moves remembered in the
+ * shared cache, see {@link CachingStrategy}</li>
+ * </ul>
+ */
+public final class Strategies {
+
+	private static final int TABLE_CAPACITY = 1 << 18;
+	private static final String CACHED_PREFIX = "cached:";
+
+	private Strategies() {
+	}
+
+	public static Supplier<AiStrategy> parse(String spec) {
+		if (spec.startsWith(CACHED_PREFIX)) {
+			final var strategy = parse(spec.substring(CACHED_PREFIX.length()));
+			final var cache = EvaluationCache.shared();
+			return cache == null ? strategy : () -> new CachingStrategy(strategy.get(), cache, spec);
+		}
+		final String[] parts = spec.split(":");
+		switch (parts[0]) {
+			case "easy":
+				return EasyStrategy::new;
+			case "search": {
+				final long budget = parts.length > 1 ? Long.parseLong(parts[1]) : SearchStrategy.DEFAULT_BUDGET_MILLIS;
+				final int depth = parts.length > 2 ? Integer.parseInt(parts[2]) : 64;
+				final var patterns = parts.length > 3 ? patterns(parts[3]) : PatternWeights.shared();
+				return () -> new SearchStrategy(budget, depth, new TranspositionTable(TABLE_CAPACITY),
+						EvaluationCache.shared(), patterns);
+			}
+			case "parallel": {
+				final long budget = parts.length > 1 ? Long.parseLong(parts[1]) : SearchStrategy.DEFAULT_BUDGET_MILLIS;
+				final int threads = parts.length > 2 ? Integer.parseInt(parts[2]) : 2;
+				final var patterns = parts.length > 3 ? patterns(parts[3]) : PatternWeights.shared();
+				return () -> new ParallelSearchStrategy(budget, 64, threads,
+						new TranspositionTable(TABLE_CAPACITY), EvaluationCache.shared(), patterns);
+			}
+			case "mcts": {
+				final long budget = parts.length > 1 ? Long.parseLong(parts[1]) : MctsStrategy.DEFAULT_BUDGET_MILLIS;
+				final long playouts = parts.length > 2 ? Long.parseLong(parts[2]) : 0;
+				return () -> new MctsStrategy(budget, playouts, 1, System.nanoTime());
+			}
+			default:
+				throw new IllegalArgumentException("Unknown strategy: " + spec);
+		}
+	}
+
+	private static PatternWeights patterns(String name) {
+		if (name.equals("builtin"))
+			return PatternWeights.builtIn();
+		try {
+			return PatternWeights.load(Path.of(name));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,520 @@
+package sim;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import archive.GameLogWriter;
+import domain.Player;
+import domain.ai.AiStrategy;
+import domain.ai.PatternWeights;
+
+/**
+ * Round-robin tournament between AI strategies, ranked by Elo.
+ * <p>
+ * Every two strategies play pairs of games on the same board from the same
+ * random opening, each strategy taking X once. Pairs are spread over the
+ * boards in turn and played on all cores. With {@code --sprt} a
+ * head-to-head stops as soon as the test accepts either hypothesis, see
+ * {@link Elo#sprt}; otherwise after {@code --pairs} pairs.
+ *
+ * <pre>
+ * java -cp build/classes/java/main:build/resources/main sim.Tournament --strategies easy,search:20,mcts:20 --boards 3:3,9:5,15:5 --pairs 500
+ * java -cp build/classes/java/main:build/resources/main sim.Tournament --strategies search:20,cached:search:20 --sprt 0,20 --csv h2h.csv --json h2h.json
+ * </pre>
+ *
+ * Options: {@code --strategies} (comma-separated, see {@link Strategies}),
+ * {@code --boards} ({@code all}, the default, for every size and win length
+ * the settings window offers, or a list of {@code size:win}),
+ * {@code --pairs}, {@code --opening} (random moves each pair starts with),
+ * {@code --sprt elo0,elo1[,alpha,beta]}, {@code --threads},
+ * {@code --seed}, {@code --report-seconds}, {@code --csv}, {@code --json},
+ * {@code --log} (file to append the games to).
+ */
+public class Tournament {
+
+	/** Field sizes and win lengths the sliders of {@code SettingsWindow} allow. */
+	static final int MIN_SIZE = 3;
+	static final int MAX_SIZE = 100;
+	static final int MIN_WIN_LENGTH = 3;
+	static final int MAX_WIN_LENGTH = 10;
+
+	/** A square field and the line length that wins on it. */
+	public record Board(int size, int winLength) {
+
+		public Board {
+			if (size < 1 || winLength < 1 || winLength > size) {
+				throw new IllegalArgumentException("size=" + size + ", winLength=" + winLength);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return size + "x" + size + "/" + winLength;
+		}
+	}
+
+	/**
+	 * Sequential test of every head-to-head: H0 says the first strategy is
+	 * {@code elo0} stronger, H1 that it is {@code elo1} stronger.
+	 */
+	public record SprtBounds(double elo0, double elo1, double alpha, double beta) {
+	}
+
+	private final List<String> names;
+	private final List<Supplier<AiStrategy>> strategies;
+	private final List<Board> boards;
+	private final long maxPairs;
+	private final int openingMoves;
+	private final SprtBounds sprt;
+	private final int threads;
+	private final long seed;
+	private final List<HeadToHead> headToHeads = new ArrayList<>();
+	private GameLogWriter log;
+
+	/**
+	 * @param sprt         {@code null} to play all {@code maxPairs} pairs
+	 * @param openingMoves random moves each pair starts with, so that
+	 *                     deterministic strategies do not repeat one game
+	 */
+	public Tournament(List<String> names, List<Supplier<AiStrategy>> strategies, List<Board> boards, long maxPairs,
+			int openingMoves, SprtBounds sprt, int threads, long seed) {
+		if (names.size() < 2 || names.size() != strategies.size()) {
+			throw new IllegalArgumentException("At least two strategies expected");
+		}
+		if (boards.isEmpty() || maxPairs <= 0 || threads <= 0 || openingMoves < 0) {
+			throw new IllegalArgumentException("boards=" + boards + ", pairs=" + maxPairs + ", threads=" + threads);
+		}
+		this.names = List.copyOf(names);
+		this.strategies = List.copyOf(strategies);
+		var order = new ArrayList<>(boards);
+		Collections.shuffle(order, new Random(seed));
+		this.boards = List.copyOf(order);
+		this.maxPairs = maxPairs;
+		this.openingMoves = openingMoves;
+		this.sprt = sprt;
+		this.threads = threads;
+		this.seed = seed;
+		for (int a = 0; a < names.size(); ++a) {
+			for (int b = a + 1; b < names.size(); ++b) {
+				headToHeads.add(new HeadToHead(a, b, this.boards.size()));
+			}
+		}
+	}
+
+	/** Appends every game played to the log, for {@link PatternTuner}. */
+	public void setLog(GameLogWriter log) {
+		this.log = log;
+	}
+
+	/** Every size and win length the settings window allows. */
+	public static List<Board> allBoards() {
+		List<Board> boards = new ArrayList<>();
+		for (int size = MIN_SIZE; size <= MAX_SIZE; ++size) {
+			for (int win = MIN_WIN_LENGTH; win <= Math.min(MAX_WIN_LENGTH, size); ++win) {
+				boards.add(new Board(size, win));
+			}
+		}
+		return boards;
+	}
+
+	/**
+	 * Plays until every head-to-head is decided or has played all its pairs,
+	 * printing the standings every {@code reportSeconds}.
+	 */
+	public void run(long reportSeconds) throws InterruptedException {
+		final long tasks = maxPairs * headToHeads.size();
+		final var next = new AtomicLong();
+		final ExecutorService workers = Executors.newFixedThreadPool(threads);
+		final var reporting = Executors.newSingleThreadScheduledExecutor(task -> {
+			var thread = new Thread(task, "tournament-report");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (reportSeconds > 0) {
+			reporting.scheduleAtFixedRate(() -> System.out.print(report()), reportSeconds, reportSeconds,
+					TimeUnit.SECONDS);
+		}
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int t = 0; t < threads; ++t) {
+				results.add(workers.submit(() -> play(next, tasks)));
+			}
+			for (var result : results) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Tournament worker failed", e.getCause());
+				}
+			}
+		} finally {
+			workers.shutdownNow();
+			reporting.shutdownNow();
+		}
+	}
+
+	/** Worker loop: takes pairs in order, skipping head-to-heads already decided. */
+	private void play(AtomicLong next, long tasks) {
+		final AiStrategy[] players = new AiStrategy[strategies.size()];
+		final SelfPlay[] fields = new SelfPlay[boards.size()];
+		final int[] opening = new int[openingMoves];
+		try {
+			for (long task = next.getAndIncrement(); task < tasks; task = next.getAndIncrement()) {
+				if (Thread.currentThread().isInterrupted())
+					return;
+				final var match = headToHeads.get((int) (task % headToHeads.size()));
+				if (match.decision != Elo.Sprt.CONTINUE)
+					continue;
+				final long pair = task / headToHeads.size();
+				final int boardIndex = (int) (pair % boards.size());
+				final Board board = boards.get(boardIndex);
+				if (fields[boardIndex] == null) {
+					fields[boardIndex] = new SelfPlay(board.size(), board.size(), board.winLength());
+				}
+				final int moves = Math.min(openingMoves, 2 * board.winLength() - 2);
+				randomOpening(board, new Random(seed * 0x9E3779B97F4A7C15L + task), opening, moves);
+
+				final var first = player(players, match.first);
+				final var second = player(players, match.second);
+				final var field = fields[boardIndex];
+				final var firstAsX = field.play(first, second, opening, moves);
+				appendToLog(field, firstAsX);
+				final var firstAsO = field.play(second, first, opening, moves);
+				appendToLog(field, firstAsO);
+				match.record(boardIndex, points(firstAsX.winner(), Player.X), points(firstAsO.winner(), Player.O));
+			}
+		} finally {
+			for (var strategy : players) {
+				if (strategy instanceof AutoCloseable closeable) {
+					try {
+						closeable.close();
+					} catch (Exception e) {
+						// closing anyway
+					}
+				}
+			}
+		}
+	}
+
+	private void appendToLog(SelfPlay field, GameResult result) {
+		if (log == null)
+			return;
+		try {
+			field.appendTo(log, result);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private AiStrategy player(AiStrategy[] players, int index) {
+		if (players[index] == null) {
+			players[index] = strategies.get(index).get();
+		}
+		return players[index];
+	}
+
+	/** Half points of the strategy that played {@code side}. */
+	private static int points(Player winner, Player side) {
+		return winner == side ? 2 : winner == Player.NONE ? 1 : 0;
+	}
+
+	/** Distinct cells in the middle of the field, where play would start anyway. */
+	private static void randomOpening(Board board, Random random, int[] opening, int moves) {
+		final int span = Math.min(board.size(), board.winLength() + 2);
+		final int from = (board.size() - span) / 2;
+		for (int i = 0; i < moves; ++i) {
+			int cell;
+			boolean taken;
+			do {
+				final int col = from + random.nextInt(span);
+				final int row = from + random.nextInt(span);
+				cell = row * board.size() + col;
+				taken = false;
+				for (int j = 0; j < i; ++j) {
+					taken |= opening[j] == cell;
+				}
+			} while (taken);
+			opening[i] = cell;
+		}
+	}
+
+	/**
+	 * Results of two strategies against each other, in total and per board,
+	 * counted in pairs of games.
+	 */
+	private final class HeadToHead {
+
+		final int first;
+		final int second;
+		/** Pairs by half points of the first strategy, 0 to 4; the last row is the total. */
+		private final long[][] pairs;
+		/** Games won, drawn and lost by the first strategy; the last row is the total. */
+		private final long[][] games;
+		volatile Elo.Sprt decision = Elo.Sprt.CONTINUE;
+
+		HeadToHead(int first, int second, int boards) {
+			this.first = first;
+			this.second = second;
+			this.pairs = new long[boards + 1][5];
+			this.games = new long[boards + 1][3];
+		}
+
+		/** Half points of the first strategy when it played X and when it played O. */
+		synchronized void record(int board, int asX, int asO) {
+			for (int row : new int[] { board, pairs.length - 1 }) {
+				++pairs[row][asX + asO];
+				++games[row][2 - asX];
+				++games[row][2 - asO];
+			}
+			if (sprt != null && decision == Elo.Sprt.CONTINUE) {
+				decision = elo().sprt(sprt.elo0(), sprt.elo1(), sprt.alpha(), sprt.beta());
+			}
+		}
+
+		synchronized Elo elo() {
+			return new Elo(pairs[pairs.length - 1]);
+		}
+
+		synchronized Elo elo(int board) {
+			return new Elo(pairs[board]);
+		}
+
+		synchronized long[] games(int board) {
+			return games[board < 0 ? games.length - 1 : board].clone();
+		}
+	}
+
+	/** Standings against all opponents, then every head-to-head. */
+	public String report() {
+		var text = new StringBuilder();
+		text.append(String.format(Locale.ROOT, "%-24s %8s %7s %8s %19s%n", "strategy", "pairs", "score", "elo",
+				"95% interval"));
+		for (int s = 0; s < names.size(); ++s) {
+			final var elo = standing(s);
+			text.append(String.format(Locale.ROOT, "%-24s %8d %6.1f%% %8s %19s%n", names.get(s), elo.pairs(),
+					100 * elo.score(), format(elo.elo()), interval(elo)));
+		}
+		for (var match : headToHeads) {
+			final var elo = match.elo();
+			text.append(String.format(Locale.ROOT, "  %s vs %s: pairs=%d score=%.1f%% elo=%s %s",
+					names.get(match.first), names.get(match.second), elo.pairs(), 100 * elo.score(),
+					format(elo.elo()), interval(elo)));
+			if (sprt != null) {
+				text.append(String.format(Locale.ROOT, " llr=%.2f [%.2f, %.2f] %s",
+						elo.llr(sprt.elo0(), sprt.elo1()), Elo.lowerBound(sprt.alpha(), sprt.beta()),
+						Elo.upperBound(sprt.alpha(), sprt.beta()), match.decision));
+			}
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	/** Results of one strategy against the rest of the field, from its side. */
+	private Elo standing(int strategy) {
+		long[] pairs = new long[5];
+		for (var match : headToHeads) {
+			if (match.first != strategy && match.second != strategy)
+				continue;
+			final var elo = match.elo();
+			for (int bin = 0; bin < pairs.length; ++bin) {
+				pairs[match.first == strategy ? bin : pairs.length - 1 - bin] += elo.pairs(bin);
+			}
+		}
+		return new Elo(pairs);
+	}
+
+	private static String format(double elo) {
+		if (!Double.isFinite(elo))
+			return elo > 0 ? "+inf" : "-inf";
+		return Math.round(elo) == 0 ? "0" : String.format(Locale.ROOT, "%+d", Math.round(elo));
+	}
+
+	private static String interval(Elo elo) {
+		return "[" + format(elo.eloLow()) + ", " + format(elo.eloHigh()) + "]";
+	}
+
+	/** One row per head-to-head and board, and one with board {@code all} for the totals. */
+	public void writeCsv(Path file) throws IOException {
+		try (var out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+			out.println("first,second,board,size,win_length,pairs,wins,draws,losses,score,elo,elo_low,elo_high,llr,sprt");
+			for (var match : headToHeads) {
+				for (int board = 0; board <= boards.size(); ++board) {
+					final boolean total = board == boards.size();
+					final var elo = total ? match.elo() : match.elo(board);
+					if (elo.pairs() == 0)
+						continue;
+					final long[] games = match.games(total ? -1 : board);
+					out.printf(Locale.ROOT, "%s,%s,%s,%s,%s,%d,%d,%d,%d,%.4f,%s,%s,%s,%s,%s%n",
+							csv(names.get(match.first)), csv(names.get(match.second)),
+							total ? "all" : boards.get(board), total ? "" : boards.get(board).size(),
+							total ? "" : boards.get(board).winLength(), elo.pairs(), games[0], games[1], games[2],
+							elo.score(), number(elo.elo()), number(elo.eloLow()), number(elo.eloHigh()),
+							total && sprt != null ? number(elo.llr(sprt.elo0(), sprt.elo1())) : "",
+							total && sprt != null ? match.decision : "");
+				}
+			}
+		}
+	}
+
+	public void writeJson(Path file) throws IOException {
+		var json = new StringBuilder();
+		json.append("{\n  \"boards\": [");
+		for (int i = 0; i < boards.size(); ++i) {
+			json.append(i == 0 ? "" : ", ").append(string(boards.get(i).toString()));
+		}
+		json.append("],\n  \"sprt\": ");
+		if (sprt == null) {
+			json.append("null");
+		} else {
+			json.append(String.format(Locale.ROOT, "{\"elo0\": %s, \"elo1\": %s, \"alpha\": %s, \"beta\": %s}",
+					sprt.elo0(), sprt.elo1(), sprt.alpha(), sprt.beta()));
+		}
+		json.append(",\n  \"standings\": [");
+		for (int s = 0; s < names.size(); ++s) {
+			final var elo = standing(s);
+			json.append(s == 0 ? "\n" : ",\n").append("    {\"strategy\": ").append(string(names.get(s)));
+			appendElo(json, elo);
+			json.append('}');
+		}
+		json.append("\n  ],\n  \"headToHead\": [");
+		for (int m = 0; m < headToHeads.size(); ++m) {
+			final var match = headToHeads.get(m);
+			final var elo = match.elo();
+			json.append(m == 0 ? "\n" : ",\n").append("    {\"first\": ").append(string(names.get(match.first)))
+					.append(", \"second\": ").append(string(names.get(match.second)));
+			appendElo(json, elo);
+			appendGames(json, match.games(-1));
+			json.append(", \"pentanomial\": [");
+			for (int bin = 0; bin < 5; ++bin) {
+				json.append(bin == 0 ? "" : ", ").append(elo.pairs(bin));
+			}
+			json.append(']');
+			if (sprt != null) {
+				json.append(", \"llr\": ").append(number(elo.llr(sprt.elo0(), sprt.elo1())))
+						.append(", \"sprt\": ").append(string(match.decision.name()));
+			}
+			json.append(", \"boards\": [");
+			boolean firstBoard = true;
+			for (int board = 0; board < boards.size(); ++board) {
+				final var boardElo = match.elo(board);
+				if (boardElo.pairs() == 0)
+					continue;
+				json.append(firstBoard ? "\n" : ",\n").append("      {\"board\": ")
+						.append(string(boards.get(board).toString()));
+				appendElo(json, boardElo);
+				appendGames(json, match.games(board));
+				json.append('}');
+				firstBoard = false;
+			}
+			json.append(firstBoard ? "]}" : "\n    ]}");
+		}
+		json.append("\n  ]\n}\n");
+		Files.writeString(file, json, StandardCharsets.UTF_8);
+	}
+
+	private static void appendElo(StringBuilder json, Elo elo) {
+		json.append(", \"pairs\": ").append(elo.pairs())
+				.append(", \"score\": ").append(number(elo.score()))
+				.append(", \"elo\": ").append(number(elo.elo()))
+				.append(", \"eloLow\": ").append(number(elo.eloLow()))
+				.append(", \"eloHigh\": ").append(number(elo.eloHigh()));
+	}
+
+	private static void appendGames(StringBuilder json, long[] games) {
+		json.append(", \"wins\": ").append(games[0])
+				.append(", \"draws\": ").append(games[1])
+				.append(", \"losses\": ").append(games[2]);
+	}
+
+	/** JSON has no infinity: an unbounded rating is {@code null}. */
+	private static String number(double value) {
+		return Double.isFinite(value) ? String.format(Locale.ROOT, "%.4f", value) : "null";
+	}
+
+	private static String string(String value) {
+		return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+	}
+
+	private static String csv(String value) {
+		return value.contains(",") || value.contains("\"") ? '"' + value.replace("\"", "\"\"") + '"' : value;
+	}
+
+	public static void main(String[] args) throws InterruptedException, IOException {
+		Map<String, String> options = MatchRunner.parseOptions(args);
+		List<String> names = List.of(options.getOrDefault("strategies", "easy,search:20").split(","));
+		if (PatternWeights.shared() == PatternWeights.builtIn()) {
+			System.err.println("No tuned pattern weights on the class path, searches use the built-in ones");
+		}
+		List<Supplier<AiStrategy>> strategies = new ArrayList<>();
+		for (String name : names) {
+			strategies.add(Strategies.parse(name));
+		}
+		List<Board> boards = parseBoards(options.getOrDefault("boards", "all"));
+		long pairs = Long.parseLong(options.getOrDefault("pairs", "1000"));
+		int opening = Integer.parseInt(options.getOrDefault("opening", "2"));
+		int threads = Integer.parseInt(options.getOrDefault("threads",
+				Integer.toString(Runtime.getRuntime().availableProcessors())));
+		long seed = Long.parseLong(options.getOrDefault("seed", Long.toString(System.nanoTime())));
+		long reportSeconds = Long.parseLong(options.getOrDefault("report-seconds", "10"));
+		SprtBounds sprt = options.containsKey("sprt") ? parseSprt(options.get("sprt")) : null;
+
+		System.out.printf("strategies=%s boards=%d pairs=%,d opening=%d threads=%d seed=%d sprt=%s%n",
+				names, boards.size(), pairs, opening, threads, seed, sprt);
+		var tournament = new Tournament(names, strategies, boards, pairs, opening, sprt, threads, seed);
+		final long start = System.nanoTime();
+		if (options.containsKey("log")) {
+			try (var log = GameLogWriter.open(Path.of(options.get("log")))) {
+				tournament.setLog(log);
+				tournament.run(reportSeconds);
+			}
+		} else {
+			tournament.run(reportSeconds);
+		}
+		System.out.printf("finished in %.1f s%n", (System.nanoTime() - start) / 1e9);
+		System.out.print(tournament.report());
+		if (options.containsKey("csv")) {
+			tournament.writeCsv(Path.of(options.get("csv")));
+		}
+		if (options.containsKey("json")) {
+			tournament.writeJson(Path.of(options.get("json")));
+		}
+	}
+
+	private static List<Board> parseBoards(String spec) {
+		if (spec.equals("all"))
+			return allBoards();
+		List<Board> boards = new ArrayList<>();
+		for (String board : spec.split(",")) {
+			final String[] parts = board.split(":");
+			final int size = Integer.parseInt(parts[0]);
+			boards.add(new Board(size, parts.length > 1 ? Integer.parseInt(parts[1]) : size));
+		}
+		return boards;
+	}
+
+	private static SprtBounds parseSprt(String spec) {
+		final String[] parts = spec.split(",");
+		if (parts.length != 2 && parts.length != 4) {
+			throw new IllegalArgumentException("Expected --sprt elo0,elo1[,alpha,beta], got: " + spec);
+		}
+		return new SprtBounds(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+				parts.length > 2 ? Double.parseDouble(parts[2]) : 0.05,
+				parts.length > 2 ? Double.parseDouble(parts[3]) : 0.05);
+	}
+}
@@ -0,0 +1,142 @@
+package domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link Game#snapshot()} never shows a half-applied move: the
+ * test thread plays random games with undo and redo on bounded and unbounded
+ * fields for a few seconds while reader threads check every snapshot they
+ * get.
+ */
+class GameSnapshotStressTest {
+
+	private static final int READERS = 4;
+	private static final long MILLIS = 3000;
+	private static final int SIZE = 12;
+	private static final int WIN_LENGTH = 5;
+
+	private volatile Game current;
+	private volatile boolean stopped;
+
+	private final LongAdder changesSeen = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final AtomicReference<String> firstFailure = new AtomicReference<>();
+
+	@Test
+	void readersSeeOnlyConsistentSnapshots() throws InterruptedException {
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < READERS; ++i) {
+			var thread = new Thread(this::read, "snapshot-reader-" + i);
+			thread.setDaemon(true);
+			thread.start();
+			threads.add(thread);
+		}
+		final long deadline = System.nanoTime() + MILLIS * 1_000_000L;
+		var random = new Random(1);
+		long games = 0;
+		try {
+			while (System.nanoTime() < deadline) {
+				Board field = (games & 1) == 0 ? new BitBoard(SIZE, SIZE) : new SparseBoard();
+				var game = new Game(field, WIN_LENGTH, Player.NONE);
+				current = game;
+				++games;
+				while (!game.isGameOver() && System.nanoTime() < deadline) {
+					game.makeMove(random.nextInt(SIZE), random.nextInt(SIZE));
+					if (random.nextInt(8) == 0 && game.unmakeMove() && random.nextBoolean()) {
+						game.redoMove();
+					}
+				}
+			}
+		} finally {
+			stopped = true;
+			for (var thread : threads) {
+				thread.join();
+			}
+		}
+
+		assertEquals(0, failures.sum(), () -> failures.sum() + " inconsistent snapshots, first " + firstFailure.get());
+		assertTrue(changesSeen.sum() > 0, "readers saw no change in " + games + " games");
+	}
+
+	private void read() {
+		Game lastGame = null;
+		long lastVersion = -1;
+		while (!stopped) {
+			final Game game = current;
+			if (game == null) {
+				Thread.onSpinWait();
+				continue;
+			}
+			final GameSnapshot snapshot = game.snapshot();
+			if (game == lastGame && snapshot.version() < lastVersion) {
+				fail(snapshot, "went back from version " + lastVersion);
+			}
+			if (game != lastGame || snapshot.version() != lastVersion) {
+				changesSeen.increment();
+			}
+			lastGame = game;
+			lastVersion = snapshot.version();
+			check(snapshot);
+		}
+	}
+
+	/** Marks must add up to the move count and agree with the turn and the winner. */
+	private void check(GameSnapshot snapshot) {
+		final Area area = snapshot.markedArea();
+		int xs = 0;
+		int os = 0;
+		if (area != null) {
+			for (int row = area.row(); row < area.row() + area.rows(); ++row) {
+				for (int col = area.col(); col < area.col() + area.cols(); ++col) {
+					final Player state = snapshot.cellState(col, row);
+					if (state == Player.X) {
+						++xs;
+					} else if (state == Player.O) {
+						++os;
+					}
+				}
+			}
+		}
+		if (xs + os != snapshot.moveCount() || xs - os < 0 || xs - os > 1) {
+			fail(snapshot, "x=" + xs + " o=" + os);
+		} else if (!snapshot.isGameOver()) {
+			if (snapshot.whoseTurn() != (xs == os ? Player.X : Player.O) || snapshot.winner() != Player.NONE) {
+				fail(snapshot, "x=" + xs + " o=" + os);
+			}
+		} else if (snapshot.winner() != Player.NONE && !hasLine(snapshot, area, snapshot.winner())) {
+			fail(snapshot, "no winning line");
+		}
+	}
+
+	private static boolean hasLine(GameSnapshot snapshot, Area area, Player player) {
+		final int[][] directions = { { 1, 0 }, { 0, 1 }, { 1, 1 }, { 1, -1 } };
+		for (int row = area.row(); row < area.row() + area.rows(); ++row) {
+			for (int col = area.col(); col < area.col() + area.cols(); ++col) {
+				for (int[] direction : directions) {
+					int length = 0;
+					while (length < WIN_LENGTH
+							&& snapshot.cellState(col + length * direction[0], row + length * direction[1]) == player) {
+						++length;
+					}
+					if (length == WIN_LENGTH)
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private void fail(GameSnapshot snapshot, String reason) {
+		failures.increment();
+		firstFailure.compareAndSet(null, snapshot + ": " + reason);
+	}
+}
@@ -0,0 +1,56 @@
+package domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** Taking back a local move the server refused, in a game against a remote opponent. */
+class GameTest {
+
+	@Test
+	void retractTakesBackTheLocalMove() {
+		var game = new Game(new BitBoard(5, 5), 4, Player.X);
+		game.humanTurn(2, 2);
+		assertEquals(Player.O, game.whoseTurn());
+
+		assertTrue(game.retractMove());
+		assertEquals(Player.X, game.whoseTurn());
+		assertEquals(Player.NONE, game.snapshot().cellState(2, 2));
+		assertEquals(0, game.moveCount());
+
+		game.humanTurn(1, 1);
+		assertEquals(Player.X, game.snapshot().cellState(1, 1));
+	}
+
+	@Test
+	void retractLeavesTheOpponentsMove() {
+		var game = new Game(new BitBoard(5, 5), 4, Player.X);
+		game.humanTurn(2, 2);
+		assertTrue(game.makeMove(3, 3));
+		assertFalse(game.retractMove());
+		assertEquals(2, game.moveCount());
+	}
+
+	@Test
+	void retractUndoesALocalWin() {
+		var game = new Game(new BitBoard(5, 5), 2, Player.X);
+		game.humanTurn(0, 0);
+		game.makeMove(4, 4);
+		game.humanTurn(1, 0);
+		assertEquals(Player.X, game.winner());
+
+		assertTrue(game.retractMove());
+		assertEquals(Player.NONE, game.winner());
+		assertEquals(Player.X, game.whoseTurn());
+	}
+
+	@Test
+	void noRetractOutsideNetworkGames() {
+		var hotSeat = new Game(new BitBoard(5, 5), 4, Player.NONE);
+		hotSeat.humanTurn(2, 2);
+		assertFalse(hotSeat.retractMove());
+		assertEquals(1, hotSeat.moveCount());
+	}
+}
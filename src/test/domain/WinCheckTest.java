@@ -0,0 +1,254 @@
+package domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The win check through the last move against the full-board scan it
+ * replaced: after a move that ends no earlier line, both must agree.
+ * The reference is the scan over a {@code Player[][]} the game used before
+ * the bitboard.
+ */
+class WinCheckTest {
+
+	/** Columns, rows and win length of the boards played on. */
+	private static final int[][] CONFIGS = {
+			{ 3, 3, 3 }, { 4, 4, 3 }, { 5, 5, 4 }, { 7, 4, 4 }, { 3, 9, 3 }, { 10, 10, 5 }, { 15, 15, 5 },
+			{ 19, 19, 5 }, { 32, 32, 5 }, { 50, 50, 5 }, { 63, 2, 2 }, { 64, 3, 3 }, { 65, 4, 4 }, { 6, 6, 1 } };
+
+	/** The win check of {@code Game} before the bitboard: every window of every line. */
+	private static boolean fullScan(Player[][] field, Player player, int winLength) {
+		final int rows = field.length;
+		final int cols = field[0].length;
+		final int[][] directions = { { 1, 0 }, { 0, 1 }, { 1, 1 }, { 1, -1 } };
+		for (int row = 0; row < rows; ++row) {
+			for (int col = 0; col < cols; ++col) {
+				for (int[] dir : directions) {
+					final int endCol = col + (winLength - 1) * dir[0];
+					final int endRow = row + (winLength - 1) * dir[1];
+					if (endCol < 0 || endCol >= cols || endRow < 0 || endRow >= rows)
+						continue;
+					int i = 0;
+					while (i < winLength && field[row + i * dir[1]][col + i * dir[0]] == player) {
+						++i;
+					}
+					if (i == winLength)
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static Player[][] emptyField(int cols, int rows) {
+		final Player[][] field = new Player[rows][cols];
+		for (Player[] line : field) {
+			Arrays.fill(line, Player.NONE);
+		}
+		return field;
+	}
+
+	@Test
+	void randomGamesAgreeWithFullScan() {
+		final var random = new Random(1);
+		for (int[] config : CONFIGS) {
+			final int cols = config[0];
+			final int rows = config[1];
+			final int winLength = config[2];
+			final int games = cols * rows > 400 ? 20 : 200;
+			for (int game = 0; game < games; ++game) {
+				playRandomGame(cols, rows, winLength, random);
+			}
+		}
+	}
+
+	/** Plays random moves to the end, checking every board and the game after each. */
+	private static void playRandomGame(int cols, int rows, int winLength, Random random) {
+		final Player[][] field = emptyField(cols, rows);
+		final var bits = new BitBoard(cols, rows);
+		final var sparse = new SparseBoard(cols, rows);
+		final var unbounded = new SparseBoard();
+		final var game = new Game(new BitBoard(cols, rows), winLength, Player.NONE);
+		final int[] cells = shuffledCells(cols * rows, random);
+		Player player = Player.X;
+		for (int move = 0; move < cells.length; ++move) {
+			final int col = cells[move] % cols;
+			final int row = cells[move] / cols;
+			final String where = cols + "x" + rows + "/" + winLength + " move " + move + " at " + col + "," + row;
+			field[row][col] = player;
+			bits.set(col, row, player);
+			sparse.set(col, row, player);
+			unbounded.set(col, row, player);
+			assertTrue(game.makeMove(col, row), where);
+
+			final boolean expected = fullScan(field, player, winLength);
+			assertEquals(expected, bits.hasLineThrough(col, row, player, winLength), where);
+			assertEquals(expected, bits.hasLine(player, winLength), where);
+			assertEquals(expected, sparse.hasLineThrough(col, row, player, winLength), where);
+			assertEquals(expected, unbounded.hasLineThrough(col, row, player, winLength), where);
+			assertEquals(expected ? player : Player.NONE, game.winner(), where);
+			if (expected)
+				return;
+			player = player == Player.X ? Player.O : Player.X;
+		}
+		assertEquals(Player.NONE, game.whoseTurn(), "full board still open");
+	}
+
+	@Test
+	void randomFieldsAgreeWithFullScan() {
+		final var random = new Random(2);
+		for (int[] config : CONFIGS) {
+			final int cols = config[0];
+			final int rows = config[1];
+			final int winLength = config[2];
+			for (int sample = 0; sample < 50; ++sample) {
+				// dense fields hold lines of both players and many near misses
+				final int percent = 30 + random.nextInt(60);
+				final Player[][] field = emptyField(cols, rows);
+				for (int row = 0; row < rows; ++row) {
+					for (int col = 0; col < cols; ++col) {
+						if (random.nextInt(100) < percent) {
+							field[row][col] = random.nextBoolean() ? Player.X : Player.O;
+						}
+					}
+				}
+				checkField(field, winLength, cols + "x" + rows + "/" + winLength + " sample " + sample);
+			}
+		}
+	}
+
+	/**
+	 * Compares the full scans for both players, then, for every mark that
+	 * could be the last move, the check through it.
+	 */
+	private static void checkField(Player[][] field, int winLength, String where) {
+		final int rows = field.length;
+		final int cols = field[0].length;
+		final var bits = new BitBoard(cols, rows);
+		final var sparse = new SparseBoard(cols, rows);
+		for (int row = 0; row < rows; ++row) {
+			for (int col = 0; col < cols; ++col) {
+				bits.set(col, row, field[row][col]);
+				sparse.set(col, row, field[row][col]);
+			}
+		}
+		final var scalar = new BitBoard(bits);
+		scalar.useKernel(LineKernel.scalar());
+		final var vector = new BitBoard(bits);
+		final var vectorKernel = LineKernel.vector();
+		if (vectorKernel != null) {
+			vector.useKernel(vectorKernel);
+		}
+		for (Player player : new Player[] { Player.X, Player.O }) {
+			final boolean expected = fullScan(field, player, winLength);
+			assertEquals(expected, bits.hasLine(player, winLength), where);
+			assertEquals(expected, scalar.hasLine(player, winLength), where + " scalar");
+			assertEquals(expected, vector.hasLine(player, winLength), where + " vector");
+		}
+		for (int row = 0; row < rows; ++row) {
+			for (int col = 0; col < cols; ++col) {
+				final Player player = field[row][col];
+				if (player == Player.NONE)
+					continue;
+				field[row][col] = Player.NONE;
+				final boolean before = fullScan(field, player, winLength);
+				field[row][col] = player;
+				if (before)
+					continue;
+				final boolean expected = fullScan(field, player, winLength);
+				final String at = where + " at " + col + "," + row;
+				assertEquals(expected, bits.hasLineThrough(col, row, player, winLength), at);
+				assertEquals(expected, sparse.hasLineThrough(col, row, player, winLength), at);
+			}
+		}
+	}
+
+	@Test
+	void linesAlongTheEdges() {
+		assertWin(3, "xxx", "...", "...");
+		assertWin(3, "...", "...", "xxx");
+		assertWin(3, "x..", "x..", "x..");
+		assertWin(3, "..x", "..x", "..x");
+		assertWin(3, "x..", ".x.", "..x");
+		assertWin(3, "..x", ".x.", "x..");
+		assertWin(4, "....x", "...x.", "..x..", ".x...");
+		assertWin(4, ".....", ".x...", "..x..", "...x.", "....x");
+	}
+
+	@Test
+	void linesDoNotWrapAroundRows() {
+		assertNoWin(4, "...xx", "xx...", ".....");
+		assertNoWin(3, "....x", "x....", ".x...");
+		assertNoWin(3, "x....", "....x", "...x.");
+		assertNoWin(3, "..", ".x", "x.", "x.");
+	}
+
+	@Test
+	void shortAndBrokenLines() {
+		assertNoWin(4, "xxx..", ".....");
+		assertNoWin(4, "xxoxx", ".....");
+		assertNoWin(3, "x.x", ".o.", "x.x");
+		assertWin(4, "xxxxx", ".....");
+		assertWin(1, "...", ".x.", "...");
+		assertNoWin(1, "...", ".o.", "...");
+		assertWin(5, "xxxxx");
+		assertNoWin(6, "xxxxx");
+	}
+
+	@Test
+	void linesAcrossWordBoundaries() {
+		for (int cols : new int[] { 62, 63, 64, 65, 127, 128, 129 }) {
+			final Player[][] field = emptyField(cols, 3);
+			for (int col = cols - 5; col < cols; ++col) {
+				field[1][col] = Player.X;
+			}
+			checkField(field, 5, cols + " columns, end of a row");
+			field[1][cols - 3] = Player.O;
+			checkField(field, 5, cols + " columns, broken");
+			assertFalse(fullScan(field, Player.X, 5));
+		}
+	}
+
+	private static void assertWin(int winLength, String... lines) {
+		final Player[][] field = parse(lines);
+		assertTrue(fullScan(field, Player.X, winLength), String.join("/", lines));
+		checkField(field, winLength, String.join("/", lines));
+	}
+
+	private static void assertNoWin(int winLength, String... lines) {
+		final Player[][] field = parse(lines);
+		assertFalse(fullScan(field, Player.X, winLength), String.join("/", lines));
+		checkField(field, winLength, String.join("/", lines));
+	}
+
+	private static Player[][] parse(String... lines) {
+		final Player[][] field = emptyField(lines[0].length(), lines.length);
+		for (int row = 0; row < lines.length; ++row) {
+			for (int col = 0; col < lines[row].length(); ++col) {
+				final char mark = lines[row].charAt(col);
+				field[row][col] = mark == 'x' ? Player.X : mark == 'o' ? Player.O : Player.NONE;
+			}
+		}
+		return field;
+	}
+
+	private static int[] shuffledCells(int count, Random random) {
+		final int[] cells = new int[count];
+		for (int i = 0; i < count; ++i) {
+			cells[i] = i;
+		}
+		for (int i = count - 1; i > 0; --i) {
+			final int j = random.nextInt(i + 1);
+			final int swap = cells[i];
+			cells[i] = cells[j];
+			cells[j] = swap;
+		}
+		return cells;
+	}
+}
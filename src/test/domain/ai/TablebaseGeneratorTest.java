@@ -0,0 +1,41 @@
+package domain.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import domain.BitBoard;
+import domain.Player;
+
+/**
+ * Generates each table the game ships, writes and loads it back, and plays
+ * it against every sequence of replies and against {@link SearchStrategy},
+ * as {@code TablebaseGenerator --verify} does.
+ */
+class TablebaseGeneratorTest {
+
+	@TempDir
+	Path dir;
+
+	@ParameterizedTest(name = "{0}x{0}, {1} in a row")
+	@CsvSource({ "3, 3, 0", "4, 3, 1", "4, 4, 0" })
+	void tableReachesItsOutcome(int size, int winLength, int outcome) throws IOException {
+		final var generator = new TablebaseGenerator(size, winLength);
+		generator.generate();
+		final Path file = dir.resolve("tablebase.bin");
+		TablebaseGenerator.write(List.of(generator), file);
+
+		final var tablebase = Tablebase.load(file);
+		assertTrue(tablebase.covers(size, size, winLength));
+		assertEquals(outcome, tablebase.outcome(new BitBoard(size, size), Player.X, winLength),
+				"outcome for X with best play");
+		assertTrue(generator.verify(tablebase) > 0);
+	}
+}